@@ -0,0 +1,214 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fuentes Java sintéticas pero realistas para los benchmarks: un DTO pequeño, un servicio de
+ * ~3 000 líneas y una clase generada con literales de texto enormes.
+ */
+final class BenchmarkSources {
+
+    static final String DTO = "dto";
+    static final String SERVICE = "service";
+    static final String LITERAL = "literal";
+
+    private static final String MODULE = "bench";
+    private static final String BASE_PACKAGE = "com.miempresa.bench";
+
+    private BenchmarkSources() {
+    }
+
+    static InputFile inputFile(String kind) {
+        return inputFile(relativePath(kind), source(kind));
+    }
+
+    static InputFile inputFile(String relativePath, String content) {
+        return TestInputFileBuilder.create(MODULE, relativePath)
+            .setLanguage("java")
+            .setCharset(StandardCharsets.UTF_8)
+            .setContents(content)
+            .build();
+    }
+
+    static String relativePath(String kind) {
+        switch (kind) {
+            case DTO:
+                return "src/main/java/com/miempresa/bench/exposition/dto/PedidoDTO.java";
+            case SERVICE:
+                return "src/main/java/com/miempresa/bench/service/impl/PedidoServiceImpl.java";
+            case LITERAL:
+                return "src/main/java/com/miempresa/bench/domain/generated/CatalogoGenerado.java";
+            default:
+                throw new IllegalArgumentException("Tipo de fuente desconocido: " + kind);
+        }
+    }
+
+    static String source(String kind) {
+        switch (kind) {
+            case DTO:
+                return dto("PedidoDTO", BASE_PACKAGE + ".exposition.dto", 12);
+            case SERVICE:
+                return service("PedidoServiceImpl", BASE_PACKAGE + ".service.impl", 3_000);
+            case LITERAL:
+                return hugeLiterals("CatalogoGenerado", BASE_PACKAGE + ".domain.generated", 2 * 1024 * 1024);
+            default:
+                throw new IllegalArgumentException("Tipo de fuente desconocido: " + kind);
+        }
+    }
+
+    static String dto(String name, String packageName, int fields) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(packageName).append(";\n\n");
+        sb.append("import java.math.BigDecimal;\n");
+        sb.append("import java.time.LocalDate;\n\n");
+        sb.append("/**\n * Objeto de transferencia generado para pruebas de rendimiento.\n */\n");
+        sb.append("public class ").append(name).append(" {\n\n");
+        for (int i = 0; i < fields; i++) {
+            sb.append("    private ").append(fieldType(i)).append(" campo").append(i).append(";\n");
+        }
+        sb.append('\n');
+        for (int i = 0; i < fields; i++) {
+            String type = fieldType(i);
+            sb.append("    public ").append(type).append(" getCampo").append(i).append("() {\n");
+            sb.append("        return campo").append(i).append(";\n    }\n\n");
+            sb.append("    public void setCampo").append(i).append('(').append(type).append(" campo").append(i).append(") {\n");
+            sb.append("        this.campo").append(i).append(" = campo").append(i).append(";\n    }\n\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /** Servicio con el número de líneas indicado: métodos con lógica, comentarios y logs. */
+    static String service(String name, String packageName, int lines) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(packageName).append(";\n\n");
+        sb.append("import java.util.ArrayList;\n");
+        sb.append("import java.util.List;\n");
+        sb.append("import java.util.Optional;\n");
+        sb.append("import org.slf4j.Logger;\n");
+        sb.append("import org.slf4j.LoggerFactory;\n");
+        sb.append("import org.springframework.stereotype.Service;\n");
+        sb.append("import ").append(packageName, 0, packageName.lastIndexOf(".service")).append(".repository.PedidoRepository;\n\n");
+        sb.append("@Service\n");
+        sb.append("public class ").append(name).append(" {\n\n");
+        sb.append("    private static final Logger LOG = LoggerFactory.getLogger(").append(name).append(".class);\n\n");
+        sb.append("    private final PedidoRepository pedidoRepository;\n\n");
+        sb.append("    public ").append(name).append("(PedidoRepository pedidoRepository) {\n");
+        sb.append("        this.pedidoRepository = pedidoRepository;\n    }\n\n");
+
+        int method = 0;
+        int written = lineCount(sb);
+        while (written < lines - 1) {
+            sb.append("    /**\n");
+            sb.append("     * Calcula el total del pedido ").append(method).append(" aplicando descuentos y validaciones.\n");
+            sb.append("     */\n");
+            sb.append("    public long calcularTotal").append(method).append("(Long pedidoId, int cantidad, String moneda) {\n");
+            sb.append("        // Validaciones de negocio antes de delegar en el repositorio\n");
+            sb.append("        if (cantidad <= 0) {\n");
+            sb.append("            throw new IllegalArgumentException(\"La cantidad debe ser positiva\");\n");
+            sb.append("        }\n");
+            sb.append("        List<Long> montos = new ArrayList<>();\n");
+            sb.append("        for (int i = 0; i < cantidad; i++) {\n");
+            sb.append("            montos.add((long) i * ").append(method + 1).append(");\n");
+            sb.append("        }\n");
+            sb.append("        long total = 0;\n");
+            sb.append("        for (Long monto : montos) {\n");
+            sb.append("            total += monto;\n");
+            sb.append("        }\n");
+            sb.append("        LOG.debug(\"Total calculado para el pedido {} en {}: {}\", pedidoId, moneda, total);\n");
+            sb.append("        return pedidoRepository.buscarPorId(pedidoId).map(p -> total).orElse(0L);\n");
+            sb.append("    }\n\n");
+            method++;
+            written += 20;
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Controller con el número de líneas indicado: métodos con varios parámetros y, uno de cada
+     * diez, un parámetro de tipo repositorio.
+     */
+    static String controller(String name, String packageName, int lines) {
+        String basePackage = packageName.substring(0, packageName.lastIndexOf(".exposition"));
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(packageName).append(";\n\n");
+        sb.append("import java.util.List;\n");
+        sb.append("import org.springframework.http.ResponseEntity;\n");
+        sb.append("import org.springframework.web.bind.annotation.RestController;\n");
+        sb.append("import ").append(basePackage).append(".repository.PedidoRepository;\n");
+        sb.append("import ").append(basePackage).append(".service.PedidoService;\n\n");
+        sb.append("@RestController\n");
+        sb.append("public class ").append(name).append(" {\n\n");
+        sb.append("    private PedidoService pedidoService;\n\n");
+
+        int method = 0;
+        int written = lineCount(sb);
+        while (written < lines - 1) {
+            sb.append("    // Consulta ").append(method).append(" expuesta por el controller\n");
+            sb.append("    public ResponseEntity<List<String>> consultar").append(method)
+                .append("(Long pedidoId, String moneda, int pagina");
+            if (method % 10 == 0) {
+                sb.append(", PedidoRepository repositorio");
+            }
+            sb.append(") {\n");
+            sb.append("        List<String> resultado = pedidoService.buscar(pedidoId, moneda, pagina);\n");
+            sb.append("        if (resultado.isEmpty()) {\n");
+            sb.append("            return ResponseEntity.notFound().build();\n");
+            sb.append("        }\n");
+            sb.append("        return ResponseEntity.ok(resultado);\n");
+            sb.append("    }\n\n");
+            method++;
+            written += 9;
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /** Clase generada con constantes de texto enormes, como las de clientes OpenAPI o JAXB. */
+    static String hugeLiterals(String name, String packageName, int approximateBytes) {
+        StringBuilder sb = new StringBuilder(approximateBytes + 1024);
+        sb.append("package ").append(packageName).append(";\n\n");
+        sb.append("// Código generado automáticamente. No editar.\n");
+        sb.append("public final class ").append(name).append(" {\n\n");
+        sb.append("    private ").append(name).append("() {\n    }\n\n");
+
+        int constant = 0;
+        while (sb.length() < approximateBytes) {
+            sb.append("    public static final String ESQUEMA_").append(constant).append(" = \"");
+            // Una línea muy larga por constante, sin saltos de línea
+            for (int i = 0; i < 4_000; i++) {
+                sb.append("{\\\"campo").append(i).append("\\\":\\\"valor de ejemplo\\\"},");
+            }
+            sb.append("\";\n\n");
+            constant++;
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String fieldType(int i) {
+        switch (i % 4) {
+            case 0:
+                return "Long";
+            case 1:
+                return "String";
+            case 2:
+                return "BigDecimal";
+            default:
+                return "LocalDate";
+        }
+    }
+
+    private static int lineCount(CharSequence text) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,64 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Lectura de un corpus escrito por {@link CorpusGenerator}: los archivos fuente como
+ * {@link InputFile} respaldados por disco y los issues esperados por regla.
+ */
+final class Corpus {
+
+    static final String MODULE = "corpus";
+
+    private Corpus() {
+    }
+
+    /**
+     * Archivos Java del corpus. Solo se guardan los metadatos (líneas y offsets); el contenido
+     * se vuelve a leer de disco cuando el sensor lo pide, como en un análisis real.
+     */
+    static List<InputFile> inputFiles(Path baseDir) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(baseDir.resolve(CorpusGenerator.SOURCES))) {
+            paths = walk.filter(path -> path.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+        }
+        List<InputFile> inputFiles = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            inputFiles.add(TestInputFileBuilder.create(MODULE, baseDir.toFile(), path.toFile())
+                .setLanguage("java")
+                .setCharset(StandardCharsets.UTF_8)
+                .initMetadata(content)
+                .build());
+        }
+        return inputFiles;
+    }
+
+    /** Issues esperados por regla (sin el repositorio en la clave). */
+    static Map<String, Integer> expectedIssues(Path baseDir) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(baseDir.resolve(CorpusGenerator.EXPECTED_FILE), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, Integer> expected = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("rule.")) {
+                expected.put(key.substring("rule.".length()), Integer.parseInt(properties.getProperty(key)));
+            }
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,76 @@
+package com.miempresa.sonar.rules;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiempo de un análisis completo sobre un corpus de {@link CorpusGenerator}. Con
+ * {@code -p corpus=<directorio>} usa un corpus existente; si no, genera uno de {@code files}
+ * archivos en un directorio temporal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CorpusBenchmark {
+
+    @Param({""})
+    public String corpus;
+
+    @Param({"10000"})
+    public int files;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Path baseDir;
+    private List<InputFile> inputFiles;
+    private SensorContextTester context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (corpus.isEmpty()) {
+            baseDir = Files.createTempDirectory("arq-rules-corpus");
+            new CorpusGenerator(baseDir, files, 0.05, 42L).generate();
+        } else {
+            baseDir = Paths.get(corpus);
+        }
+        inputFiles = Corpus.inputFiles(baseDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void newContext() {
+        context = SensorContextTester.create(baseDir);
+        context.fileSystem().setWorkDir(baseDir.resolve(".scannerwork"));
+        context.settings().setProperty(ArchitectureProperties.PARALLEL_ENABLED_KEY, parallel);
+        for (InputFile inputFile : inputFiles) {
+            context.fileSystem().add(inputFile);
+        }
+    }
+
+    @Benchmark
+    public SensorContextTester execute() {
+        new LayeredArchitectureSensor().execute(context);
+        return context;
+    }
+}
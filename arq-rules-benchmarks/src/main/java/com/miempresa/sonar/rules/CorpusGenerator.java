@@ -0,0 +1,490 @@
+package com.miempresa.sonar.rules;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Genera proyectos en capas de tamaño configurable (de decenas a cientos de miles de archivos)
+ * con la misma estructura que {@code PruebasEspecificas/proyecto-pruebas-capas}: cada
+ * funcionalidad tiene su clase de dominio, DTO, controlador REST, servicio, implementación,
+ * repositorio y entidad JPA.
+ *
+ * <p>Una fracción controlada de las funcionalidades recibe una violación de arquitectura
+ * (ver {@link Violation}). Junto al corpus se escribe {@value #EXPECTED_FILE} con el número de
+ * issues que el plugin debe reportar por regla, para comprobar la exactitud a escala. Los issues
+ * de ciclos entre capas dependen de todas las violaciones de un mismo módulo y se calculan por
+ * módulo a partir de los imports generados ({@link ModuleDependencies}).</p>
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.miempresa.sonar.rules.CorpusGenerator &lt;directorio&gt; &lt;archivos&gt; [ratio] [semilla]
+ * </pre>
+ */
+public final class CorpusGenerator {
+
+    static final String EXPECTED_FILE = "expected-issues.properties";
+    static final String SOURCES = "src/main/java";
+    static final int FILES_PER_FEATURE = 7;
+
+    private static final String BASE_PACKAGE = "com.miempresa.corpus";
+    private static final int FEATURES_PER_MODULE = 100;
+
+    // Las entidades JPA viven en repository/entity y la regla de dominio las considera dominio
+    private static final String ENTITY_RULE = "NoFrameworkDependenciesInDomain";
+    private static final String CYCLES_RULE = "NoLayerDependencyCycles";
+
+    // Capa de cada paquete de un módulo según su segmento más profundo (entity es dominio)
+    private static final Map<String, String> PACKAGE_LAYERS = new LinkedHashMap<>();
+
+    static {
+        PACKAGE_LAYERS.put("domain", "DOMAIN");
+        PACKAGE_LAYERS.put("exposition.dto", "EXPOSITION");
+        PACKAGE_LAYERS.put("exposition.rest", "EXPOSITION");
+        PACKAGE_LAYERS.put("service", "SERVICE");
+        PACKAGE_LAYERS.put("service.impl", "SERVICE");
+        PACKAGE_LAYERS.put("repository", "REPOSITORY");
+        PACKAGE_LAYERS.put("repository.entity", "DOMAIN");
+    }
+
+    /**
+     * Violaciones que se pueden inyectar en una funcionalidad y los issues que provocan.
+     */
+    enum Violation {
+        CONTROLLER_IMPORTS_DOMAIN("NoDomainAccessFromExpositionRule", 1),
+        CONTROLLER_IMPORTS_REPOSITORY("NoRepositoryAccessFromExpositionRule", 1),
+        // EntityManager es de javax.persistence: el import y el campo son de la capa de persistencia
+        CONTROLLER_USES_ENTITY_MANAGER(
+            "NoRepositoryAccessFromExpositionRule", 2,
+            "NoPersistenceInController", 1),
+        CONTROLLER_WITH_SERVICE_ANNOTATIONS("NoOtherLayerAnnotationsInController", 1),
+        SERVICE_IMPORTS_CONTROLLER("NoControllerAccessFromService", 1),
+        SERVICE_WITH_SQL("NoPersistenceInService", 1),
+        DOMAIN_WITH_SPRING("NoFrameworkDependenciesInDomain", 1),
+        REPOSITORY_IMPORTS_SERVICE("NoUpperLayerAccessFromRepository", 1),
+        // Cierra el ciclo service.impl ↔ repository en todo el módulo (ver ModuleDependencies)
+        REPOSITORY_IMPORTS_SERVICE_IMPL("NoUpperLayerAccessFromRepository", 1);
+
+        private final Map<String, Integer> expected;
+
+        Violation(Object... ruleCounts) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (int i = 0; i < ruleCounts.length; i += 2) {
+                counts.put((String) ruleCounts[i], (Integer) ruleCounts[i + 1]);
+            }
+            this.expected = Collections.unmodifiableMap(counts);
+        }
+
+        Map<String, Integer> expected() {
+            return expected;
+        }
+    }
+
+    /** Resumen del corpus generado. */
+    static final class Summary {
+        private final int files;
+        private final Map<Violation, Integer> violations;
+        private final Map<String, Integer> expectedIssues;
+
+        private Summary(int files, Map<Violation, Integer> violations, Map<String, Integer> expectedIssues) {
+            this.files = files;
+            this.violations = violations;
+            this.expectedIssues = expectedIssues;
+        }
+
+        int files() {
+            return files;
+        }
+
+        Map<Violation, Integer> violations() {
+            return violations;
+        }
+
+        Map<String, Integer> expectedIssues() {
+            return expectedIssues;
+        }
+
+        int expectedTotal() {
+            return expectedIssues.values().stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+
+    private final Path baseDir;
+    private final int files;
+    private final double violationRatio;
+    private final long seed;
+    private ModuleDependencies module;
+
+    CorpusGenerator(Path baseDir, int files, double violationRatio, long seed) {
+        if (files < FILES_PER_FEATURE) {
+            throw new IllegalArgumentException("El corpus necesita al menos " + FILES_PER_FEATURE + " archivos");
+        }
+        if (violationRatio < 0 || violationRatio > 1) {
+            throw new IllegalArgumentException("La proporción de violaciones debe estar entre 0 y 1: " + violationRatio);
+        }
+        this.baseDir = baseDir;
+        this.files = files;
+        this.violationRatio = violationRatio;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: CorpusGenerator <directorio> <archivos> [ratio-violaciones=0.05] [semilla=42]");
+            System.exit(2);
+        }
+        Path baseDir = Paths.get(args[0]);
+        int files = Integer.parseInt(args[1]);
+        double ratio = args.length > 2 ? Double.parseDouble(args[2]) : 0.05;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+
+        long start = System.nanoTime();
+        Summary summary = new CorpusGenerator(baseDir, files, ratio, seed).generate();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%d archivos generados en %s (%d ms), %d issues esperados%n",
+            summary.files(), baseDir, millis, summary.expectedTotal());
+    }
+
+    Summary generate() throws IOException {
+        Random random = new Random(seed);
+        Violation[] kinds = Violation.values();
+        Map<Violation, Integer> violations = new EnumMap<>(Violation.class);
+        Map<String, Integer> expected = new TreeMap<>();
+
+        int features = files / FILES_PER_FEATURE;
+        for (int feature = 0; feature < features; feature++) {
+            if (feature % FEATURES_PER_MODULE == 0) {
+                expectCycles(expected);
+                module = new ModuleDependencies();
+            }
+            Violation violation = random.nextDouble() < violationRatio
+                ? kinds[random.nextInt(kinds.length)]
+                : null;
+            writeFeature(feature, violation);
+
+            expected.merge(ENTITY_RULE, 1, Integer::sum);
+            if (violation != null) {
+                violations.merge(violation, 1, Integer::sum);
+                violation.expected().forEach((rule, count) -> expected.merge(rule, count, Integer::sum));
+            }
+        }
+        expectCycles(expected);
+
+        Summary summary = new Summary(features * FILES_PER_FEATURE, violations, expected);
+        writeExpected(summary);
+        return summary;
+    }
+
+    private void expectCycles(Map<String, Integer> expected) {
+        int cycleFiles = module == null ? 0 : module.filesInCrossLayerCycles();
+        if (cycleFiles > 0) {
+            expected.merge(CYCLES_RULE, cycleFiles, Integer::sum);
+        }
+    }
+
+    private void writeFeature(int feature, Violation violation) throws IOException {
+        String module = String.format("modulo%04d", feature / FEATURES_PER_MODULE);
+        String pkg = BASE_PACKAGE + "." + module;
+        String name = "Recurso" + feature;
+
+        write(pkg + ".domain", name, domain(pkg, name, violation == Violation.DOMAIN_WITH_SPRING));
+        write(pkg + ".exposition.dto", name + "DTO", dto(pkg, name));
+        write(pkg + ".exposition.rest", name + "Controller", controller(pkg, name, violation));
+        write(pkg + ".service", name + "Service", serviceInterface(pkg, name));
+        write(pkg + ".service.impl", name + "ServiceImpl", serviceImpl(pkg, name, violation));
+        write(pkg + ".repository", name + "Repository",
+            repository(pkg, name, violation));
+        write(pkg + ".repository.entity", name + "Entity", entity(pkg, name));
+    }
+
+    private void write(String pkg, String className, String content) throws IOException {
+        Path dir = baseDir.resolve(SOURCES).resolve(pkg.replace('.', '/'));
+        Files.createDirectories(dir);
+        Files.write(dir.resolve(className + ".java"), content.getBytes(StandardCharsets.UTF_8));
+        module.add(pkg, content);
+    }
+
+    private void writeExpected(Summary summary) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(baseDir.resolve(EXPECTED_FILE), StandardCharsets.UTF_8)) {
+            writer.write("# Issues esperados para el corpus generado por CorpusGenerator\n");
+            writer.write("files=" + summary.files() + "\n");
+            writer.write("violationRatio=" + violationRatio + "\n");
+            writer.write("seed=" + seed + "\n");
+            writer.write("total=" + summary.expectedTotal() + "\n");
+            for (Map.Entry<String, Integer> entry : summary.expectedIssues().entrySet()) {
+                writer.write("rule." + entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+            for (Map.Entry<Violation, Integer> entry : summary.violations().entrySet()) {
+                writer.write("violation." + entry.getKey().name() + "=" + entry.getValue() + "\n");
+            }
+        }
+    }
+
+    private static String domain(String pkg, String name, boolean withSpring) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(pkg).append(".domain;\n\n");
+        if (withSpring) {
+            sb.append("import org.springframework.stereotype.Component;\n\n");
+            sb.append("@Component\n");
+        }
+        sb.append("public class ").append(name).append(" {\n");
+        sb.append("    private Long id;\n");
+        sb.append("    private String nombre;\n");
+        sb.append("    private long total;\n\n");
+        sb.append("    public ").append(name).append("(Long id, String nombre) {\n");
+        sb.append("        this.id = id;\n");
+        sb.append("        this.nombre = nombre;\n");
+        sb.append("    }\n\n");
+        sb.append("    public Long getId() { return id; }\n");
+        sb.append("    public String getNombre() { return nombre; }\n");
+        sb.append("    public long getTotal() { return total; }\n\n");
+        sb.append("    public void agregar(long monto) {\n");
+        sb.append("        if (monto < 0) {\n");
+        sb.append("            throw new IllegalArgumentException(\"El monto no puede ser negativo\");\n");
+        sb.append("        }\n");
+        sb.append("        total += monto;\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String dto(String pkg, String name) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(pkg).append(".exposition.dto;\n\n");
+        sb.append("public class ").append(name).append("DTO {\n");
+        sb.append("    private Long id;\n");
+        sb.append("    private String nombre;\n\n");
+        sb.append("    public ").append(name).append("DTO() {}\n\n");
+        sb.append("    public ").append(name).append("DTO(Long id, String nombre) {\n");
+        sb.append("        this.id = id;\n");
+        sb.append("        this.nombre = nombre;\n");
+        sb.append("    }\n\n");
+        sb.append("    public Long getId() { return id; }\n");
+        sb.append("    public void setId(Long id) { this.id = id; }\n");
+        sb.append("    public String getNombre() { return nombre; }\n");
+        sb.append("    public void setNombre(String nombre) { this.nombre = nombre; }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String controller(String pkg, String name, Violation violation) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(pkg).append(".exposition.rest;\n\n");
+        if (violation == Violation.CONTROLLER_USES_ENTITY_MANAGER) {
+            sb.append("import javax.persistence.EntityManager;\n");
+        }
+        if (violation == Violation.CONTROLLER_IMPORTS_DOMAIN) {
+            sb.append("import ").append(pkg).append(".domain.").append(name).append(";\n");
+        }
+        if (violation == Violation.CONTROLLER_IMPORTS_REPOSITORY) {
+            sb.append("import ").append(pkg).append(".repository.").append(name).append("Repository;\n");
+        }
+        sb.append("import ").append(pkg).append(".exposition.dto.").append(name).append("DTO;\n");
+        sb.append("import ").append(pkg).append(".service.").append(name).append("Service;\n");
+        sb.append("import org.springframework.web.bind.annotation.GetMapping;\n");
+        sb.append("import org.springframework.web.bind.annotation.PathVariable;\n");
+        sb.append("import org.springframework.web.bind.annotation.RequestMapping;\n");
+        sb.append("import org.springframework.web.bind.annotation.RestController;\n\n");
+        sb.append("@RestController\n");
+        if (violation == Violation.CONTROLLER_WITH_SERVICE_ANNOTATIONS) {
+            sb.append("@Transactional\n");
+        }
+        sb.append("@RequestMapping(\"/").append(name.toLowerCase()).append("\")\n");
+        sb.append("public class ").append(name).append("Controller {\n");
+        sb.append("    private final ").append(name).append("Service servicio;\n");
+        if (violation == Violation.CONTROLLER_USES_ENTITY_MANAGER) {
+            sb.append("    private EntityManager em;\n");
+        }
+        sb.append('\n');
+        sb.append("    public ").append(name).append("Controller(").append(name).append("Service servicio) {\n");
+        sb.append("        this.servicio = servicio;\n");
+        sb.append("    }\n\n");
+        sb.append("    @GetMapping(\"/{id}\")\n");
+        sb.append("    public ").append(name).append("DTO buscar(@PathVariable Long id) {\n");
+        sb.append("        return new ").append(name).append("DTO(id, servicio.buscarNombre(id));\n");
+        sb.append("    }\n");
+        if (violation == Violation.CONTROLLER_USES_ENTITY_MANAGER) {
+            sb.append('\n');
+            sb.append("    public void guardar(Object registro) {\n");
+            sb.append("        em.persist(registro);\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String serviceInterface(String pkg, String name) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(pkg).append(".service;\n\n");
+        sb.append("public interface ").append(name).append("Service {\n");
+        sb.append("    String buscarNombre(Long id);\n");
+        sb.append("    long calcularTotal(Long id);\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String serviceImpl(String pkg, String name, Violation violation) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(pkg).append(".service.impl;\n\n");
+        sb.append("import ").append(pkg).append(".domain.").append(name).append(";\n");
+        sb.append("import ").append(pkg).append(".repository.").append(name).append("Repository;\n");
+        sb.append("import ").append(pkg).append(".service.").append(name).append("Service;\n");
+        if (violation == Violation.SERVICE_IMPORTS_CONTROLLER) {
+            sb.append("import ").append(pkg).append(".exposition.rest.").append(name).append("Controller;\n");
+        }
+        if (violation == Violation.SERVICE_WITH_SQL) {
+            sb.append("import javax.persistence.EntityManager;\n");
+        }
+        sb.append('\n');
+        sb.append("public class ").append(name).append("ServiceImpl implements ").append(name).append("Service {\n");
+        sb.append("    private final ").append(name).append("Repository repositorio;\n");
+        if (violation == Violation.SERVICE_WITH_SQL) {
+            sb.append("    private EntityManager em;\n");
+        }
+        sb.append('\n');
+        sb.append("    public ").append(name).append("ServiceImpl(").append(name).append("Repository repositorio) {\n");
+        sb.append("        this.repositorio = repositorio;\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    public String buscarNombre(Long id) {\n");
+        sb.append("        ").append(name).append(" registro = repositorio.buscar(id);\n");
+        sb.append("        return registro == null ? null : registro.getNombre();\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    public long calcularTotal(Long id) {\n");
+        if (violation == Violation.SERVICE_WITH_SQL) {
+            sb.append("        return (Long) em.createQuery(\"SELECT SUM(d.monto) FROM Detalle d WHERE d.id = :id\")\n");
+            sb.append("            .setParameter(\"id\", id)\n");
+            sb.append("            .getSingleResult();\n");
+        } else {
+            sb.append("        ").append(name).append(" registro = repositorio.buscar(id);\n");
+            sb.append("        return registro == null ? 0 : registro.getTotal();\n");
+        }
+        sb.append("    }\n");
+        if (violation == Violation.SERVICE_IMPORTS_CONTROLLER) {
+            sb.append('\n');
+            sb.append("    public Object delegar(").append(name).append("Controller destino, Long id) {\n");
+            sb.append("        return destino.buscar(id);\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String repository(String pkg, String name, Violation violation) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(pkg).append(".repository;\n\n");
+        sb.append("import ").append(pkg).append(".domain.").append(name).append(";\n");
+        if (violation == Violation.REPOSITORY_IMPORTS_SERVICE) {
+            sb.append("import ").append(pkg).append(".service.").append(name).append("Service;\n");
+        }
+        if (violation == Violation.REPOSITORY_IMPORTS_SERVICE_IMPL) {
+            sb.append("import ").append(pkg).append(".service.impl.").append(name).append("ServiceImpl;\n");
+        }
+        sb.append("import java.util.List;\n\n");
+        sb.append("public interface ").append(name).append("Repository {\n");
+        sb.append("    ").append(name).append(" buscar(Long id);\n");
+        sb.append("    List<").append(name).append("> listar();\n");
+        sb.append("    void eliminar(Long id);\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String entity(String pkg, String name) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(pkg).append(".repository.entity;\n\n");
+        sb.append("import javax.persistence.Entity;\n");
+        sb.append("import javax.persistence.Id;\n");
+        sb.append("import javax.persistence.Table;\n\n");
+        sb.append("@Entity\n");
+        sb.append("@Table(name = \"").append(name.toLowerCase()).append("\")\n");
+        sb.append("public class ").append(name).append("Entity {\n");
+        sb.append("    @Id\n");
+        sb.append("    private Long id;\n");
+        sb.append("    private String nombre;\n\n");
+        sb.append("    public Long getId() { return id; }\n");
+        sb.append("    public void setId(Long id) { this.id = id; }\n");
+        sb.append("    public String getNombre() { return nombre; }\n");
+        sb.append("    public void setNombre(String nombre) { this.nombre = nombre; }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Imports entre los paquetes de un módulo, para calcular los issues esperados de
+     * {@value #CYCLES_RULE}. Los módulos no se importan entre sí y cada uno tiene solo siete
+     * paquetes, así que los ciclos se buscan con un cierre transitivo sin depender del grafo del
+     * plugin: un archivo tiene issue si importa un paquete de otra capa que a su vez alcanza el
+     * paquete del archivo.
+     */
+    private static final class ModuleDependencies {
+        private final List<String> packages = new ArrayList<>();
+        private final List<int[]> fileImports = new ArrayList<>();
+        private final List<Integer> filePackages = new ArrayList<>();
+
+        void add(String pkg, String content) {
+            List<Integer> targets = new ArrayList<>();
+            for (String line : content.split("\n")) {
+                if (line.startsWith("import " + BASE_PACKAGE + ".")) {
+                    String imported = line.substring("import ".length(), line.indexOf(';'));
+                    targets.add(indexOf(imported.substring(0, imported.lastIndexOf('.'))));
+                }
+            }
+            filePackages.add(indexOf(pkg));
+            fileImports.add(targets.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        int filesInCrossLayerCycles() {
+            int n = packages.size();
+            boolean[][] reaches = new boolean[n][n];
+            for (int file = 0; file < filePackages.size(); file++) {
+                for (int target : fileImports.get(file)) {
+                    reaches[filePackages.get(file)][target] = true;
+                }
+            }
+            for (int k = 0; k < n; k++) {
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        reaches[i][j] |= reaches[i][k] && reaches[k][j];
+                    }
+                }
+            }
+            int count = 0;
+            for (int file = 0; file < filePackages.size(); file++) {
+                int from = filePackages.get(file);
+                for (int target : fileImports.get(file)) {
+                    if (target != from && reaches[target][from] && !layer(target).equals(layer(from))) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private String layer(int index) {
+            String pkg = packages.get(index);
+            String suffix = pkg.substring(pkg.indexOf('.', BASE_PACKAGE.length() + 1) + 1);
+            return PACKAGE_LAYERS.get(suffix);
+        }
+
+        private int indexOf(String pkg) {
+            int index = packages.indexOf(pkg);
+            if (index < 0) {
+                packages.add(pkg);
+                index = packages.size() - 1;
+            }
+            return index;
+        }
+    }
+}
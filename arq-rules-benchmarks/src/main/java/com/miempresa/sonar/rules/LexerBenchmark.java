@@ -0,0 +1,44 @@
+package com.miempresa.sonar.rules;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de tokenizar un archivo con {@link JavaLexer}, para compararlo con
+ * {@code SensorBenchmark.analyzeFile} sobre la misma fuente: el tokenizado se hace una sola vez
+ * por archivo y lo comparten todas las reglas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+
+    @Param({BenchmarkSources.DTO, BenchmarkSources.SERVICE, BenchmarkSources.LITERAL})
+    public String source;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = BenchmarkSources.source(source);
+    }
+
+    @Benchmark
+    public int tokenize() {
+        // JavaTokens no es público: se devuelve el número de tokens para que JMH no descarte el trabajo
+        return JavaTokens.of(content).size();
+    }
+}
@@ -0,0 +1,53 @@
+package com.miempresa.sonar.rules;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputFile;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escalado de {@link NoRepositoryAccessFromExpositionRule} con el tamaño de un controller
+ * generado, de 2 500 a 20 000 líneas. El recorrido de los parámetros de cada método es lineal:
+ * el tiempo por archivo debe crecer en la misma proporción que las líneas, es decir, un tiempo
+ * por línea ({@code tiempo / lines}) constante entre los cuatro tamaños.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParameterScanBenchmark {
+
+    @Param({"2500", "5000", "10000", "20000"})
+    public int lines;
+
+    private final ArchitectureCheck check = new NoRepositoryAccessFromExpositionRule();
+    private InputFile inputFile;
+    private SourceFile file;
+
+    @Setup
+    public void setUp() throws IOException {
+        inputFile = BenchmarkSources.inputFile(
+            "src/main/java/com/miempresa/bench/exposition/rest/PedidoController.java",
+            BenchmarkSources.controller("PedidoController", "com.miempresa.bench.exposition.rest", lines));
+        file = new SourceFile(inputFile, inputFile.contents());
+    }
+
+    @Benchmark
+    public FileIssues analyzeFile() {
+        FileIssues issues = new FileIssues(inputFile);
+        check.analyzeFile(file, issues);
+        return issues;
+    }
+}
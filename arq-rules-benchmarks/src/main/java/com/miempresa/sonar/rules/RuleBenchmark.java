@@ -0,0 +1,65 @@
+package com.miempresa.sonar.rules;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputFile;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el {@code analyzeFile} de cada regla sobre un archivo ya leído. Una operación equivale
+ * a un archivo, así que {@code gc.alloc.rate.norm} son los bytes asignados por archivo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleBenchmark {
+
+    @Param({
+        "NoDomainAccessFromExpositionRule",
+        "NoRepositoryAccessFromExpositionRule",
+        "NoPersistenceInControllerRule",
+        "NoOtherLayerAnnotationsInControllerRule",
+        "NoControllerAccessFromServiceRule",
+        "NoPersistenceInServiceRule",
+        "NoFrameworkDependenciesInDomainRule",
+        "NoUpperLayerAccessFromRepositoryRule"
+    })
+    public String rule;
+
+    @Param({BenchmarkSources.DTO, BenchmarkSources.SERVICE, BenchmarkSources.LITERAL})
+    public String source;
+
+    private ArchitectureCheck check;
+    private InputFile inputFile;
+    private SourceFile file;
+
+    @Setup
+    public void setUp() throws IOException {
+        check = ArchitectureChecks.all().stream()
+            .filter(candidate -> candidate.getClass().getSimpleName().equals(rule))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Regla desconocida: " + rule));
+        inputFile = BenchmarkSources.inputFile(source);
+        file = new SourceFile(inputFile, inputFile.contents());
+    }
+
+    @Benchmark
+    public FileIssues analyzeFile() {
+        FileIssues issues = new FileIssues(inputFile);
+        check.analyzeFile(file, issues);
+        return issues;
+    }
+}
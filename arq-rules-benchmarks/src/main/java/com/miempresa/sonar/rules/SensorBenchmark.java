@@ -0,0 +1,110 @@
+package com.miempresa.sonar.rules;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el sensor completo (todas las reglas de {@link MyCustomRulesPlugin}) sobre un proyecto
+ * con la mezcla típica de archivos: muchos DTOs, algunos servicios grandes y pocos archivos
+ * generados con literales enormes.
+ *
+ * <p>{@code analyzeFile} mide el camino de un solo archivo (lectura + todas las reglas) y
+ * {@code execute} el proyecto completo; en ambos una operación equivale a un archivo.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SensorBenchmark {
+
+    private static final int PROJECT_FILES = 200;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    @Param({BenchmarkSources.DTO, BenchmarkSources.SERVICE, BenchmarkSources.LITERAL})
+    public String source;
+
+    private final LayeredArchitectureSensor sensor = new LayeredArchitectureSensor();
+    private final SourceReader reader = new SourceReader();
+    private final RuleStats.Recorder recorder = new RuleStats(ArchitectureChecks.all()).newRecorder();
+    private final MatchBudget budget = new MatchBudget(ArchitectureProperties.DEFAULT_PATTERN_MAX_STEPS,
+        ArchitectureProperties.DEFAULT_PATTERN_TIMEOUT_MS);
+    private Path baseDir;
+    private InputFile singleFile;
+    private List<InputFile> projectFiles;
+    private SensorContextTester context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("arq-rules-bench");
+        singleFile = BenchmarkSources.inputFile(source);
+        projectFiles = new ArrayList<>();
+        for (int i = 0; i < PROJECT_FILES; i++) {
+            projectFiles.add(projectFile(i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void newContext() {
+        // SensorContextTester acumula los issues: uno nuevo por invocación
+        context = SensorContextTester.create(baseDir);
+        context.fileSystem().setWorkDir(baseDir.resolve(".scannerwork"));
+        context.settings().setProperty(ArchitectureProperties.PARALLEL_ENABLED_KEY, parallel);
+        for (InputFile inputFile : projectFiles) {
+            context.fileSystem().add(inputFile);
+        }
+    }
+
+    @Benchmark
+    public FileIssues analyzeFile() {
+        return sensor.analyzeFile(singleFile, AnalysisCache.disabled(), new LayerTable(), BytecodeIndex.empty(), reader,
+            recorder, budget, ArchitectureProperties.streamingChunkChars(ArchitectureProperties.DEFAULT_STREAMING_THRESHOLD_KB),
+            ArchitectureProperties.DEFAULT_ISSUE_LIMITS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROJECT_FILES)
+    public SensorContextTester execute() {
+        sensor.execute(context);
+        return context;
+    }
+
+    private static InputFile projectFile(int i) {
+        String base = "src/main/java/com/miempresa/bench/";
+        if (i % 40 == 0) {
+            String name = "Generado" + i;
+            return BenchmarkSources.inputFile(base + "domain/generated/" + name + ".java",
+                BenchmarkSources.hugeLiterals(name, "com.miempresa.bench.domain.generated", 256 * 1024));
+        }
+        if (i % 4 == 0) {
+            String name = "Servicio" + i + "Impl";
+            return BenchmarkSources.inputFile(base + "service/impl/" + name + ".java",
+                BenchmarkSources.service(name, "com.miempresa.bench.service.impl", 1_500));
+        }
+        String name = "Recurso" + i + "DTO";
+        return BenchmarkSources.inputFile(base + "exposition/dto/" + name + ".java",
+            BenchmarkSources.dto(name, "com.miempresa.bench.exposition.dto", 10));
+    }
+}
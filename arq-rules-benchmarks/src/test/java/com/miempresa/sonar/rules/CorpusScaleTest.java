@@ -0,0 +1,91 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prueba de escala: ejecuta el sensor sobre un corpus de {@link CorpusGenerator} y compara los
+ * issues por regla con los de {@link Corpus#expectedIssues}. Por defecto genera 500 archivos con
+ * la semilla 42; el perfil {@code corpus-escala} la repite sobre un corpus grande:
+ *
+ * <pre>
+ * mvn -f arq-rules-benchmarks/pom.xml test -P corpus-escala -Darq.corpus.files=100000
+ * mvn -f arq-rules-benchmarks/pom.xml test -P corpus-escala -Darq.corpus.dir=/tmp/corpus
+ * </pre>
+ */
+public class CorpusScaleTest extends TestCase {
+
+    private static final int FILES = Integer.getInteger("arq.corpus.files", 500);
+    private static final String CORPUS = System.getProperty("arq.corpus.dir", "");
+
+    private Path baseDir;
+    private boolean generated;
+
+    @Override
+    protected void setUp() throws IOException {
+        if (CORPUS.isEmpty()) {
+            baseDir = Files.createTempDirectory("arq-rules-corpus");
+            new CorpusGenerator(baseDir, FILES, 0.05, 42L).generate();
+            generated = true;
+        } else {
+            baseDir = Paths.get(CORPUS);
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        if (generated) {
+            delete(baseDir.toFile());
+        }
+    }
+
+    public void testSequential() throws IOException {
+        assertIssuesAsExpected(false);
+    }
+
+    public void testParallel() throws IOException {
+        assertIssuesAsExpected(true);
+    }
+
+    private void assertIssuesAsExpected(boolean parallel) throws IOException {
+        Map<String, Integer> expected = Corpus.expectedIssues(baseDir);
+        assertFalse(expected.isEmpty());
+
+        SensorContextTester context = SensorContextTester.create(baseDir);
+        context.fileSystem().setWorkDir(baseDir.resolve(".scannerwork"));
+        context.settings().setProperty(ArchitectureProperties.PARALLEL_ENABLED_KEY, parallel);
+        for (InputFile inputFile : Corpus.inputFiles(baseDir)) {
+            context.fileSystem().add(inputFile);
+        }
+
+        new LayeredArchitectureSensor().execute(context);
+
+        Map<String, Integer> actual = new TreeMap<>();
+        for (Issue issue : context.allIssues()) {
+            actual.merge(issue.ruleKey().rule(), 1, Integer::sum);
+        }
+        // Un conteo esperado de 0 no tiene issues que contar en el contexto
+        expected.values().removeIf(count -> count == 0);
+        assertEquals(expected, actual);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,182 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Caché de hallazgos por archivo sobre la caché de análisis del scanner (análisis de PR y ramas).
+ *
+ * <p>Cada entrada se guarda bajo la versión del conjunto de reglas y la clave del archivo, y
+ * contiene el hash del contenido analizado, la capa del archivo, su paquete e imports (para el
+ * grafo de dependencias) y los issues encontrados. Un archivo se reutiliza sin leerlo cuando el
+ * scanner lo reporta como {@link InputFile.Status#SAME}, y sin volver a ejecutar las reglas cuando
+ * su contenido tiene el mismo hash que la entrada previa.</p>
+ *
+ * <p>{@link #RULESET_VERSION} debe incrementarse cada vez que cambie el resultado de alguna regla.
+ * Con el análisis de bytecode los resultados dependen también de las clases compiladas, así que
+ * las entradas de ese modo se guardan con otra clave; lo mismo con las reglas sobre el árbol de
+ * sonar-java, donde el sensor no guarda issues por archivo, con un modelo de capas distinto
+ * del de por defecto, que cambia la capa de los archivos y lo que reporta cada regla, y con
+ * otros límites de issues por archivo. Los issues de un archivo dependen además de dónde están
+ * declarados los tipos del proyecto que usa ({@link TypeIndex}): una entrada solo se reutiliza si
+ * el índice de tipos encuentra lo mismo que cuando se guardó.</p>
+ */
+final class AnalysisCache {
+
+    private static final Logger LOG = Loggers.get(AnalysisCache.class);
+
+    static final int RULESET_VERSION = 8;
+
+    // Hash FNV-1a de un contenido vacío, punto de partida de hash(long, ...)
+    static final long EMPTY_HASH = 0xcbf29ce484222325L;
+
+    private static final String KEY_PREFIX = "arq-rules-plugin:issues:v" + RULESET_VERSION + ":";
+
+    private static final AnalysisCache DISABLED = new AnalysisCache(null, null, KEY_PREFIX);
+
+    private final ReadCache previousCache;
+    private final WriteCache nextCache;
+    private final String keyPrefix;
+
+    private AnalysisCache(ReadCache previousCache, WriteCache nextCache, String keyPrefix) {
+        this.previousCache = previousCache;
+        this.nextCache = nextCache;
+        this.keyPrefix = keyPrefix;
+    }
+
+    static AnalysisCache create(SensorContext context, LayerModel model) {
+        if (!ArchitectureProperties.incrementalEnabled(context.config()) || !context.isCacheEnabled()) {
+            return DISABLED;
+        }
+        String keyPrefix = KEY_PREFIX;
+        if (ArchitectureProperties.bytecodeEnabled(context.config())) {
+            keyPrefix += "bytecode:";
+        }
+        if (ArchitectureProperties.javaFrontendEnabled(context.config())) {
+            keyPrefix += "ast:";
+        }
+        if (!model.isDefault()) {
+            keyPrefix += "layers-" + Long.toHexString(model.fingerprint()) + ":";
+        }
+        FileIssues.Limits limits = ArchitectureProperties.issueLimits(context.config());
+        if (!limits.equals(ArchitectureProperties.DEFAULT_ISSUE_LIMITS)) {
+            keyPrefix += "limits-" + limits + ":";
+        }
+        return new AnalysisCache(context.previousCache(), context.nextCache(), keyPrefix);
+    }
+
+    static AnalysisCache disabled() {
+        return DISABLED;
+    }
+
+    boolean isEnabled() {
+        return nextCache != null;
+    }
+
+    /**
+     * Hallazgos previos de un archivo que el scanner reporta sin cambios, sin leer su contenido,
+     * si los tipos del proyecto que usa siguen donde estaban.
+     */
+    FileIssues replayUnchanged(InputFile inputFile, TypeIndex types) {
+        if (!isEnabled() || inputFile.status() != InputFile.Status.SAME) {
+            return null;
+        }
+        FileIssues previous = read(inputFile);
+        return previous != null && previous.findsSameTypes(types) ? previous : null;
+    }
+
+    /** Hallazgos previos de un archivo cuyo contenido actual tiene el mismo hash. */
+    FileIssues replaySameContent(InputFile inputFile, long contentHash, TypeIndex types) {
+        if (!isEnabled()) {
+            return null;
+        }
+        FileIssues previous = read(inputFile);
+        return previous != null && previous.contentHash() == contentHash && previous.findsSameTypes(types)
+            ? previous : null;
+    }
+
+    /**
+     * Paquete y tipo de un archivo sin cambios guardados en su entrada, para el índice de tipos sin
+     * leer el archivo; {@code null} si hay que leer su cabecera.
+     */
+    TypeIndex.DeclaredType declaredType(InputFile inputFile) {
+        if (!isEnabled() || inputFile.status() != InputFile.Status.SAME) {
+            return null;
+        }
+        String key = key(inputFile);
+        if (!previousCache.contains(key)) {
+            return null;
+        }
+        try (InputStream stream = previousCache.read(key);
+             DataInputStream in = new DataInputStream(stream)) {
+            return FileIssues.readDeclaredType(in);
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Entrada de caché inválida para {}: {}", inputFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Se llama desde el hilo del scanner, después de guardar los issues del archivo. */
+    void save(FileIssues issues) {
+        if (!isEnabled()) {
+            return;
+        }
+        String key = key(issues.inputFile());
+        if (issues.isReplayed()) {
+            nextCache.copyFromPrevious(key);
+        } else if (issues.isAnalyzed()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                issues.writeTo(out);
+            } catch (IOException e) {
+                throw new IllegalStateException("No se pudo serializar la caché de " + issues.inputFile(), e);
+            }
+            nextCache.write(key, bytes.toByteArray());
+        }
+    }
+
+    private FileIssues read(InputFile inputFile) {
+        String key = key(inputFile);
+        if (!previousCache.contains(key)) {
+            return null;
+        }
+        try (InputStream stream = previousCache.read(key);
+             DataInputStream in = new DataInputStream(stream)) {
+            return FileIssues.readFrom(inputFile, in);
+        } catch (IOException | RuntimeException e) {
+            // Una entrada ilegible solo obliga a analizar el archivo de nuevo
+            LOG.debug("Entrada de caché inválida para {}: {}", inputFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private String key(InputFile inputFile) {
+        return keyPrefix + inputFile.key();
+    }
+
+    /** Hash FNV-1a de 64 bits sobre los caracteres, sin copiar el contenido. */
+    static long hash(CharSequence content) {
+        return hash(EMPTY_HASH, content, 0, content.length());
+    }
+
+    /**
+     * Continúa el hash con los caracteres {@code [from, to)}: un archivo leído por bloques
+     * ({@link SourceChunks}) tiene el mismo hash que leído entero.
+     */
+    static long hash(long hash, CharSequence content, int from, int to) {
+        for (int i = from; i < to; i++) {
+            hash ^= content.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,28 @@
+package com.miempresa.sonar.rules;
+
+/**
+ * Regla de arquitectura ejecutada por {@link LayeredArchitectureSensor}.
+ * Cada regla recibe el modelo compartido del archivo en lugar de leerlo por su cuenta
+ * y deja sus hallazgos en {@link FileIssues}; el sensor es quien los guarda en SonarQube.
+ * Las implementaciones no deben guardar estado, ya que pueden ejecutarse en paralelo.
+ */
+public interface ArchitectureCheck {
+
+    /**
+     * Filtro por capa: el sensor solo llama a {@link #analyzeFile} con los archivos de las capas
+     * que interesan a la regla.
+     */
+    default boolean appliesTo(FileLayer layer) {
+        return true;
+    }
+
+    /**
+     * Indica si la regla resuelve nombres simples de tipo ({@link SourceFile#resolveType}); el
+     * sensor solo arma el índice de tipos del proyecto si alguna regla activa lo necesita.
+     */
+    default boolean resolvesTypes() {
+        return false;
+    }
+
+    void analyzeFile(SourceFile file, FileIssues issues);
+}
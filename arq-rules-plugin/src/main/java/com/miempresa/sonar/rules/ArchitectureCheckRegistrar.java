@@ -0,0 +1,30 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.config.Configuration;
+import org.sonar.plugins.java.api.CheckRegistrar;
+
+/**
+ * Registra en el plugin de Java los visitantes de {@link ArchitectureChecks#javaChecks(LayerTable)} cuando
+ * {@code sonar.arq.javaFrontend.enabled=true}. sonar-java ejecuta las reglas activas del
+ * repositorio {@code arq-rules-plugin} sobre el árbol que ya construye para sus propias reglas,
+ * con las mismas claves que las reglas del sensor y el mismo modelo de capas ({@link LayerModel}).
+ *
+ * <p>Las reglas se registran como instancias que comparten una {@link LayerTable} del análisis:
+ * dos análisis en la misma JVM no ven el modelo del otro.</p>
+ */
+public class ArchitectureCheckRegistrar implements CheckRegistrar {
+
+    private final Configuration config;
+
+    public ArchitectureCheckRegistrar(Configuration config) {
+        this.config = config;
+    }
+
+    @Override
+    public void register(RegistrarContext registrarContext) {
+        if (ArchitectureProperties.javaFrontendEnabled(config)) {
+            LayerModel model = LayerModel.load(config, ArchitectureProperties.projectBaseDir(config));
+            registrarContext.registerMainChecks("arq-rules-plugin", ArchitectureChecks.javaChecks(new LayerTable(model)));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.plugins.java.api.JavaCheck;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reglas que ejecuta {@link LayeredArchitectureSensor}, en el mismo orden en que se definen.
+ */
+public final class ArchitectureChecks {
+
+    private ArchitectureChecks() {
+    }
+
+    public static List<ArchitectureCheck> all() {
+        return Collections.unmodifiableList(Arrays.asList(
+            // Exposición
+            // CLAR001: Evitar acceso al dominio desde exposición
+            new NoDomainAccessFromExpositionRule(),
+            // CLAR002: Evitar acceso a repositorios desde exposición
+            new NoRepositoryAccessFromExpositionRule(),
+
+            // Presentacion
+            // CLAR011: No persistencia en controladores
+            new NoPersistenceInControllerRule(),
+            // CLAR012: No anotaciones de otras capas en controladores
+            new NoOtherLayerAnnotationsInControllerRule(),
+
+            // Servicios/Aplicación
+            // CLAR021: No acceso a controladores desde servicios
+            new NoControllerAccessFromServiceRule(),
+            // CLAR022: No lógica de persistencia en servicios
+            new NoPersistenceInServiceRule(),
+
+            // Domain/Modelo
+            // CLAR031: No dependencias de framework en dominio
+            new NoFrameworkDependenciesInDomainRule(),
+
+            // Persistencia
+            // CLAR041: No acceso a capas superiores desde repositorios
+            new NoUpperLayerAccessFromRepositoryRule()
+        ));
+    }
+
+    /**
+     * Las mismas reglas como visitantes del árbol de sonar-java, para
+     * {@code sonar.arq.javaFrontend.enabled} ({@link ArchitectureCheckRegistrar}). Todas usan la
+     * tabla de capas del análisis.
+     */
+    public static List<JavaCheck> javaChecks(LayerTable layers) {
+        return Collections.unmodifiableList(Arrays.asList(
+            new NoDomainAccessFromExpositionCheck(layers),
+            new NoRepositoryAccessFromExpositionCheck(layers),
+            new NoPersistenceInControllerCheck(layers),
+            new NoOtherLayerAnnotationsInControllerCheck(layers),
+            new NoControllerAccessFromServiceCheck(layers),
+            new NoPersistenceInServiceCheck(layers),
+            new NoFrameworkDependenciesInDomainCheck(layers),
+            new NoUpperLayerAccessFromRepositoryCheck(layers)
+        ));
+    }
+}
@@ -0,0 +1,52 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.Metrics;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Métricas del plugin: número de archivos Java del proyecto en cada capa, según la
+ * clasificación de {@link LayerTable}.
+ */
+public class ArchitectureMetrics implements Metrics {
+
+    public static final String DOMAIN = "Layered Architecture";
+
+    public static final Metric<Integer> EXPOSITION_FILES = files("arq_exposition_files", "Archivos de exposición");
+    public static final Metric<Integer> SERVICE_FILES = files("arq_service_files", "Archivos de servicios");
+    public static final Metric<Integer> DOMAIN_FILES = files("arq_domain_files", "Archivos de dominio");
+    public static final Metric<Integer> REPOSITORY_FILES = files("arq_repository_files", "Archivos de persistencia");
+
+    // La API de Metrics declara la lista con el tipo sin parametrizar
+    @SuppressWarnings("rawtypes")
+    @Override
+    public List<Metric> getMetrics() {
+        return Arrays.asList(EXPOSITION_FILES, SERVICE_FILES, DOMAIN_FILES, REPOSITORY_FILES);
+    }
+
+    /** Métrica con el número de archivos de la capa, o {@code null} para {@link Layer#NONE}. */
+    static Metric<Integer> filesIn(Layer layer) {
+        switch (layer) {
+            case EXPOSITION:
+                return EXPOSITION_FILES;
+            case SERVICE:
+                return SERVICE_FILES;
+            case DOMAIN:
+                return DOMAIN_FILES;
+            case REPOSITORY:
+                return REPOSITORY_FILES;
+            default:
+                return null;
+        }
+    }
+
+    private static Metric<Integer> files(String key, String name) {
+        return new Metric.Builder(key, name, Metric.ValueType.INT)
+            .setDescription(name + " según la clasificación por capas del plugin")
+            .setDirection(Metric.DIRECTION_NONE)
+            .setQualitative(false)
+            .setDomain(DOMAIN)
+            .create();
+    }
+}
@@ -0,0 +1,227 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.PropertyType;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.config.PropertyDefinition;
+import org.sonar.api.resources.Qualifiers;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Propiedades del scanner que configuran el análisis del plugin.
+ */
+public final class ArchitectureProperties {
+
+    public static final String CATEGORY = "Layered Architecture";
+
+    public static final String PARALLEL_ENABLED_KEY = "sonar.arq.parallel.enabled";
+    public static final String PARALLEL_THREADS_KEY = "sonar.arq.parallel.threads";
+    public static final String INCREMENTAL_ENABLED_KEY = "sonar.arq.incremental.enabled";
+    public static final String BYTECODE_ENABLED_KEY = "sonar.arq.bytecode.enabled";
+    public static final String JAVA_FRONTEND_ENABLED_KEY = "sonar.arq.javaFrontend.enabled";
+    public static final String PATTERN_MAX_STEPS_KEY = "sonar.arq.patterns.maxSteps";
+    public static final String PATTERN_TIMEOUT_KEY = "sonar.arq.patterns.timeoutMs";
+    public static final String STREAMING_THRESHOLD_KEY = "sonar.arq.streaming.thresholdKb";
+    public static final String LAYERS_FILE_KEY = "sonar.arq.layers.file";
+    public static final String ISSUES_MAX_PER_RULE_KEY = "sonar.arq.issues.maxPerRule";
+    public static final String ISSUES_MAX_PER_FILE_KEY = "sonar.arq.issues.maxPerFile";
+
+    static final long DEFAULT_PATTERN_MAX_STEPS = 100_000_000L;
+    static final int DEFAULT_PATTERN_TIMEOUT_MS = 5_000;
+    static final int DEFAULT_STREAMING_THRESHOLD_KB = 4_096;
+    static final int DEFAULT_ISSUES_MAX_PER_RULE = 100;
+    static final int DEFAULT_ISSUES_MAX_PER_FILE = 500;
+    static final FileIssues.Limits DEFAULT_ISSUE_LIMITS =
+        new FileIssues.Limits(DEFAULT_ISSUES_MAX_PER_RULE, DEFAULT_ISSUES_MAX_PER_FILE);
+
+    // Definida por el plugin de Java; el modo de bytecode solo la lee
+    static final String JAVA_BINARIES_KEY = "sonar.java.binaries";
+
+    // Definida por el scanner; el registro de sonar-java no recibe el FileSystem
+    static final String PROJECT_BASE_DIR_KEY = "sonar.projectBaseDir";
+
+    private ArchitectureProperties() {
+    }
+
+    public static List<PropertyDefinition> definitions() {
+        List<PropertyDefinition> definitions = new ArrayList<>(Arrays.asList(
+            PropertyDefinition.builder(PARALLEL_ENABLED_KEY)
+                .name("Análisis en paralelo")
+                .description("Analiza los archivos en un pool de hilos. Los issues se guardan en el mismo orden que en el análisis secuencial.")
+                .category(CATEGORY)
+                .type(PropertyType.BOOLEAN)
+                .defaultValue("false")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build(),
+            PropertyDefinition.builder(PARALLEL_THREADS_KEY)
+                .name("Hilos del análisis en paralelo")
+                .description("Tamaño del pool de hilos. Con 0 se usa el número de procesadores disponibles.")
+                .category(CATEGORY)
+                .type(PropertyType.INTEGER)
+                .defaultValue("0")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build(),
+            PropertyDefinition.builder(INCREMENTAL_ENABLED_KEY)
+                .name("Análisis incremental")
+                .description("En análisis de pull requests y ramas reutiliza los issues de los archivos sin cambios desde la caché del scanner.")
+                .category(CATEGORY)
+                .type(PropertyType.BOOLEAN)
+                .defaultValue("true")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build(),
+            PropertyDefinition.builder(BYTECODE_ENABLED_KEY)
+                .name("Análisis de bytecode")
+                .description("Lee también las clases compiladas de sonar.java.binaries para detectar dependencias entre capas "
+                    + "que no aparecen en los imports: nombres calificados, imports con comodín y tipos inferidos.")
+                .category(CATEGORY)
+                .type(PropertyType.BOOLEAN)
+                .defaultValue("false")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build(),
+            PropertyDefinition.builder(JAVA_FRONTEND_ENABLED_KEY)
+                .name("Reglas sobre el árbol de sonar-java (experimental)")
+                .description("Experimental. Ejecuta las reglas de capas como visitantes del árbol sintáctico y la semántica "
+                    + "del plugin de Java en lugar de buscar patrones en el texto. Requiere el plugin de Java en el servidor.")
+                .category(CATEGORY)
+                .type(PropertyType.BOOLEAN)
+                .defaultValue("false")
+                .onQualifiers(Qualifiers.PROJECT)
+                .build(),
+            PropertyDefinition.builder(PATTERN_MAX_STEPS_KEY)
+                .name("Límite de pasos de patrones por archivo")
+                .description("Caracteres que las expresiones regulares de las reglas pueden leer en un archivo. Al superarlo se "
+                    + "interrumpen las reglas pendientes del archivo y se muestra un aviso en el análisis. Con 0 no hay límite.")
+                .category(CATEGORY)
+                .type(PropertyType.INTEGER)
+                .defaultValue(String.valueOf(DEFAULT_PATTERN_MAX_STEPS))
+                .onQualifiers(Qualifiers.PROJECT)
+                .build(),
+            PropertyDefinition.builder(PATTERN_TIMEOUT_KEY)
+                .name("Tiempo máximo de patrones por archivo (ms)")
+                .description("Tiempo que las expresiones regulares de las reglas pueden dedicar a un archivo. Al superarlo se "
+                    + "interrumpen las reglas pendientes del archivo y se muestra un aviso en el análisis. Con 0 no hay límite.")
+                .category(CATEGORY)
+                .type(PropertyType.INTEGER)
+                .defaultValue(String.valueOf(DEFAULT_PATTERN_TIMEOUT_MS))
+                .onQualifiers(Qualifiers.PROJECT)
+                .build(),
+            PropertyDefinition.builder(STREAMING_THRESHOLD_KEY)
+                .name("Tamaño para leer archivos por bloques (KB)")
+                .description("Los archivos más grandes (fuentes generados) se analizan por bloques de este tamaño en lugar de "
+                    + "cargarse enteros en memoria. Con 0 los archivos siempre se leen enteros.")
+                .category(CATEGORY)
+                .type(PropertyType.INTEGER)
+                .defaultValue(String.valueOf(DEFAULT_STREAMING_THRESHOLD_KB))
+                .onQualifiers(Qualifiers.PROJECT)
+                .build(),
+            PropertyDefinition.builder(ISSUES_MAX_PER_RULE_KEY)
+                .name("Issues por regla y archivo")
+                .description("Issues de una misma regla que se reportan por separado en un archivo. Los demás se resumen en un "
+                    + "issue con sus ubicaciones como ubicaciones secundarias. Con 0 no hay límite.")
+                .category(CATEGORY)
+                .type(PropertyType.INTEGER)
+                .defaultValue(String.valueOf(DEFAULT_ISSUES_MAX_PER_RULE))
+                .onQualifiers(Qualifiers.PROJECT)
+                .build(),
+            PropertyDefinition.builder(ISSUES_MAX_PER_FILE_KEY)
+                .name("Issues por archivo")
+                .description("Issues de todas las reglas que se reportan por separado en un archivo. Los demás se resumen en un "
+                    + "issue por regla con sus ubicaciones como ubicaciones secundarias. Con 0 no hay límite.")
+                .category(CATEGORY)
+                .type(PropertyType.INTEGER)
+                .defaultValue(String.valueOf(DEFAULT_ISSUES_MAX_PER_FILE))
+                .onQualifiers(Qualifiers.PROJECT)
+                .build(),
+            PropertyDefinition.builder(LAYERS_FILE_KEY)
+                .name("Archivo del modelo de capas")
+                .description("Archivo de propiedades del proyecto, relativo a su directorio base, con las propiedades "
+                    + "sonar.arq.layers.<capa>.packages y sonar.arq.layers.<capa>.forbidden. Las que se definan en el "
+                    + "scanner tienen prioridad.")
+                .category(CATEGORY)
+                .onQualifiers(Qualifiers.PROJECT)
+                .build()
+        ));
+        for (Layer layer : LayerModel.layers()) {
+            String name = layer.name().toLowerCase(Locale.ROOT);
+            definitions.add(PropertyDefinition.builder(LayerModel.key(layer, LayerModel.PACKAGES_SUFFIX))
+                .name("Paquetes de la capa " + name)
+                // Sin valor por defecto: tendría prioridad sobre el archivo del modelo
+                .description("Nombres de paquete o directorio que identifican la capa, separados por comas. "
+                    + "Por defecto: " + String.join(", ", layer.defaultPackages()) + ".")
+                .category(CATEGORY)
+                .multiValues(true)
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
+            definitions.add(PropertyDefinition.builder(LayerModel.key(layer, LayerModel.FORBIDDEN_SUFFIX))
+                .name("Dependencias prohibidas de la capa " + name)
+                .description("Capas de las que esta capa no puede depender (exposition, service, domain, repository), "
+                    + "separadas por comas. Por defecto: " + defaultForbidden(layer) + ".")
+                .category(CATEGORY)
+                .multiValues(true)
+                .onQualifiers(Qualifiers.PROJECT)
+                .build());
+        }
+        return definitions;
+    }
+
+    private static String defaultForbidden(Layer from) {
+        List<String> names = new ArrayList<>();
+        for (Layer to : LayerModel.layers()) {
+            if (!LayerModel.defaults().allows(from, to)) {
+                names.add(to.name().toLowerCase(Locale.ROOT));
+            }
+        }
+        return names.isEmpty() ? "ninguna" : String.join(", ", names);
+    }
+
+    static boolean parallelEnabled(Configuration config) {
+        return config.getBoolean(PARALLEL_ENABLED_KEY).orElse(false);
+    }
+
+    static int parallelThreads(Configuration config) {
+        int threads = config.getInt(PARALLEL_THREADS_KEY).orElse(0);
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    static boolean incrementalEnabled(Configuration config) {
+        return config.getBoolean(INCREMENTAL_ENABLED_KEY).orElse(true);
+    }
+
+    static boolean bytecodeEnabled(Configuration config) {
+        return config.getBoolean(BYTECODE_ENABLED_KEY).orElse(false);
+    }
+
+    static boolean javaFrontendEnabled(Configuration config) {
+        return config.getBoolean(JAVA_FRONTEND_ENABLED_KEY).orElse(false);
+    }
+
+    /** Caracteres por bloque de los archivos grandes ({@link SourceChunks}); sin límite con 0. */
+    static int streamingChunkChars(Configuration config) {
+        return streamingChunkChars(config.getInt(STREAMING_THRESHOLD_KEY).orElse(DEFAULT_STREAMING_THRESHOLD_KB));
+    }
+
+    static int streamingChunkChars(int thresholdKb) {
+        if (thresholdKb <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.max(SourceChunks.MIN_CHUNK_CHARS, Math.min(thresholdKb * 1024L, Integer.MAX_VALUE / 2));
+    }
+
+    static FileIssues.Limits issueLimits(Configuration config) {
+        return new FileIssues.Limits(config.getInt(ISSUES_MAX_PER_RULE_KEY).orElse(DEFAULT_ISSUES_MAX_PER_RULE),
+            config.getInt(ISSUES_MAX_PER_FILE_KEY).orElse(DEFAULT_ISSUES_MAX_PER_FILE));
+    }
+
+    static Path projectBaseDir(Configuration config) {
+        return Paths.get(config.get(PROJECT_BASE_DIR_KEY).orElse("."));
+    }
+
+    static MatchBudget patternBudget(Configuration config) {
+        return new MatchBudget(config.getLong(PATTERN_MAX_STEPS_KEY).orElse(DEFAULT_PATTERN_MAX_STEPS),
+            config.getInt(PATTERN_TIMEOUT_KEY).orElse(DEFAULT_PATTERN_TIMEOUT_MS));
+    }
+}
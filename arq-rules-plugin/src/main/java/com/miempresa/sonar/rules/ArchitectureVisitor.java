@@ -0,0 +1,180 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.plugins.java.api.IssuableSubscriptionVisitor;
+import org.sonar.plugins.java.api.semantic.Type;
+import org.sonar.plugins.java.api.tree.AnnotationTree;
+import org.sonar.plugins.java.api.tree.ClassTree;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.IdentifierTree;
+import org.sonar.plugins.java.api.tree.ImportClauseTree;
+import org.sonar.plugins.java.api.tree.ImportTree;
+import org.sonar.plugins.java.api.tree.MemberSelectExpressionTree;
+import org.sonar.plugins.java.api.tree.ParameterizedTypeTree;
+import org.sonar.plugins.java.api.tree.Tree;
+import org.sonar.plugins.java.api.tree.TypeTree;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Base de las reglas que se ejecutan como visitantes del árbol de sonar-java
+ * ({@code sonar.arq.javaFrontend.enabled}, ver {@link ArchitectureCheckRegistrar}). sonar-java
+ * analiza cada archivo una vez y comparte el árbol y la semántica con todos los visitantes; la
+ * base calcula la capa del archivo desde ese árbol con la misma {@link LayerTable} que el sensor,
+ * y solo despacha los nodos a la regla si el archivo es de una capa que le interesa.
+ *
+ * <p>sonar-java usa una instancia por regla para todos los archivos: el estado de un archivo se
+ * reinicia al visitar su {@code COMPILATION_UNIT}. {@link ArchitectureCheckRegistrar} crea las
+ * instancias de cada análisis con la tabla del modelo de capas de ese proyecto; con el
+ * constructor sin argumentos la regla usa el modelo por defecto.</p>
+ */
+public abstract class ArchitectureVisitor extends IssuableSubscriptionVisitor {
+
+    private final LayerTable layers;
+    private boolean active;
+    private boolean reported;
+
+    protected ArchitectureVisitor() {
+        this(new LayerTable());
+    }
+
+    ArchitectureVisitor(LayerTable layers) {
+        this.layers = layers;
+    }
+
+    /** Nodos que interesan a la regla, además del {@code COMPILATION_UNIT}. */
+    abstract List<Tree.Kind> kinds();
+
+    /** Indica si la regla analiza los archivos de esta capa. */
+    abstract boolean appliesTo(FileLayer layer);
+
+    abstract void visit(Tree tree);
+
+    @Override
+    public final List<Tree.Kind> nodesToVisit() {
+        List<Tree.Kind> kinds = new ArrayList<>(kinds());
+        kinds.add(Tree.Kind.COMPILATION_UNIT);
+        return kinds;
+    }
+
+    @Override
+    public final void visitNode(Tree tree) {
+        if (tree.is(Tree.Kind.COMPILATION_UNIT)) {
+            FileLayer layer = layers.classify(context.getInputFile(), header((CompilationUnitTree) tree));
+            active = appliesTo(layer);
+            reported = false;
+            if (active) {
+                startFile();
+            }
+        } else if (active) {
+            visit(tree);
+        }
+    }
+
+    /** Al empezar cada archivo de una capa que analiza la regla. */
+    void startFile() {
+    }
+
+    LayerTable layers() {
+        return layers;
+    }
+
+    /** Para las reglas que reportan una sola vez por archivo. */
+    void reportOnce(Tree tree, String message) {
+        if (!reported) {
+            reported = true;
+            reportIssue(tree, message);
+        }
+    }
+
+    /**
+     * Nombre calificado de un tipo: el de la semántica si sonar-java pudo resolverlo (tipos
+     * inferidos, imports con comodín, clases del mismo paquete) o el nombre escrito si no.
+     */
+    static String typeName(TypeTree type) {
+        Type symbolType = type.symbolType();
+        if (symbolType != null && !symbolType.isUnknown()) {
+            return symbolType.fullyQualifiedName();
+        }
+        if (type.is(Tree.Kind.PARAMETERIZED_TYPE)) {
+            return typeName(((ParameterizedTypeTree) type).type());
+        }
+        return name(type);
+    }
+
+    static String annotationName(AnnotationTree annotation) {
+        return typeName(annotation.annotationType());
+    }
+
+    /** Nombre escrito de un identificador o de una selección {@code a.b.C}. */
+    static String name(Tree tree) {
+        if (tree.is(Tree.Kind.IDENTIFIER)) {
+            return ((IdentifierTree) tree).name();
+        }
+        if (tree.is(Tree.Kind.MEMBER_SELECT)) {
+            MemberSelectExpressionTree select = (MemberSelectExpressionTree) tree;
+            return name(select.expression()) + "." + select.identifier().name();
+        }
+        return "";
+    }
+
+    /**
+     * Indica si el nombre es alguno de los nombres calificados. Si la semántica no resolvió el
+     * tipo el nombre puede venir sin paquete, y entonces se compara el nombre simple.
+     */
+    static boolean isOneOf(String name, List<String> qualifiedNames) {
+        boolean simple = name.indexOf('.') < 0;
+        for (String qualifiedName : qualifiedNames) {
+            if (simple ? qualifiedName.endsWith("." + name) : qualifiedName.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean startsWithAny(String name, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Misma cabecera que FileHeader.of(texto), tomada del árbol
+    private static FileHeader header(CompilationUnitTree unit) {
+        String packageName = unit.packageDeclaration() == null ? "" : name(unit.packageDeclaration().packageName());
+        List<String> imports = new ArrayList<>();
+        int[] importLines = new int[unit.imports().size()];
+        for (ImportClauseTree clause : unit.imports()) {
+            if (clause.is(Tree.Kind.IMPORT)) {
+                importLines[imports.size()] = clause.firstToken().line();
+                imports.add(name(((ImportTree) clause).qualifiedIdentifier()));
+            }
+        }
+        for (Tree type : unit.types()) {
+            if (type.is(Tree.Kind.CLASS, Tree.Kind.INTERFACE, Tree.Kind.ENUM, Tree.Kind.RECORD)) {
+                ClassTree classTree = (ClassTree) type;
+                List<String> annotations = new ArrayList<>();
+                for (AnnotationTree annotation : classTree.modifiers().annotations()) {
+                    annotations.add(name(annotation.annotationType()));
+                }
+                return FileHeader.of(packageName, imports, Arrays.copyOf(importLines, imports.size()),
+                    annotations, keyword(type), classTree.simpleName() == null ? null : classTree.simpleName().name());
+            }
+        }
+        return FileHeader.of(packageName, imports, Arrays.copyOf(importLines, imports.size()),
+            Collections.emptyList(), null, null);
+    }
+
+    private static String keyword(Tree type) {
+        if (type.is(Tree.Kind.INTERFACE)) {
+            return "interface";
+        }
+        if (type.is(Tree.Kind.ENUM)) {
+            return "enum";
+        }
+        return type.is(Tree.Kind.RECORD) ? "record" : "class";
+    }
+}
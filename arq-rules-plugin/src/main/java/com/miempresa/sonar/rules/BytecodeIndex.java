@@ -0,0 +1,138 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Referencias de las clases compiladas del proyecto agrupadas por archivo fuente, para el modo
+ * de análisis de bytecode ({@code sonar.arq.bytecode.enabled}).
+ *
+ * <p>Se carga una vez al inicio del análisis recorriendo los directorios de
+ * {@code sonar.java.binaries}: cada {@code .class} se lee con {@link ClassFileReader} (solo el
+ * constant pool, los descriptores y las anotaciones de la clase) y se asocia a su fuente por el
+ * paquete y el atributo {@code SourceFile}. Después es inmutable y se consulta desde los hilos
+ * de trabajo. Los archivos sin clases compiladas se analizan solo desde el código fuente.</p>
+ *
+ * <p>El sensor es de proyecto: las rutas se resuelven desde el directorio base del proyecto,
+ * también las de los módulos ({@code web/target/classes}).</p>
+ */
+final class BytecodeIndex {
+
+    private static final Logger LOG = Loggers.get(BytecodeIndex.class);
+
+    private static final BytecodeIndex EMPTY = new BytecodeIndex(Collections.emptyMap());
+
+    private final Map<String, ClassReferences> bySource;
+
+    private BytecodeIndex(Map<String, ClassReferences> bySource) {
+        this.bySource = bySource;
+    }
+
+    static BytecodeIndex empty() {
+        return EMPTY;
+    }
+
+    static BytecodeIndex load(SensorContext context) {
+        Configuration config = context.config();
+        if (!ArchitectureProperties.bytecodeEnabled(config)) {
+            return EMPTY;
+        }
+        String[] binaries = config.getStringArray(ArchitectureProperties.JAVA_BINARIES_KEY);
+        if (binaries.length == 0) {
+            LOG.warn("El análisis de bytecode está activado pero {} no está definido; se analiza solo el código fuente",
+                ArchitectureProperties.JAVA_BINARIES_KEY);
+            return EMPTY;
+        }
+
+        Builder builder = new Builder();
+        for (String binary : binaries) {
+            Path directory = context.fileSystem().baseDir().toPath().resolve(binary.trim());
+            if (!Files.isDirectory(directory)) {
+                LOG.warn("Directorio de clases no encontrado para el análisis de bytecode: {}", directory);
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.filter(path -> path.toString().endsWith(".class")).forEach(builder::add);
+            } catch (IOException | UncheckedIOException e) {
+                LOG.warn("No se pudo recorrer {}: {}", directory, e.getMessage());
+            }
+        }
+        BytecodeIndex index = builder.build();
+        LOG.info("Análisis de bytecode: {} clases leídas de {} archivos fuente", builder.classes, index.bySource.size());
+        return index;
+    }
+
+    /** Referencias de las clases compiladas del archivo, o null si no hay. */
+    ClassReferences of(String packageName, String fileName) {
+        return bySource.isEmpty() ? null : bySource.get(sourceKey(packageName, fileName));
+    }
+
+    private static String sourceKey(String packageName, String fileName) {
+        return packageName.isEmpty() ? fileName : packageName + "/" + fileName;
+    }
+
+    private static final class Builder {
+        private final ClassFileReader reader = new ClassFileReader();
+        private final Map<String, Source> sources = new HashMap<>();
+        // Los mismos nombres aparecen en miles de clases: una sola copia de cada uno
+        private final Map<String, String> names = new HashMap<>();
+        private int classes;
+
+        private void add(Path classFile) {
+            ClassFileReader.ClassFacts facts;
+            try (InputStream in = Files.newInputStream(classFile)) {
+                facts = reader.read(in);
+            } catch (IOException | RuntimeException e) {
+                LOG.debug("Clase ilegible para el análisis de bytecode {}: {}", classFile, e.getMessage());
+                return;
+            }
+            classes++;
+            String simpleName = facts.simpleName();
+            int nested = simpleName.indexOf('$');
+            String sourceFile = facts.sourceFile() != null
+                ? facts.sourceFile()
+                : (nested < 0 ? simpleName : simpleName.substring(0, nested)) + ".java";
+            Source source = sources.computeIfAbsent(sourceKey(facts.packageName(), sourceFile), key -> new Source());
+            source.classes.add(facts.name());
+            for (String reference : facts.references()) {
+                source.references.add(names.computeIfAbsent(reference, name -> name));
+            }
+            if (nested < 0) {
+                source.annotations.addAll(facts.annotations());
+            }
+        }
+
+        private BytecodeIndex build() {
+            Map<String, ClassReferences> bySource = new HashMap<>();
+            for (Map.Entry<String, Source> entry : sources.entrySet()) {
+                Source source = entry.getValue();
+                source.references.removeAll(source.classes);
+                bySource.put(entry.getKey(), new ClassReferences(
+                    new ArrayList<>(source.references), new ArrayList<>(new TreeSet<>(source.annotations))));
+            }
+            return new BytecodeIndex(bySource);
+        }
+    }
+
+    private static final class Source {
+        private final Set<String> classes = new HashSet<>();
+        private final Set<String> references = new TreeSet<>();
+        private final List<String> annotations = new ArrayList<>();
+    }
+}
@@ -0,0 +1,315 @@
+package com.miempresa.sonar.rules;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Lector mínimo de archivos {@code .class}: recorre el constant pool y los atributos de la clase
+ * para obtener los tipos referenciados, las anotaciones de la clase y el archivo fuente. Los
+ * campos y métodos solo se leen hasta su descriptor; sus atributos (incluido {@code Code}) se
+ * saltan por longitud, así que nunca se decodifica el cuerpo de un método.
+ *
+ * <p>El archivo se lee en un buffer de bytes que se reutiliza entre clases y los textos del
+ * constant pool solo se decodifican si se usan. Cada instancia debe usarse desde un único hilo.</p>
+ */
+final class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private byte[] bytes = new byte[16 * 1024];
+    private int length;
+    private int position;
+
+    // Por entrada del constant pool: etiqueta y posición de su contenido en bytes
+    private int[] tags = new int[512];
+    private int[] offsets = new int[512];
+
+    /** Lee una clase completa del flujo; el flujo no se cierra. */
+    ClassFacts read(InputStream in) throws IOException {
+        load(in);
+        position = 0;
+        if (u4() != MAGIC) {
+            throw new IOException("No es un archivo de clase");
+        }
+        position += 4;  // minor y major
+
+        ClassFacts facts = new ClassFacts();
+        int count = u2();
+        if (tags.length < count) {
+            tags = new int[count];
+            offsets = new int[count];
+        }
+        for (int i = 1; i < count; i++) {
+            int tag = u1();
+            tags[i] = tag;
+            offsets[i] = position;
+            position += constantSize(tag);
+            if (tag == CONSTANT_LONG || tag == CONSTANT_DOUBLE) {
+                i++;
+            }
+        }
+        Consumer<String> reference = facts.references::add;
+        for (int i = 1; i < count; i++) {
+            if (tags[i] == CONSTANT_CLASS) {
+                classReference(utf8(u2At(offsets[i])), reference);
+            } else if (tags[i] == CONSTANT_NAME_AND_TYPE) {
+                descriptor(utf8(u2At(offsets[i] + 2)), reference);
+            } else if (tags[i] == CONSTANT_METHOD_TYPE) {
+                descriptor(utf8(u2At(offsets[i])), reference);
+            }
+        }
+
+        position += 2;  // access_flags
+        String internalName = utf8(u2At(offsets[u2()]));
+        int lastSlash = internalName.lastIndexOf('/');
+        facts.packageName = lastSlash < 0 ? "" : binaryName(internalName.substring(0, lastSlash));
+        facts.simpleName = internalName.substring(lastSlash + 1);
+        facts.name = binaryName(internalName);
+        position += 2;  // super_class, ya incluida como CONSTANT_Class
+        int interfaces = u2();
+        position += 2 * interfaces;  // interfaces, ídem
+        skipMembers(reference);  // campos
+        skipMembers(reference);  // métodos
+
+        int attributes = u2();
+        for (int i = 0; i < attributes; i++) {
+            String name = utf8(u2());
+            int attributeLength = u4();
+            int end = position + attributeLength;
+            if ("SourceFile".equals(name)) {
+                facts.sourceFile = utf8(u2());
+            } else if ("RuntimeVisibleAnnotations".equals(name) || "RuntimeInvisibleAnnotations".equals(name)) {
+                int annotations = u2();
+                for (int a = 0; a < annotations; a++) {
+                    String type = utf8(u2());
+                    descriptor(type, reference);
+                    descriptor(type, facts.annotations::add);
+                    skipElementValuePairs(reference);
+                }
+            }
+            position = end;
+        }
+        if (position > length) {
+            throw new IOException("Archivo de clase truncado");
+        }
+        return facts;
+    }
+
+    private void load(InputStream in) throws IOException {
+        length = 0;
+        int read;
+        while ((read = in.read(bytes, length, bytes.length - length)) >= 0) {
+            length += read;
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+    }
+
+    private int constantSize(int tag) throws IOException {
+        switch (tag) {
+            case CONSTANT_UTF8:
+                return 2 + u2At(position);
+            case CONSTANT_CLASS:
+            case CONSTANT_STRING:
+            case CONSTANT_METHOD_TYPE:
+            case CONSTANT_MODULE:
+            case CONSTANT_PACKAGE:
+                return 2;
+            case CONSTANT_METHOD_HANDLE:
+                return 3;
+            case CONSTANT_INTEGER:
+            case CONSTANT_FLOAT:
+            case CONSTANT_FIELDREF:
+            case CONSTANT_METHODREF:
+            case CONSTANT_INTERFACE_METHODREF:
+            case CONSTANT_NAME_AND_TYPE:
+            case CONSTANT_DYNAMIC:
+            case CONSTANT_INVOKE_DYNAMIC:
+                return 4;
+            case CONSTANT_LONG:
+            case CONSTANT_DOUBLE:
+                return 8;
+            default:
+                throw new IOException("Etiqueta de constant pool desconocida: " + tag);
+        }
+    }
+
+    // Campos o métodos: solo el descriptor; los atributos se saltan sin leerlos
+    private void skipMembers(Consumer<String> reference) {
+        int members = u2();
+        for (int i = 0; i < members; i++) {
+            position += 4;  // access_flags, name_index
+            descriptor(utf8(u2()), reference);
+            int attributes = u2();
+            for (int a = 0; a < attributes; a++) {
+                position += 2;
+                int attributeLength = u4();
+                position += attributeLength;
+            }
+        }
+    }
+
+    // Valores de una anotación: de las enumeraciones, clases y anotaciones anidadas solo el tipo
+    private void skipElementValuePairs(Consumer<String> reference) {
+        int pairs = u2();
+        for (int i = 0; i < pairs; i++) {
+            position += 2;
+            skipElementValue(reference);
+        }
+    }
+
+    private void skipElementValue(Consumer<String> reference) {
+        int tag = u1();
+        switch (tag) {
+            case 'e':
+                descriptor(utf8(u2()), reference);
+                position += 2;
+                break;
+            case 'c':
+                descriptor(utf8(u2()), reference);
+                break;
+            case '@':
+                descriptor(utf8(u2()), reference);
+                skipElementValuePairs(reference);
+                break;
+            case '[':
+                int values = u2();
+                for (int i = 0; i < values; i++) {
+                    skipElementValue(reference);
+                }
+                break;
+            default:
+                // Constantes (B C D F I J S Z s): un índice al constant pool
+                position += 2;
+                break;
+        }
+    }
+
+    /** Nombre de una entrada CONSTANT_Class: una clase interna o un descriptor de arreglo. */
+    private static void classReference(String internalName, Consumer<String> reference) {
+        if (internalName.startsWith("[")) {
+            descriptor(internalName, reference);
+        } else {
+            reference.accept(binaryName(internalName));
+        }
+    }
+
+    /** Tipos {@code Lpaquete/Clase;} de un descriptor de campo o de método. */
+    private static void descriptor(String descriptor, Consumer<String> reference) {
+        int start = descriptor.indexOf('L');
+        while (start >= 0) {
+            int end = descriptor.indexOf(';', start);
+            if (end < 0) {
+                return;
+            }
+            reference.accept(binaryName(descriptor.substring(start + 1, end)));
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    // com/app/Pedido$Linea -> com.app.Pedido.Linea, como se escribe en un import
+    private static String binaryName(String internalName) {
+        return internalName.replace('/', '.').replace('$', '.');
+    }
+
+    // UTF-8 modificado de la JVM; los nombres de clase casi siempre son ASCII
+    private String utf8(int index) {
+        int start = offsets[index] + 2;
+        int end = start + u2At(offsets[index]);
+        StringBuilder text = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            int b = bytes[i++] & 0xFF;
+            if (b < 0x80) {
+                text.append((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                text.append((char) ((b & 0x1F) << 6 | (bytes[i++] & 0x3F)));
+            } else {
+                text.append((char) ((b & 0x0F) << 12 | (bytes[i++] & 0x3F) << 6 | (bytes[i++] & 0x3F)));
+            }
+        }
+        return text.toString();
+    }
+
+    private int u1() {
+        return bytes[position++] & 0xFF;
+    }
+
+    private int u2() {
+        int value = u2At(position);
+        position += 2;
+        return value;
+    }
+
+    private int u4() {
+        int value = u2At(position) << 16 | u2At(position + 2);
+        position += 4;
+        return value;
+    }
+
+    private int u2At(int at) {
+        return (bytes[at] & 0xFF) << 8 | (bytes[at + 1] & 0xFF);
+    }
+
+    /** Lo que interesa de una clase compilada. */
+    static final class ClassFacts {
+        private String name;
+        private String packageName;
+        private String simpleName;
+        private String sourceFile;
+        private final Set<String> references = new HashSet<>();
+        private final Set<String> annotations = new HashSet<>();
+
+        /** Nombre calificado, con {@code .} también entre clases anidadas. */
+        String name() {
+            return name;
+        }
+
+        String packageName() {
+            return packageName;
+        }
+
+        /** Nombre sin paquete tal como está en el bytecode: {@code Pedido$Linea} en las anidadas. */
+        String simpleName() {
+            return simpleName;
+        }
+
+        /** Atributo {@code SourceFile} ({@code Pedido.java}), o null si se compiló sin él. */
+        String sourceFile() {
+            return sourceFile;
+        }
+
+        /** Tipos que aparecen en el constant pool, los descriptores y las anotaciones. */
+        Set<String> references() {
+            return references;
+        }
+
+        /** Anotaciones de la declaración de la clase, visibles o no en tiempo de ejecución. */
+        Set<String> annotations() {
+            return annotations;
+        }
+    }
+}
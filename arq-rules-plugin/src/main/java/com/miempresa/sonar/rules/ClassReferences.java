@@ -0,0 +1,99 @@
+package com.miempresa.sonar.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tipos que usan las clases compiladas de un archivo fuente según su bytecode
+ * ({@link BytecodeIndex}). A diferencia de los imports incluye los nombres calificados escritos
+ * en el código, los tipos que llegan por un import con comodín y los tipos inferidos
+ * ({@code var}, lambdas, valores de retorno encadenados).
+ */
+final class ClassReferences {
+
+    private final List<String> types;
+    private final List<String> annotations;
+
+    ClassReferences(List<String> types, List<String> annotations) {
+        this.types = Collections.unmodifiableList(types);
+        this.annotations = Collections.unmodifiableList(annotations);
+    }
+
+    /** Tipos referenciados, ordenados y sin las clases del propio archivo. */
+    List<String> types() {
+        return types;
+    }
+
+    /** Anotaciones de la clase principal del archivo. */
+    List<String> annotations() {
+        return annotations;
+    }
+
+    /** Primer tipo referenciado del que el modelo no deja depender a la capa, o null. */
+    String firstForbidden(Layer from, int targets, LayerTable layers) {
+        for (String type : types) {
+            if (layers.forbids(from, targets, type)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tipos prohibidos para la capa ({@link LayerTable#forbids}) que el archivo usa sin
+     * importarlos: las reglas que revisan los imports ya reportan el resto.
+     */
+    List<String> notImportedForbidden(Layer from, int targets, LayerTable layers, FileHeader header) {
+        List<String> result = new ArrayList<>();
+        for (String type : notImported(header)) {
+            if (layers.forbids(from, targets, type)) {
+                result.add(type);
+            }
+        }
+        return result;
+    }
+
+    /** Todos los tipos referenciados que no cubre ningún import del archivo. */
+    List<String> notImported(FileHeader header) {
+        List<String> result = new ArrayList<>();
+        for (String type : types) {
+            if (!imported(type, header.imports())) {
+                result.add(type);
+            }
+        }
+        return result;
+    }
+
+    /** Indica si algún tipo referenciado está en uno de los paquetes ({@code org.springframework.}). */
+    boolean anyTypeFrom(List<String> packagePrefixes) {
+        return anyFrom(types, packagePrefixes);
+    }
+
+    boolean anyAnnotationFrom(List<String> packagePrefixes) {
+        return anyFrom(annotations, packagePrefixes);
+    }
+
+    private static boolean anyFrom(List<String> names, List<String> packagePrefixes) {
+        for (String name : names) {
+            for (String prefix : packagePrefixes) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Import exacto, con comodín, de la clase que contiene al tipo o de una clase anidada en él
+    // (las anidadas arrastran a su clase externa en el constant pool)
+    private static boolean imported(String type, List<String> imports) {
+        for (String imported : imports) {
+            String name = imported.endsWith(".*") ? imported.substring(0, imported.length() - 2) : imported;
+            if (type.equals(name) || type.startsWith(name + ".") || name.startsWith(type + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
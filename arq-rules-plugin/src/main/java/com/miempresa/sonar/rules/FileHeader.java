@@ -0,0 +1,235 @@
+package com.miempresa.sonar.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cabecera de un archivo Java: paquete, imports, anotaciones de la clase y el primer tipo
+ * declarado. Se calcula una vez por archivo, tokenizando solo hasta el nombre del primer tipo,
+ * y las reglas la consultan en lugar de buscar {@code package ...}, {@code import ...} o
+ * {@code class ...Controller} con expresiones regulares sobre todo el contenido.
+ */
+final class FileHeader {
+
+    private final String packageName;
+    private final List<String> imports;
+    // Imports con los que se resuelven los nombres de tipo; en un bloque sin imports, los del archivo
+    private final List<String> typeImports;
+    private Map<String, String> importedTypes;
+    private final int[] importRanges;
+    private final int[] importLines;
+    private final List<String> annotations;
+    private final String typeKind;
+    private final String typeName;
+    // Posición siguiente al nombre del tipo, o -1 si no se llegó a él
+    private final int end;
+
+    private FileHeader(String packageName, List<String> imports, int[] importRanges, int[] importLines,
+                       List<String> annotations, String typeKind, String typeName, int end) {
+        this(packageName, imports, imports, importRanges, importLines, annotations, typeKind, typeName, end);
+    }
+
+    private FileHeader(String packageName, List<String> imports, List<String> typeImports, int[] importRanges,
+                       int[] importLines, List<String> annotations, String typeKind, String typeName, int end) {
+        this.packageName = packageName;
+        this.imports = imports;
+        this.typeImports = typeImports;
+        this.importRanges = importRanges;
+        this.importLines = importLines;
+        this.annotations = annotations;
+        this.typeKind = typeKind;
+        this.typeName = typeName;
+        this.end = end;
+    }
+
+    static FileHeader of(CharSequence text) {
+        JavaTokens tokens = new JavaLexer(text, true).tokenize();
+
+        int importCount = 0;
+        for (int token = 0; token < tokens.size(); token++) {
+            if (tokens.kind(token) == JavaTokens.IMPORT) {
+                importCount++;
+            }
+        }
+
+        String packageName = "";
+        List<String> imports = new ArrayList<>(importCount);
+        int[] importRanges = new int[importCount * 2];
+        int[] importLines = new int[importCount];
+        List<String> annotations = new ArrayList<>();
+        String typeKind = null;
+        String typeName = null;
+        int end = -1;
+        int parens = 0;
+
+        for (int token = 0; token < tokens.size(); token++) {
+            // Lo que va entre paréntesis son argumentos de anotaciones
+            if (tokens.is(token, '(')) {
+                parens++;
+            } else if (tokens.is(token, ')') && parens > 0) {
+                parens--;
+            }
+            if (parens > 0) {
+                continue;
+            }
+            switch (tokens.kind(token)) {
+                case JavaTokens.PACKAGE:
+                    packageName = tokens.qualifiedName(token);
+                    // Las anotaciones previas al paquete son de package-info
+                    annotations.clear();
+                    break;
+                case JavaTokens.IMPORT:
+                    importRanges[imports.size() * 2] = tokens.start(token);
+                    importRanges[imports.size() * 2 + 1] = tokens.end(token);
+                    importLines[imports.size()] = tokens.line(token);
+                    imports.add(tokens.qualifiedName(token));
+                    break;
+                case JavaTokens.ANNOTATION:
+                    if (tokens.start(token) + 1 < tokens.end(token)) {
+                        String name = tokens.text(token).substring(1);
+                        if ("interface".equals(name)) {
+                            typeKind = "@interface";
+                        } else {
+                            annotations.add(name);
+                        }
+                    }
+                    break;
+                case JavaTokens.IDENTIFIER:
+                    String word = tokens.text(token);
+                    if (typeKind != null) {
+                        typeName = word;
+                        end = tokens.end(token);
+                    } else if (isTypeKeyword(word) && !(token > 0 && tokens.is(token - 1, '.'))) {
+                        typeKind = word;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (typeName != null) {
+                break;
+            }
+        }
+
+        return new FileHeader(packageName, Collections.unmodifiableList(imports), importRanges, importLines,
+            Collections.unmodifiableList(annotations), typeKind, typeName, end);
+    }
+
+    /**
+     * Cabecera ya conocida, construida a partir del árbol de sonar-java
+     * ({@link ArchitectureVisitor}); no tiene rangos de texto de los imports.
+     */
+    static FileHeader of(String packageName, List<String> imports, int[] importLines,
+                         List<String> annotations, String typeKind, String typeName) {
+        return new FileHeader(packageName, Collections.unmodifiableList(imports), new int[0], importLines,
+            Collections.unmodifiableList(annotations), typeKind, typeName, -1);
+    }
+
+    /**
+     * La misma cabecera sin imports, para los bloques de un archivo leído por partes
+     * ({@link SourceChunks}) que no son el primero: los imports ya se revisaron en él.
+     */
+    FileHeader withoutImports() {
+        return new FileHeader(packageName, Collections.emptyList(), typeImports, new int[0], new int[0],
+            annotations, typeKind, typeName, -1);
+    }
+
+    /**
+     * Indica si la cabecera se leyó entera de un texto truncado en {@code length}: el nombre del
+     * tipo tiene que terminar antes del corte, o podría estar cortado.
+     */
+    boolean endsBefore(int length) {
+        return typeName != null && end < length;
+    }
+
+    /** Nombre del paquete, o cadena vacía en el paquete por defecto. */
+    String packageName() {
+        return packageName;
+    }
+
+    /** Nombres calificados importados, sin {@code import}, {@code static} ni {@code ;}. */
+    List<String> imports() {
+        return imports;
+    }
+
+    /**
+     * Imports con los que se resuelven los nombres simples de tipo ({@link SourceFile#resolveType}).
+     * Son los de {@link #imports()}, también en los bloques que no los repiten.
+     */
+    List<String> typeImports() {
+        return typeImports;
+    }
+
+    /** Nombre calificado del tipo importado con ese nombre simple, o {@code null}. */
+    String importedType(String simpleName) {
+        if (importedTypes == null) {
+            Map<String, String> types = new HashMap<>();
+            for (String imported : typeImports) {
+                if (!imported.endsWith("*")) {
+                    types.put(imported.substring(imported.lastIndexOf('.') + 1), imported);
+                }
+            }
+            importedTypes = types;
+        }
+        return importedTypes.get(simpleName);
+    }
+
+    /** Rangos {@code [inicio, fin)} de cada sentencia import, para evaluar {@link PatternSet}. */
+    int[] importRanges() {
+        return importRanges;
+    }
+
+    int importLine(int index) {
+        return importLines[index];
+    }
+
+    /** Línea de cada import, en el mismo orden que {@link #imports()}. */
+    int[] importLines() {
+        return importLines;
+    }
+
+    /** Anotaciones de la declaración del primer tipo, sin la arroba. */
+    List<String> annotations() {
+        return annotations;
+    }
+
+    /**
+     * Indica si el primer tipo tiene la anotación, escrita por nombre simple o calificado
+     * ({@code @Service} o {@code @org.springframework.stereotype.Service}).
+     */
+    boolean hasAnnotation(String simpleName) {
+        for (String annotation : annotations) {
+            if (annotation.equals(simpleName)
+                || (annotation.endsWith(simpleName) && annotation.length() > simpleName.length()
+                    && annotation.charAt(annotation.length() - simpleName.length() - 1) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** {@code class}, {@code interface}, {@code enum}, {@code record}, {@code @interface} o {@code null}. */
+    String typeKind() {
+        return typeKind;
+    }
+
+    /** Nombre del primer tipo declarado, o {@code null} si el archivo no declara ninguno. */
+    String typeName() {
+        return typeName;
+    }
+
+    boolean isClass() {
+        return "class".equals(typeKind) && typeName != null;
+    }
+
+    boolean isInterface() {
+        return "interface".equals(typeKind) && typeName != null;
+    }
+
+    private static boolean isTypeKeyword(String word) {
+        return "class".equals(word) || "interface".equals(word) || "enum".equals(word) || "record".equals(word);
+    }
+}
@@ -0,0 +1,514 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.batch.sensor.issue.NewIssueLocation;
+import org.sonar.api.rule.RuleKey;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Hallazgos de un archivo. Las reglas los acumulan aquí (posiblemente desde un hilo de trabajo)
+ * y el sensor los guarda después con {@link #saveTo(SensorContext)} desde el hilo del scanner,
+ * siempre en el orden de los archivos.
+ *
+ * <p>Un controller generado puede repetir miles de veces la misma violación. Los issues de una
+ * regla sobre el mismo tipo en la misma línea se reportan una vez, y al terminar el archivo
+ * {@link #limit(Limits)} deja como mucho un número de issues por regla y por archivo; el resto
+ * se resume en un issue por regla con sus ubicaciones como ubicaciones secundarias. El mensaje
+ * de cada issue se construye solo si el issue se guarda.</p>
+ */
+public final class FileIssues {
+
+    /** Mensaje de un issue, construido solo si el issue pasa los límites. */
+    interface Message {
+        String build();
+    }
+
+    /** Issues por regla y por archivo que se reportan por separado; 0 es sin límite. */
+    static final class Limits {
+
+        static final Limits NONE = new Limits(0, 0);
+
+        private final int perRule;
+        private final int perFile;
+
+        Limits(int perRule, int perFile) {
+            this.perRule = perRule <= 0 ? Integer.MAX_VALUE : perRule;
+            this.perFile = perFile <= 0 ? Integer.MAX_VALUE : perFile;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Limits && ((Limits) other).perRule == perRule && ((Limits) other).perFile == perFile;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * perRule + perFile;
+        }
+
+        @Override
+        public String toString() {
+            return perRule + "-" + perFile;
+        }
+    }
+
+    // Ubicaciones secundarias de un issue de resumen: más no ayudan a nadie en la interfaz
+    static final int MAX_SECONDARY_LOCATIONS = 100;
+
+    private final InputFile inputFile;
+    private final List<PendingIssue> issues = new ArrayList<>();
+    // Regla, línea y tipo de los issues ya reportados con tipo
+    private final Set<String> reported = new HashSet<>();
+    private String analysisError;
+    private Layer layer = Layer.NONE;
+    // Dependencias del archivo para el grafo del proyecto; null si no se pudo leer
+    private String packageName;
+    // Nombre simple del tipo que declara el archivo, para el índice de tipos (TypeIndex)
+    private String declaredType;
+    private String[] imports;
+    private int[] importLines;
+    // Búsquedas en el índice de tipos de las que dependen los issues (SourceFile#foundTypes)
+    private final Map<String, String> foundTypes = new TreeMap<>();
+    private long contentHash;
+    private boolean analyzed;
+    private boolean replayed;
+    private boolean incomplete;
+    private int ownFrom;
+    private int ownTo = Integer.MAX_VALUE;
+
+    FileIssues(InputFile inputFile) {
+        this.inputFile = inputFile;
+    }
+
+    public InputFile inputFile() {
+        return inputFile;
+    }
+
+    /** Issue a nivel de archivo (sin línea). */
+    public void addIssue(RuleKey ruleKey, String message) {
+        issues.add(new PendingIssue(ruleKey, 0, message));
+    }
+
+    public void addIssue(RuleKey ruleKey, int line, String message) {
+        issues.add(new PendingIssue(ruleKey, line, message));
+    }
+
+    /**
+     * Issue a nivel de archivo sobre un tipo ({@code com.app.model.Usuario}); se descarta si la
+     * regla ya reportó ese tipo a nivel de archivo.
+     */
+    void addIssue(RuleKey ruleKey, String type, Message message) {
+        if (reported.add(ruleKey.rule() + '\n' + 0 + '\n' + type)) {
+            issues.add(new PendingIssue(ruleKey, 0, 0, 0, 0, message));
+        }
+    }
+
+    /**
+     * Issue sobre el texto {@code [start, end)} del contenido. La posición se convierte en línea y
+     * columna aquí mismo, así que el hallazgo no guarda referencias al contenido.
+     */
+    void addIssue(RuleKey ruleKey, LineIndex lines, int start, int end, String message) {
+        if (owns(start)) {
+            issues.add(new PendingIssue(ruleKey, lines.line(start), lines.column(start),
+                lines.line(end), lines.column(end), message));
+        }
+    }
+
+    /**
+     * Como {@link #addIssue(RuleKey, LineIndex, int, int, String)}, sobre un tipo: se descarta si
+     * la regla ya reportó ese tipo en la misma línea. El mensaje se construye en {@link #limit},
+     * al terminar el archivo: puede leer el contenido salvo si el archivo se lee por bloques
+     * ({@link #readsInChunks()}), porque para entonces el bloque ya es otro.
+     */
+    void addIssue(RuleKey ruleKey, LineIndex lines, int start, int end, String type, Message message) {
+        if (!owns(start)) {
+            return;
+        }
+        int line = lines.line(start);
+        if (reported.add(ruleKey.rule() + '\n' + line + '\n' + type)) {
+            issues.add(new PendingIssue(ruleKey, line, lines.column(start), lines.line(end), lines.column(end), message));
+        }
+    }
+
+    // Un issue fuera de la parte propia del bloque lo reporta el bloque vecino, que también vio
+    // ese texto
+    private boolean owns(int start) {
+        return start >= ownFrom && start < ownTo;
+    }
+
+    /**
+     * Como {@link #addIssue(RuleKey, LineIndex, int, int, String)}, para las reglas que reportan
+     * una sola vez por archivo: no hace nada si la regla ya tiene un issue. En un archivo leído
+     * por bloques la regla se ejecuta una vez por bloque.
+     */
+    void addIssueOnce(RuleKey ruleKey, LineIndex lines, int start, int end, String message) {
+        for (PendingIssue pending : issues) {
+            if (pending.ruleKey.equals(ruleKey)) {
+                return;
+            }
+        }
+        addIssue(ruleKey, lines, start, end, message);
+    }
+
+    /**
+     * Parte del bloque actual de la que se aceptan issues con posición, en un archivo leído por
+     * bloques ({@link SourceChunks}); el resto del bloque se solapa con un bloque vecino.
+     */
+    void ownRange(int from, int to) {
+        this.ownFrom = from;
+        this.ownTo = to;
+    }
+
+    /** Indica si las reglas están viendo el archivo por bloques ({@link #ownRange}). */
+    boolean readsInChunks() {
+        return ownTo != Integer.MAX_VALUE;
+    }
+
+    int issueCount() {
+        return issues.size();
+    }
+
+    /**
+     * Aplica los límites de issues por regla y por archivo, en el orden de los issues dentro del
+     * archivo (no en el que las reglas los encontraron, que cambia al leer por bloques). Los que
+     * sobran se resumen en un issue por regla, en la posición del primero, con el resto como
+     * ubicaciones secundarias. Construye los mensajes de los issues que quedan.
+     */
+    void limit(Limits limits) {
+        if (issues.size() > Math.min(limits.perRule, limits.perFile)) {
+            List<PendingIssue> byPosition = new ArrayList<>(issues);
+            byPosition.sort(Comparator.comparingInt((PendingIssue pending) -> pending.line)
+                .thenComparingInt(pending -> pending.column));
+            Map<RuleKey, Integer> kept = new LinkedHashMap<>();
+            Map<RuleKey, List<PendingIssue>> dropped = new LinkedHashMap<>();
+            Set<PendingIssue> removed = new HashSet<>();
+            int keptInFile = 0;
+            for (PendingIssue pending : byPosition) {
+                int keptInRule = kept.getOrDefault(pending.ruleKey, 0);
+                if (keptInRule < limits.perRule && keptInFile < limits.perFile) {
+                    kept.put(pending.ruleKey, keptInRule + 1);
+                    keptInFile++;
+                } else {
+                    dropped.computeIfAbsent(pending.ruleKey, key -> new ArrayList<>()).add(pending);
+                    removed.add(pending);
+                }
+            }
+            issues.removeIf(removed::contains);
+            dropped.forEach((ruleKey, rest) -> issues.add(summary(ruleKey, rest, limits)));
+        }
+        for (PendingIssue pending : issues) {
+            pending.message();
+        }
+    }
+
+    private static PendingIssue summary(RuleKey ruleKey, List<PendingIssue> dropped, Limits limits) {
+        PendingIssue first = dropped.get(0);
+        int secondary = Math.min(dropped.size() - 1, MAX_SECONDARY_LOCATIONS);
+        int[] locations = new int[secondary * 4];
+        for (int i = 0; i < secondary; i++) {
+            PendingIssue pending = dropped.get(i + 1);
+            locations[i * 4] = pending.line;
+            locations[i * 4 + 1] = pending.column;
+            locations[i * 4 + 2] = pending.endLine;
+            locations[i * 4 + 3] = pending.endColumn;
+        }
+        String message = String.format("Hay %d issues más de esta regla en el archivo que no se reportan por separado "
+            + "(límites: %s por regla, %s por archivo). Este es el primero; las ubicaciones secundarias marcan %s.",
+            dropped.size(), limit(limits.perRule), limit(limits.perFile),
+            secondary == dropped.size() - 1 ? "el resto" : "los " + secondary + " siguientes");
+        PendingIssue summary = new PendingIssue(ruleKey, first.line, first.column, first.endLine, first.endColumn, message);
+        summary.secondary = locations;
+        return summary;
+    }
+
+    private static String limit(int limit) {
+        return limit == Integer.MAX_VALUE ? "sin límite" : String.valueOf(limit);
+    }
+
+    void analysisError(String message) {
+        this.analysisError = message;
+    }
+
+    /**
+     * Alguna regla no terminó por el límite de evaluación de patrones ({@link MatchBudget}): los
+     * hallazgos se guardan igual, pero no se marcan como analizados y no entran en la caché.
+     */
+    void incomplete() {
+        this.incomplete = true;
+    }
+
+    boolean isIncomplete() {
+        return incomplete;
+    }
+
+    /** Marca los hallazgos como resultado de analizar el contenido con el hash indicado. */
+    void analyzed(long contentHash) {
+        this.contentHash = contentHash;
+        this.analyzed = true;
+    }
+
+    void layer(Layer layer) {
+        this.layer = layer;
+    }
+
+    Layer layer() {
+        return layer;
+    }
+
+    void dependencies(String packageName, List<String> imports, int[] importLines) {
+        this.packageName = packageName;
+        this.imports = imports.toArray(new String[0]);
+        this.importLines = importLines;
+    }
+
+    void declaredType(String simpleName) {
+        this.declaredType = simpleName;
+    }
+
+    boolean hasDependencies() {
+        return imports != null;
+    }
+
+    String packageName() {
+        return packageName;
+    }
+
+    String[] imports() {
+        return imports;
+    }
+
+    int[] importLines() {
+        return importLines;
+    }
+
+    void foundTypes(Map<String, String> found) {
+        foundTypes.putAll(found);
+    }
+
+    /**
+     * Indica si el índice de tipos del análisis encuentra los mismos tipos que cuando se guardaron
+     * estos issues: un archivo sin cambios da otros resultados si se movió un tipo que usa.
+     */
+    boolean findsSameTypes(TypeIndex types) {
+        if (foundTypes.isEmpty()) {
+            return true;
+        }
+        List<String> importList = Arrays.asList(imports);
+        for (Map.Entry<String, String> entry : foundTypes.entrySet()) {
+            String found = types.find(packageName, importList, entry.getKey());
+            if (!entry.getValue().equals(found != null ? found : "")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isAnalyzed() {
+        return analyzed;
+    }
+
+    boolean isReplayed() {
+        return replayed;
+    }
+
+    long contentHash() {
+        return contentHash;
+    }
+
+    void saveTo(SensorContext context) {
+        if (analysisError != null) {
+            context.newAnalysisError()
+                .message(analysisError)
+                .onFile(inputFile)
+                .save();
+        }
+
+        for (PendingIssue pending : issues) {
+            NewIssue issue = context.newIssue().forRule(pending.ruleKey);
+            NewIssueLocation location = issue.newLocation()
+                .on(inputFile)
+                .message(pending.message());
+            at(location, pending.line, pending.column, pending.endLine, pending.endColumn);
+            issue.at(location);
+            int[] secondary = pending.secondary;
+            for (int i = 0; i + 3 < secondary.length; i += 4) {
+                NewIssueLocation other = issue.newLocation().on(inputFile);
+                at(other, secondary[i], secondary[i + 1], secondary[i + 2], secondary[i + 3]);
+                issue.addLocation(other);
+            }
+            issue.save();
+        }
+    }
+
+    private void at(NewIssueLocation location, int line, int column, int endLine, int endColumn) {
+        if (endLine > 0) {
+            location.at(range(line, column, endLine, endColumn));
+        } else if (line > 0) {
+            location.at(inputFile.selectLine(line));
+        }
+    }
+
+    // Un rango fuera de las líneas que conoce SonarQube (un BOM desplaza la primera) se reporta
+    // sobre la línea completa
+    private TextRange range(int line, int column, int endLine, int endColumn) {
+        try {
+            return inputFile.newRange(line, column, endLine, endColumn);
+        } catch (IllegalArgumentException e) {
+            return inputFile.selectLine(line);
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(contentHash);
+        out.writeByte(layer.ordinal());
+        out.writeBoolean(hasDependencies());
+        if (hasDependencies()) {
+            writeString(out, packageName);
+            writeString(out, declaredType != null ? declaredType : "");
+            out.writeInt(imports.length);
+            for (int i = 0; i < imports.length; i++) {
+                writeString(out, imports[i]);
+                out.writeInt(importLines[i]);
+            }
+        }
+        out.writeInt(issues.size());
+        for (PendingIssue pending : issues) {
+            writeString(out, pending.ruleKey.toString());
+            out.writeInt(pending.line);
+            out.writeInt(pending.column);
+            out.writeInt(pending.endLine);
+            out.writeInt(pending.endColumn);
+            writeString(out, pending.message());
+            out.writeInt(pending.secondary.length);
+            for (int value : pending.secondary) {
+                out.writeInt(value);
+            }
+        }
+        out.writeInt(foundTypes.size());
+        for (Map.Entry<String, String> entry : foundTypes.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    static FileIssues readFrom(InputFile inputFile, DataInputStream in) throws IOException {
+        FileIssues replay = new FileIssues(inputFile);
+        replay.contentHash = in.readLong();
+        replay.layer = Layer.values()[in.readByte()];
+        if (in.readBoolean()) {
+            replay.packageName = readString(in);
+            String declared = readString(in);
+            replay.declaredType = declared.isEmpty() ? null : declared;
+            replay.imports = new String[in.readInt()];
+            replay.importLines = new int[replay.imports.length];
+            for (int i = 0; i < replay.imports.length; i++) {
+                replay.imports[i] = readString(in);
+                replay.importLines[i] = in.readInt();
+            }
+        }
+        replay.replayed = true;
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            RuleKey ruleKey = RuleKey.parse(readString(in));
+            int line = in.readInt();
+            int column = in.readInt();
+            int endLine = in.readInt();
+            int endColumn = in.readInt();
+            PendingIssue pending = new PendingIssue(ruleKey, line, column, endLine, endColumn, readString(in));
+            pending.secondary = new int[in.readInt()];
+            for (int j = 0; j < pending.secondary.length; j++) {
+                pending.secondary[j] = in.readInt();
+            }
+            replay.issues.add(pending);
+        }
+        int found = in.readInt();
+        for (int i = 0; i < found; i++) {
+            replay.foundTypes.put(readString(in), readString(in));
+        }
+        return replay;
+    }
+
+    /**
+     * Paquete y tipo del archivo de una entrada escrita con {@link #writeTo}, leyendo solo el
+     * principio de la entrada; {@code null} si el archivo no tenía dependencias.
+     */
+    static TypeIndex.DeclaredType readDeclaredType(DataInputStream in) throws IOException {
+        in.readLong();
+        in.readByte();
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String packageName = readString(in);
+        String declared = readString(in);
+        return new TypeIndex.DeclaredType(packageName, declared.isEmpty() ? null : declared);
+    }
+
+    // writeUTF limita a 64 KB y los mensajes pueden incluir líneas de código largas
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class PendingIssue {
+        private static final int[] NO_LOCATIONS = new int[0];
+
+        private final RuleKey ruleKey;
+        private final int line;
+        // Rango dentro del archivo; endLine es 0 si el issue solo tiene línea
+        private final int column;
+        private final int endLine;
+        private final int endColumn;
+        private Message pendingMessage;
+        private String message;
+        // Ubicaciones secundarias de un issue de resumen: línea, columna, línea y columna finales
+        private int[] secondary = NO_LOCATIONS;
+
+        private PendingIssue(RuleKey ruleKey, int line, String message) {
+            this(ruleKey, line, 0, 0, 0, message);
+        }
+
+        private PendingIssue(RuleKey ruleKey, int line, int column, int endLine, int endColumn, String message) {
+            this(ruleKey, line, column, endLine, endColumn, (Message) null);
+            this.message = message;
+        }
+
+        private PendingIssue(RuleKey ruleKey, int line, int column, int endLine, int endColumn, Message message) {
+            this.ruleKey = ruleKey;
+            this.line = line;
+            this.column = column;
+            this.endLine = endLine;
+            this.endColumn = endColumn;
+            this.pendingMessage = message;
+        }
+
+        private String message() {
+            if (message == null) {
+                message = pendingMessage.build();
+                pendingMessage = null;
+            }
+            return message;
+        }
+    }
+}
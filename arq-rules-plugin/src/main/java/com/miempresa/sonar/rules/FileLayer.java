@@ -0,0 +1,40 @@
+package com.miempresa.sonar.rules;
+
+/**
+ * Clasificación de un archivo, calculada una sola vez por {@link LayerTable} y compartida por
+ * todas las reglas.
+ */
+final class FileLayer {
+
+    private final Layer layer;
+    private final int locationMask;
+    private final int declaredMask;
+
+    FileLayer(Layer layer, int locationMask, int declaredMask) {
+        this.layer = layer;
+        this.locationMask = locationMask;
+        this.declaredMask = declaredMask;
+    }
+
+    /**
+     * Capa principal del archivo: la del segmento más profundo de su paquete, o de su ruta si
+     * el paquete no dice nada, o la de su estereotipo; {@link Layer#NONE} si no hay ninguna.
+     */
+    Layer layer() {
+        return layer;
+    }
+
+    /** Indica si algún segmento del paquete o de la ruta del archivo corresponde a la capa. */
+    boolean in(Layer target) {
+        return target.in(locationMask);
+    }
+
+    /**
+     * Indica si el primer tipo del archivo se declara de la capa: por anotación
+     * ({@code @RestController}, {@code @Service}, {@code @Repository}) o por su nombre
+     * ({@code PedidoController}, {@code PedidoService}, {@code PedidoRepository}).
+     */
+    boolean declares(Layer target) {
+        return target.in(declaredMask);
+    }
+}
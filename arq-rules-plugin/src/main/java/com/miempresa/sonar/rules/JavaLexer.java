@@ -0,0 +1,488 @@
+package com.miempresa.sonar.rules;
+
+/**
+ * Tokenizador de Java escrito a mano: una sola pasada lineal sobre el texto, sin expresiones
+ * regulares y sin crear objetos por token (todo va a un arreglo de enteros de
+ * {@link JavaTokens}).
+ *
+ * <p>No pretende validar la sintaxis: solo separa identificadores, anotaciones, literales,
+ * comentarios y las sentencias {@code import}/{@code package}, que se guardan completas como un
+ * solo token. Un archivo mal formado (literal o comentario sin cerrar) se tokeniza hasta el final
+ * sin lanzar excepciones.</p>
+ *
+ * <p>Los saltos de línea se cuentan como en {@link LineIndex}: {@code \n}, {@code \r\n} y un
+ * {@code \r} solo.</p>
+ */
+final class JavaLexer {
+
+    // Dónde queda el tokenizado en una posición: en código o dentro de un comentario o literal
+    static final int CODE = 0;
+    static final int LINE_COMMENT = 1;
+    static final int BLOCK_COMMENT = 2;
+    static final int STRING = 3;
+    static final int CHAR = 4;
+    static final int TEXT_BLOCK = 5;
+
+    private final CharSequence text;
+    private final int length;
+    private int[] data;
+    private int size;
+    private int line;
+    private int depth;
+    private int parens;
+    private final int startMode;
+    private final boolean headerOnly;
+    private boolean typeKeywordSeen;
+    private boolean done;
+
+    JavaLexer(CharSequence text) {
+        this(text, false);
+    }
+
+    /**
+     * Continúa el tokenizado de un archivo leído por bloques ({@link SourceChunks}) desde el
+     * estado en que quedó al principio del bloque.
+     */
+    JavaLexer(CharSequence text, State start) {
+        this(text, false, start);
+    }
+
+    /**
+     * Con {@code headerOnly} el recorrido se detiene en el nombre del primer tipo declarado:
+     * lo que sigue (el cuerpo) no hace falta para {@link FileHeader}.
+     */
+    JavaLexer(CharSequence text, boolean headerOnly) {
+        this(text, headerOnly, State.START);
+    }
+
+    private JavaLexer(CharSequence text, boolean headerOnly, State start) {
+        this.text = text;
+        this.headerOnly = headerOnly;
+        this.startMode = start.mode;
+        this.line = start.line;
+        this.depth = start.depth;
+        this.parens = start.parens;
+        this.length = text.length();
+        // Unos 4 enteros por token y un token cada pocos caracteres: como mucho una o dos copias
+        this.data = new int[headerOnly ? 64 : Math.max(64, length / 4)];
+    }
+
+    JavaTokens tokenize() {
+        int i = resume();
+        while (i < length && !done) {
+            char c = text.charAt(i);
+            if (endsLine(text, i)) {
+                line++;
+                i++;
+            } else if (c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+                i++;
+            } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '/') {
+                i = lineComment(i);
+            } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+                i = blockComment(i);
+            } else if (c == '"') {
+                i = isTextBlock(i) ? textBlock(i) : quoted(i, '"');
+            } else if (c == '\'') {
+                i = quoted(i, '\'');
+            } else if (c == '@' && i + 1 < length && Character.isJavaIdentifierStart(text.charAt(i + 1))) {
+                i = annotation(i);
+            } else if (Character.isJavaIdentifierStart(c)) {
+                i = identifier(i);
+            } else if (isDigit(c) || (c == '.' && i + 1 < length && isDigit(text.charAt(i + 1)))) {
+                i = number(i);
+            } else {
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}' && depth > 0) {
+                    depth--;
+                } else if (c == '(') {
+                    parens++;
+                } else if (c == ')' && parens > 0) {
+                    parens--;
+                }
+                add(JavaTokens.SEPARATOR, i, i + 1, line);
+                i++;
+            }
+        }
+        return new JavaTokens(text, data, size / 4);
+    }
+
+    // Resto del comentario o literal en que empieza el bloque, como un token desde la posición 0
+    private int resume() {
+        switch (startMode) {
+            case LINE_COMMENT:
+                return lineComment(0, 0);
+            case BLOCK_COMMENT:
+                return blockComment(0, 0);
+            case STRING:
+                return quoted(0, 0, '"');
+            case CHAR:
+                return quoted(0, 0, '\'');
+            case TEXT_BLOCK:
+                return textBlock(0, 0);
+            default:
+                return 0;
+        }
+    }
+
+    private int lineComment(int start) {
+        return lineComment(start, start + 2);
+    }
+
+    private int lineComment(int start, int i) {
+        while (i < length && !isLineBreak(text.charAt(i))) {
+            i++;
+        }
+        add(JavaTokens.COMMENT, start, i, line);
+        return i;
+    }
+
+    private int blockComment(int start) {
+        return blockComment(start, start + 2);
+    }
+
+    private int blockComment(int start, int i) {
+        int startLine = line;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '*' && i + 1 < length && text.charAt(i + 1) == '/') {
+                i += 2;
+                add(JavaTokens.COMMENT, start, i, startLine);
+                return i;
+            }
+            if (endsLine(text, i)) {
+                line++;
+            }
+            i++;
+        }
+        add(JavaTokens.COMMENT, start, length, startLine);
+        return length;
+    }
+
+    private boolean isTextBlock(int i) {
+        return i + 2 < length && text.charAt(i + 1) == '"' && text.charAt(i + 2) == '"';
+    }
+
+    private int textBlock(int start) {
+        return textBlock(start, start + 3);
+    }
+
+    private int textBlock(int start, int i) {
+        int startLine = line;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < length && endsLine(text, i + 1)) {
+                    line++;
+                }
+                i += 2;
+                continue;
+            }
+            if (c == '"' && isTextBlock(i)) {
+                i += 3;
+                add(JavaTokens.STRING, start, i, startLine);
+                return i;
+            }
+            if (endsLine(text, i)) {
+                line++;
+            }
+            i++;
+        }
+        add(JavaTokens.STRING, start, length, startLine);
+        return length;
+    }
+
+    private int quoted(int start, char quote) {
+        return quoted(start, start + 1, quote);
+    }
+
+    private int quoted(int start, int i, char quote) {
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                i++;
+                break;
+            }
+            if (isLineBreak(c)) {
+                // Literal sin cerrar: termina en el salto de línea
+                break;
+            }
+            i++;
+        }
+        i = Math.min(i, length);
+        add(JavaTokens.STRING, start, i, line);
+        return i;
+    }
+
+    private int annotation(int start) {
+        int i = identifierEnd(start + 1);
+        // Nombre calificado: @org.springframework.stereotype.Service
+        while (i + 1 < length && text.charAt(i) == '.' && Character.isJavaIdentifierStart(text.charAt(i + 1))) {
+            i = identifierEnd(i + 1);
+        }
+        add(JavaTokens.ANNOTATION, start, i, line);
+        if (headerOnly && isWord(start + 1, i, "interface") && depth == 0 && parens == 0) {
+            typeKeywordSeen = true;
+        }
+        return i;
+    }
+
+    private int identifier(int start) {
+        int i = identifierEnd(start);
+        if (depth == 0 && (isWord(start, i, "import") || isWord(start, i, "package"))) {
+            return statement(start, i, isWord(start, i, "import") ? JavaTokens.IMPORT : JavaTokens.PACKAGE);
+        }
+        add(JavaTokens.IDENTIFIER, start, i, line);
+        if (headerOnly && depth == 0 && parens == 0) {
+            if (typeKeywordSeen) {
+                // Nombre del primer tipo declarado: fin de la cabecera
+                done = true;
+            } else if (isTypeKeyword(start, i) && !follows('.')) {
+                typeKeywordSeen = true;
+            }
+        }
+        return i;
+    }
+
+    private boolean isTypeKeyword(int start, int end) {
+        return isWord(start, end, "class") || isWord(start, end, "interface")
+            || isWord(start, end, "enum") || isWord(start, end, "record");
+    }
+
+    // El token anterior al recién agregado es el separador indicado (Foo.class)
+    private boolean follows(char separator) {
+        int previous = size - 8;
+        return previous >= 0 && data[previous] == JavaTokens.SEPARATOR && text.charAt(data[previous + 1]) == separator;
+    }
+
+    /** Sentencia {@code import}/{@code package} completa, hasta el punto y coma. */
+    private int statement(int start, int i, int kind) {
+        int startLine = line;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == ';') {
+                i++;
+                break;
+            }
+            if (endsLine(text, i)) {
+                line++;
+            } else if (c == '{' || c == '}' || c == '(' || c == '"') {
+                // No era una sentencia (código incompleto): se corta sin consumir el carácter
+                break;
+            }
+            i++;
+        }
+        add(kind, start, i, startLine);
+        return i;
+    }
+
+    private int number(int start) {
+        int i = start;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isJavaIdentifierPart(c) || c == '.') {
+                i++;
+            } else if ((c == '+' || c == '-') && isExponent(text.charAt(i - 1))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        add(JavaTokens.NUMBER, start, i, line);
+        return i;
+    }
+
+    private int identifierEnd(int i) {
+        while (i < length && Character.isJavaIdentifierPart(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean isWord(int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (text.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    // Último carácter de un salto de línea: el \r de un \r\n se cuenta en el \n
+    private static boolean endsLine(CharSequence text, int i) {
+        char c = text.charAt(i);
+        return c == '\n' || (c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n'));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isExponent(char c) {
+        return c == 'e' || c == 'E' || c == 'p' || c == 'P';
+    }
+
+    /**
+     * Posición donde puede cortarse el texto para seguir en otro bloque, en {@code target} o un poco
+     * antes: nunca dentro de un identificador, número, anotación o sentencia import, y dentro de un
+     * comentario o literal solo donde el tokenizador pueda retomarlo (no entre una barra invertida
+     * y el carácter que escapa, ni dentro de un {@code *}{@code /} o {@code """} de cierre).
+     */
+    static int cut(JavaTokens tokens, State start, int target) {
+        int token = tokenAt(tokens, target);
+        if (token < 0) {
+            return target;
+        }
+        int tokenStart = tokens.start(token);
+        int mode = mode(tokens, start, token);
+        // Un bloque que empieza dentro de un comentario o literal no tiene la apertura
+        int contentStart = token == 0 && start.mode != CODE ? tokenStart : tokenStart + openerLength(mode);
+        if (mode == CODE || target < contentStart) {
+            return tokenStart;
+        }
+        CharSequence text = tokens.text();
+        int cut = target;
+        int end = tokens.end(token);
+        if (mode == BLOCK_COMMENT && cut > contentStart && text.charAt(cut - 1) == '*') {
+            cut--;
+        } else if (mode == TEXT_BLOCK && cut > end - 3 && end - 3 >= contentStart
+            && text.charAt(end - 1) == '"' && text.charAt(end - 2) == '"' && text.charAt(end - 3) == '"') {
+            cut = end - 3;
+        }
+        if (mode == STRING || mode == CHAR || mode == TEXT_BLOCK) {
+            int backslashes = 0;
+            while (cut - backslashes - 1 >= contentStart && text.charAt(cut - backslashes - 1) == '\\') {
+                backslashes++;
+            }
+            if (backslashes % 2 == 1) {
+                cut--;
+            }
+        }
+        return cut;
+    }
+
+    /** Estado del tokenizado en una posición devuelta por {@link #cut}. */
+    static State stateAt(JavaTokens tokens, State start, int position) {
+        CharSequence text = tokens.text();
+        int depth = start.depth;
+        int parens = start.parens;
+        int last = -1;
+        for (int token = 0; token < tokens.size() && tokens.start(token) < position; token++) {
+            last = token;
+            if (tokens.kind(token) == JavaTokens.SEPARATOR) {
+                char c = text.charAt(tokens.start(token));
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}' && depth > 0) {
+                    depth--;
+                } else if (c == '(') {
+                    parens++;
+                } else if (c == ')' && parens > 0) {
+                    parens--;
+                }
+            }
+        }
+        // Línea del último token más los saltos de línea hasta la posición, como los cuenta tokenize
+        int line = last < 0 ? start.line : tokens.line(last);
+        for (int i = last < 0 ? 0 : tokens.start(last); i < position; i++) {
+            if (endsLine(text, i)) {
+                line++;
+            }
+        }
+        int mode = last >= 0 && tokens.end(last) > position ? mode(tokens, start, last) : CODE;
+        return new State(mode, line, depth, parens);
+    }
+
+    // Token que contiene la posición (sin contar su primer carácter), o -1
+    private static int tokenAt(JavaTokens tokens, int position) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.start(middle) < position) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found >= 0 && tokens.end(found) > position ? found : -1;
+    }
+
+    private static int mode(JavaTokens tokens, State start, int token) {
+        if (token == 0 && start.mode != CODE) {
+            // Resto del comentario o literal en que empezó el bloque
+            return start.mode;
+        }
+        CharSequence text = tokens.text();
+        int at = tokens.start(token);
+        switch (tokens.kind(token)) {
+            case JavaTokens.COMMENT:
+                return text.charAt(at + 1) == '/' ? LINE_COMMENT : BLOCK_COMMENT;
+            case JavaTokens.STRING:
+                if (text.charAt(at) == '\'') {
+                    return CHAR;
+                }
+                return at + 2 < tokens.end(token) && text.charAt(at + 1) == '"' && text.charAt(at + 2) == '"'
+                    ? TEXT_BLOCK : STRING;
+            default:
+                return CODE;
+        }
+    }
+
+    private static int openerLength(int mode) {
+        switch (mode) {
+            case LINE_COMMENT:
+            case BLOCK_COMMENT:
+                return 2;
+            case TEXT_BLOCK:
+                return 3;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Estado del tokenizado al principio de un bloque: línea, profundidad de llaves y paréntesis y
+     * si el bloque empieza dentro de un comentario o literal.
+     */
+    static final class State {
+        static final State START = new State(CODE, 1, 0, 0);
+
+        private final int mode;
+        private final int line;
+        private final int depth;
+        private final int parens;
+
+        private State(int mode, int line, int depth, int parens) {
+            this.mode = mode;
+            this.line = line;
+            this.depth = depth;
+            this.parens = parens;
+        }
+    }
+
+    private void add(int kind, int start, int end, int tokenLine) {
+        if (size + 4 > data.length) {
+            int[] grown = new int[data.length * 2];
+            System.arraycopy(data, 0, grown, 0, size);
+            data = grown;
+        }
+        data[size++] = kind;
+        data[size++] = start;
+        data[size++] = end;
+        data[size++] = tokenLine;
+    }
+}
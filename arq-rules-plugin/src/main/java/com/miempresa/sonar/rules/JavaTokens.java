@@ -0,0 +1,295 @@
+package com.miempresa.sonar.rules;
+
+import java.nio.CharBuffer;
+
+/**
+ * Tokens de un archivo Java en un único arreglo de enteros: por cada token se guardan su tipo,
+ * posición inicial, posición final (exclusiva) y línea. El texto no se copia; los tokens son
+ * rangos sobre el contenido original.
+ *
+ * <p>Las reglas no recorren los tokens uno a uno: piden los rangos que les interesan
+ * ({@link #ranges(int)}, {@link #stringRanges()}) o el texto con los comentarios y literales en
+ * blanco ({@link #masked()}) y evalúan sus {@link PatternSet} solo ahí. Así {@code @Service} en
+ * un comentario o {@code SELECT ... FROM} en un mensaje de log ya no se confunden con código.</p>
+ */
+final class JavaTokens {
+
+    static final int IDENTIFIER = 0;
+    static final int ANNOTATION = 1;
+    static final int STRING = 2;
+    static final int COMMENT = 3;
+    static final int NUMBER = 4;
+    static final int SEPARATOR = 5;
+    static final int IMPORT = 6;
+    static final int PACKAGE = 7;
+
+    private static final int KINDS = 8;
+    private static final String[] LOG_METHODS = {
+        "trace", "debug", "info", "warn", "error", "fatal", "print", "println", "printf"
+    };
+    private static final int STRIDE = 4;
+
+    private final CharSequence text;
+    private final int[] data;
+    private final int size;
+
+    // Rangos calculados bajo demanda; cada archivo lo procesa un único hilo
+    private final int[][] rangesByKind = new int[KINDS][];
+    private CharSequence masked;
+    private int[] stringRanges;
+
+    JavaTokens(CharSequence text, int[] data, int size) {
+        this.text = text;
+        this.data = data;
+        this.size = size;
+    }
+
+    static JavaTokens of(CharSequence text) {
+        return new JavaLexer(text).tokenize();
+    }
+
+    /** Tokens de un bloque de un archivo, desde el estado en que empieza ({@link SourceChunks}). */
+    static JavaTokens of(CharSequence text, JavaLexer.State start) {
+        return new JavaLexer(text, start).tokenize();
+    }
+
+    CharSequence text() {
+        return text;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int kind(int token) {
+        return data[token * STRIDE];
+    }
+
+    int start(int token) {
+        return data[token * STRIDE + 1];
+    }
+
+    int end(int token) {
+        return data[token * STRIDE + 2];
+    }
+
+    int line(int token) {
+        return data[token * STRIDE + 3];
+    }
+
+    boolean is(int token, char separator) {
+        return kind(token) == SEPARATOR && text.charAt(start(token)) == separator;
+    }
+
+    String text(int token) {
+        return text.subSequence(start(token), end(token)).toString();
+    }
+
+    /**
+     * Nombre de un {@link #IMPORT} o {@link #PACKAGE} sin la palabra clave, {@code static},
+     * espacios ni el punto y coma: {@code java.util.List}, {@code org.junit.Assert.*}.
+     */
+    String qualifiedName(int token) {
+        StringBuilder name = new StringBuilder();
+        int end = end(token);
+        int i = start(token);
+        // Saltar la palabra clave
+        while (i < end && Character.isJavaIdentifierPart(text.charAt(i))) {
+            i++;
+        }
+        boolean first = true;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (Character.isJavaIdentifierPart(c) || c == '.' || c == '*') {
+                int wordStart = i;
+                while (i < end && (Character.isJavaIdentifierPart(text.charAt(i)) || text.charAt(i) == '.' || text.charAt(i) == '*')) {
+                    i++;
+                }
+                if (first && i - wordStart == 6 && "static".contentEquals(text.subSequence(wordStart, i))) {
+                    first = false;
+                    continue;
+                }
+                name.append(text, wordStart, i);
+                first = false;
+            } else if (c == ';') {
+                break;
+            } else {
+                i++;
+            }
+        }
+        return name.toString();
+    }
+
+    /** Rangos {@code [inicio, fin)} de todos los tokens del tipo indicado. */
+    int[] ranges(int kind) {
+        int[] ranges = rangesByKind[kind];
+        if (ranges == null) {
+            int count = 0;
+            for (int token = 0; token < size; token++) {
+                if (kind(token) == kind) {
+                    count++;
+                }
+            }
+            ranges = new int[count * 2];
+            int next = 0;
+            for (int token = 0; token < size; token++) {
+                if (kind(token) == kind) {
+                    ranges[next++] = start(token);
+                    ranges[next++] = end(token);
+                }
+            }
+            rangesByKind[kind] = ranges;
+        }
+        return ranges;
+    }
+
+    /**
+     * El texto con los comentarios y el interior de los literales cambiados por espacios, en una
+     * sola pasada. Las comillas y los saltos de línea se conservan, así que las posiciones, líneas
+     * y columnas son las del original. Los patrones de código se evalúan sobre este texto de una
+     * vez, en lugar de una vez por cada tramo de código entre dos literales o comentarios.
+     */
+    CharSequence masked() {
+        if (masked == null) {
+            char[] chars = new char[text.length()];
+            int from = 0;
+            for (int token = 0; token < size; token++) {
+                int kind = kind(token);
+                if (kind == COMMENT || kind == STRING) {
+                    copy(chars, from, start(token));
+                    int quotes = kind == STRING ? quotes(token) : 0;
+                    int end = end(token);
+                    int blankTo = end - start(token) >= quotes * 2 && endsWithQuotes(end, quotes) ? end - quotes : end;
+                    copy(chars, start(token), start(token) + quotes);
+                    for (int i = start(token) + quotes; i < blankTo; i++) {
+                        char c = text.charAt(i);
+                        chars[i] = c == '\n' || c == '\r' ? c : ' ';
+                    }
+                    copy(chars, blankTo, end);
+                    from = end;
+                }
+            }
+            copy(chars, from, text.length());
+            masked = CharBuffer.wrap(chars);
+        }
+        return masked;
+    }
+
+    private void copy(char[] chars, int from, int to) {
+        for (int i = from; i < to; i++) {
+            chars[i] = text.charAt(i);
+        }
+    }
+
+    // Comillas de apertura: 3 en un text block, 1 en un literal normal y 0 si el token es el resto de
+    // un literal que empezó en el bloque anterior (SourceChunks)
+    private int quotes(int token) {
+        int start = start(token);
+        char c = text.charAt(start);
+        if (c == '\'') {
+            return 1;
+        }
+        if (c != '"') {
+            return 0;
+        }
+        return end(token) - start >= 3 && text.charAt(start + 1) == '"' && text.charAt(start + 2) == '"' ? 3 : 1;
+    }
+
+    private boolean endsWithQuotes(int end, int quotes) {
+        for (int i = end - quotes; i < end; i++) {
+            char c = text.charAt(i);
+            if (c != '"' && c != '\'') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Literales de texto; los que se concatenan con {@code +} forman un único rango, para que
+     * una consulta partida en varias líneas ({@code "SELECT u " + "FROM Usuario u"}) se vea entera.
+     * Los mensajes pasados directamente a un log ({@code LOG.debug("...")},
+     * {@code System.out.println("...")}) no se incluyen.
+     */
+    int[] stringRanges() {
+        if (stringRanges == null) {
+            int[] ranges = new int[16];
+            int count = 0;
+            int token = 0;
+            while (token < size) {
+                if (kind(token) != STRING) {
+                    token++;
+                    continue;
+                }
+                int last = token;
+                int next = nextSignificant(last + 1);
+                while (next < size && is(next, '+')) {
+                    int operand = nextSignificant(next + 1);
+                    if (operand >= size || kind(operand) != STRING) {
+                        break;
+                    }
+                    last = operand;
+                    next = nextSignificant(last + 1);
+                }
+                if (!isLogArgument(token)) {
+                    ranges = add(ranges, count, start(token), end(last));
+                    count += 2;
+                }
+                token = last + 1;
+            }
+            stringRanges = trim(ranges, count);
+        }
+        return stringRanges;
+    }
+
+    // receptor.metodo( justo antes del literal, con un método de log o de consola
+    private boolean isLogArgument(int token) {
+        int paren = previousSignificant(token - 1);
+        int method = previousSignificant(paren - 1);
+        int dot = previousSignificant(method - 1);
+        if (dot < 0 || !is(paren, '(') || kind(method) != IDENTIFIER || !is(dot, '.')) {
+            return false;
+        }
+        for (String logMethod : LOG_METHODS) {
+            if (end(method) - start(method) == logMethod.length()
+                && logMethod.contentEquals(text.subSequence(start(method), end(method)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int previousSignificant(int token) {
+        while (token >= 0 && kind(token) == COMMENT) {
+            token--;
+        }
+        return token;
+    }
+
+    private int nextSignificant(int token) {
+        while (token < size && kind(token) == COMMENT) {
+            token++;
+        }
+        return token;
+    }
+
+    private static int[] add(int[] ranges, int count, int start, int end) {
+        if (count + 2 > ranges.length) {
+            int[] grown = new int[ranges.length * 2];
+            System.arraycopy(ranges, 0, grown, 0, count);
+            ranges = grown;
+        }
+        ranges[count] = start;
+        ranges[count + 1] = end;
+        return ranges;
+    }
+
+    private static int[] trim(int[] ranges, int count) {
+        if (ranges.length == count) {
+            return ranges;
+        }
+        int[] trimmed = new int[count];
+        System.arraycopy(ranges, 0, trimmed, 0, count);
+        return trimmed;
+    }
+}
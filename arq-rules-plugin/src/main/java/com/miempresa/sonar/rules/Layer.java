@@ -0,0 +1,38 @@
+package com.miempresa.sonar.rules;
+
+/**
+ * Capas de la arquitectura y los nombres de paquete o directorio que las identifican por defecto.
+ * Las reglas no tienen su propia lista de nombres: clasifican los archivos con {@link LayerTable},
+ * que usa los nombres del {@link LayerModel} del proyecto (estos, salvo que se configuren otros).
+ */
+enum Layer {
+
+    EXPOSITION("exposicion", "exposition", "presentacion", "presentation", "controller", "controllers",
+        "rest", "api", "web", "resource", "resources"),
+    SERVICE("servicios", "services", "service", "aplicacion", "application"),
+    DOMAIN("modelo", "model", "domain", "dominio", "entity", "entities", "entidad", "entidades"),
+    REPOSITORY("persistencia", "persistence", "repository", "repositories", "dao", "daos",
+        "infrastructure", "infraestructura", "infraestructure", "infra"),
+    // Archivos que no pertenecen a ninguna capa conocida
+    NONE;
+
+    private final String[] segments;
+
+    Layer(String... segments) {
+        this.segments = segments;
+    }
+
+    /** Bit de la capa dentro de las máscaras de {@link FileLayer} y {@link LayerTable}. */
+    int bit() {
+        return this == NONE ? 0 : 1 << ordinal();
+    }
+
+    boolean in(int mask) {
+        return (mask & bit()) != 0;
+    }
+
+    /** Nombres de paquete o directorio de la capa cuando el proyecto no configura otros. */
+    String[] defaultPackages() {
+        return segments.clone();
+    }
+}
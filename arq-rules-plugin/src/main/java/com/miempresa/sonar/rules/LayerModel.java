@@ -0,0 +1,335 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.config.Configuration;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Modelo de capas del análisis: los nombres de paquete o directorio que identifican cada capa y
+ * las dependencias entre capas que están prohibidas. Por defecto son los de {@link Layer} y las
+ * reglas de siempre (exposición no usa dominio ni persistencia, servicios no usa exposición,
+ * persistencia no usa servicios ni exposición); cada proyecto puede cambiarlos con propiedades
+ * del scanner o con un archivo de propiedades, sin compilar otra versión del plugin:
+ *
+ * <pre>
+ * sonar.arq.layers.file=arquitectura.properties
+ * sonar.arq.layers.service.packages=servicios,usecase,usecases
+ * sonar.arq.layers.exposition.forbidden=repository
+ * </pre>
+ *
+ * <p>Al cargarse se compila en un {@link SegmentTrie} con los nombres de todas las capas y en una
+ * matriz densa capa x capa de dependencias permitidas (un entero por capa de origen, un bit por
+ * capa de destino). Comprobar una dependencia es leer una posición de esa matriz. El modelo es
+ * inmutable y puede usarse desde varios hilos.</p>
+ */
+final class LayerModel {
+
+    static final String KEY_PREFIX = "sonar.arq.layers.";
+    static final String PACKAGES_SUFFIX = ".packages";
+    static final String FORBIDDEN_SUFFIX = ".forbidden";
+
+    private static final Layer[] LAYERS = Arrays.stream(Layer.values())
+        .filter(layer -> layer != Layer.NONE)
+        .toArray(Layer[]::new);
+
+    private static final LayerModel DEFAULT = builder().build();
+
+    // Propiedades sonar.arq.layers.<capa>.packages y .forbidden de todas las capas
+    private static final List<String> KEYS = Arrays.stream(LAYERS)
+        .flatMap(layer -> Stream.of(key(layer, PACKAGES_SUFFIX), key(layer, FORBIDDEN_SUFFIX)))
+        .collect(Collectors.toList());
+
+    // Modelos compilados que se conservan entre análisis de la misma JVM (daemon del scanner)
+    static final int MAX_COMPILED = 32;
+
+    private static final Compiled COMPILED = new Compiled();
+
+    private final String[][] packages;
+    // allowed[origen] = bits de las capas de las que puede depender
+    private final int[] allowed;
+    private final SegmentTrie segments;
+    private final String description;
+
+    private LayerModel(String[][] packages, int[] allowed) {
+        this.packages = packages;
+        this.allowed = allowed;
+        SegmentTrie trie = new SegmentTrie();
+        for (Layer layer : LAYERS) {
+            for (String segment : packages[layer.ordinal()]) {
+                trie.add(segment, layer);
+            }
+        }
+        this.segments = trie;
+        this.description = describe();
+    }
+
+    static LayerModel defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Modelo del proyecto: el archivo de {@code sonar.arq.layers.file}, relativo al directorio
+     * base, y encima las propiedades {@code sonar.arq.layers.<capa>.*} del scanner. Si otro
+     * análisis de la misma JVM ya compiló un modelo con la misma configuración, se reutiliza.
+     */
+    static LayerModel load(Configuration config, Path baseDir) {
+        // Ordenadas por clave: la misma configuración da siempre la misma clave de la caché
+        Map<String, String[]> settings = new TreeMap<>();
+        Optional<String> file = config.get(ArchitectureProperties.LAYERS_FILE_KEY);
+        if (file.isPresent()) {
+            Properties properties = read(baseDir.resolve(file.get()));
+            for (String key : KEYS) {
+                String value = properties.getProperty(key);
+                if (value != null) {
+                    settings.put(key, value.split(","));
+                }
+            }
+        }
+        for (String key : KEYS) {
+            if (config.hasKey(key)) {
+                settings.put(key, config.getStringArray(key));
+            }
+        }
+        return settings.isEmpty() ? DEFAULT : COMPILED.get(settings);
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /** Capas que se pueden configurar, sin {@link Layer#NONE}. */
+    static List<Layer> layers() {
+        return Arrays.asList(LAYERS);
+    }
+
+    static String key(Layer layer, String suffix) {
+        return KEY_PREFIX + layer.name().toLowerCase(Locale.ROOT) + suffix;
+    }
+
+    /** Trie con los nombres de paquete de todas las capas. */
+    SegmentTrie segments() {
+        return segments;
+    }
+
+    boolean allows(Layer from, Layer to) {
+        return (allowed[from.ordinal()] & to.bit()) != 0 || to == Layer.NONE;
+    }
+
+    /** Capas de las que {@code from} no puede depender, como máscara de {@link Layer#bit()}. */
+    int forbidden(Layer from) {
+        return ~allowed[from.ordinal()];
+    }
+
+    /** Indica si el nombre, ya en minúsculas, contiene alguno de los nombres de la capa. */
+    boolean mentionedIn(Layer layer, String lowerCaseName) {
+        for (String segment : packages[layer.ordinal()]) {
+            if (lowerCaseName.contains(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isDefault() {
+        return description.equals(DEFAULT.description);
+    }
+
+    /** Huella del modelo, para separar en la caché los resultados de modelos distintos. */
+    long fingerprint() {
+        return AnalysisCache.hash(description);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    private String describe() {
+        StringBuilder text = new StringBuilder();
+        for (Layer layer : LAYERS) {
+            if (text.length() > 0) {
+                text.append("; ");
+            }
+            text.append(layer.name().toLowerCase(Locale.ROOT)).append(' ')
+                .append(String.join(",", packages[layer.ordinal()]));
+            List<String> forbidden = new ArrayList<>();
+            for (Layer to : LAYERS) {
+                if (!allows(layer, to)) {
+                    forbidden.add(to.name().toLowerCase(Locale.ROOT));
+                }
+            }
+            if (!forbidden.isEmpty()) {
+                text.append(" -/-> ").append(String.join(",", forbidden));
+            }
+        }
+        return text.toString();
+    }
+
+    private static Properties read(Path path) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo leer el modelo de capas " + path + ": " + e.getMessage(), e);
+        }
+        return properties;
+    }
+
+    static final class Builder {
+
+        private final String[][] packages = new String[Layer.values().length][];
+        private final int[] allowed = new int[Layer.values().length];
+
+        private Builder() {
+            for (Layer layer : Layer.values()) {
+                packages[layer.ordinal()] = layer.defaultPackages();
+                allowed[layer.ordinal()] = ~0;
+            }
+            forbid(Layer.EXPOSITION, Layer.DOMAIN, Layer.REPOSITORY);
+            forbid(Layer.SERVICE, Layer.EXPOSITION);
+            forbid(Layer.REPOSITORY, Layer.SERVICE, Layer.EXPOSITION);
+        }
+
+        /**
+         * Sustituye los nombres de paquete o directorio de la capa. Cada nombre es un solo segmento
+         * y un identificador Java ({@code model_v2}, {@code dominio}); {@code com.app.model} no lo es.
+         */
+        Builder packages(Layer layer, String... names) {
+            List<String> segments = new ArrayList<>();
+            for (String name : names) {
+                String segment = name.trim().toLowerCase(Locale.ROOT);
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                if (!isSegment(segment)) {
+                    throw new IllegalArgumentException("Nombre de paquete no válido en " + key(layer, PACKAGES_SUFFIX)
+                        + ": '" + name.trim() + "'. Cada nombre es un solo segmento de paquete o directorio"
+                        + " con forma de identificador Java: letras, dígitos, '_' o '$', sin empezar por un dígito"
+                        + " y sin puntos ni barras");
+                }
+                segments.add(segment);
+            }
+            packages[layer.ordinal()] = segments.toArray(new String[0]);
+            return this;
+        }
+
+        /** Sustituye las capas de las que {@code from} no puede depender. */
+        Builder forbidden(Layer from, Layer... targets) {
+            allowed[from.ordinal()] = ~0;
+            return forbid(from, targets);
+        }
+
+        private Builder forbid(Layer from, Layer... targets) {
+            for (Layer target : targets) {
+                allowed[from.ordinal()] &= ~target.bit();
+            }
+            return this;
+        }
+
+        LayerModel build() {
+            return new LayerModel(packages.clone(), allowed.clone());
+        }
+
+        // Clave sonar.arq.layers.<capa>.packages o .forbidden
+        private void set(String key, String[] values) {
+            for (Layer layer : LAYERS) {
+                if (key.equals(key(layer, PACKAGES_SUFFIX))) {
+                    packages(layer, values);
+                } else if (key.equals(key(layer, FORBIDDEN_SUFFIX))) {
+                    forbidden(layer, parse(key, values));
+                }
+            }
+        }
+
+        private static boolean isSegment(String segment) {
+            if (!Character.isJavaIdentifierStart(segment.charAt(0))) {
+                return false;
+            }
+            for (int i = 1; i < segment.length(); i++) {
+                if (!Character.isJavaIdentifierPart(segment.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static Layer[] parse(String key, String[] names) {
+            List<Layer> layers = new ArrayList<>();
+            for (String name : names) {
+                String trimmed = name.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                Layer layer = null;
+                for (Layer candidate : LAYERS) {
+                    if (candidate.name().equalsIgnoreCase(trimmed)) {
+                        layer = candidate;
+                    }
+                }
+                if (layer == null) {
+                    throw new IllegalArgumentException("Capa desconocida en " + key + ": '" + trimmed
+                        + "'. Las capas son " + describeNames());
+                }
+                layers.add(layer);
+            }
+            return layers.toArray(new Layer[0]);
+        }
+
+        private static String describeNames() {
+            List<String> names = new ArrayList<>();
+            for (Layer layer : LAYERS) {
+                names.add(layer.name().toLowerCase(Locale.ROOT));
+            }
+            return String.join(", ", names);
+        }
+    }
+
+    /**
+     * Modelos ya compilados (trie de nombres y matriz de dependencias) por configuración. Un
+     * scanner que analiza muchos módulos seguidos en la misma JVM compila cada configuración una
+     * sola vez. Tiene un tamaño máximo y descarta el modelo usado hace más tiempo.
+     */
+    private static final class Compiled {
+
+        // En orden de uso: el primero es el que se descarta
+        private final Map<String, LayerModel> models = new LinkedHashMap<>(16, 0.75f, true);
+
+        synchronized LayerModel get(Map<String, String[]> settings) {
+            String key = key(settings);
+            LayerModel model = models.get(key);
+            if (model == null) {
+                Builder builder = builder();
+                settings.forEach(builder::set);
+                model = builder.build();
+                models.put(key, model);
+                if (models.size() > MAX_COMPILED) {
+                    Iterator<String> eldest = models.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return model;
+        }
+
+        private static String key(Map<String, String[]> settings) {
+            StringBuilder key = new StringBuilder();
+            settings.forEach((name, values) -> key.append(name).append('=').append(String.join(",", values)).append('\n'));
+            return key.toString();
+        }
+    }
+}
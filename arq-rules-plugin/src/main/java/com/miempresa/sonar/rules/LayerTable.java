@@ -0,0 +1,159 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.batch.fs.InputFile;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Clasificación por capas de todo el proyecto. El sensor crea una tabla por análisis y cada
+ * archivo se clasifica una sola vez ({@link SourceFile#layer()}); la capa de cada paquete se
+ * calcula la primera vez que aparece y el resto de archivos del mismo paquete la reutilizan.
+ * Rutas, paquetes e imports se recorren con el {@link SegmentTrie} del {@link LayerModel} del
+ * proyecto, sin crear cadenas intermedias, y las dependencias entre capas se comprueban en la
+ * matriz del modelo.
+ *
+ * <p>Puede usarse desde varios hilos a la vez en el análisis en paralelo.</p>
+ */
+final class LayerTable {
+
+    private final LayerModel model;
+    private final TypeIndex types;
+    private final ConcurrentMap<String, Segments> packages = new ConcurrentHashMap<>();
+
+    LayerTable() {
+        this(LayerModel.defaults());
+    }
+
+    LayerTable(LayerModel model) {
+        this(model, TypeIndex.empty());
+    }
+
+    LayerTable(LayerModel model, TypeIndex types) {
+        this.model = model;
+        this.types = types;
+    }
+
+    LayerModel model() {
+        return model;
+    }
+
+    /** Tipos del proyecto, para resolver los nombres simples ({@link SourceFile#resolveType}). */
+    TypeIndex types() {
+        return types;
+    }
+
+    FileLayer classify(InputFile inputFile, FileHeader header) {
+        Segments inPackage = ofPackage(header.packageName());
+        Segments inPath = ofPath(inputFile.toString());
+        int declared = declaredMask(header);
+
+        Layer layer = inPackage.deepest;
+        if (layer == Layer.NONE) {
+            layer = inPath.deepest;
+        }
+        if (layer == Layer.NONE) {
+            layer = firstOf(declared);
+        }
+        return new FileLayer(layer, inPackage.mask | inPath.mask, declared);
+    }
+
+    /** Capa de un paquete según su segmento más profundo, o {@link Layer#NONE}. */
+    Layer packageLayer(String packageName) {
+        return ofPackage(packageName).deepest;
+    }
+
+    /**
+     * Indica si el paquete de un nombre calificado ({@code com.app.model.Usuario}) es de alguna de
+     * las capas de {@code targets} (máscara de {@link Layer#bit()}) de las que el modelo no deja
+     * depender a {@code from}.
+     */
+    boolean forbids(Layer from, int targets, String qualifiedName) {
+        int forbidden = model.forbidden(from) & targets;
+        if (forbidden == 0) {
+            return false;
+        }
+        int lastDot = qualifiedName.lastIndexOf('.');
+        return lastDot > 0 && (packageMask(qualifiedName, lastDot) & forbidden) != 0;
+    }
+
+    /**
+     * Primer import de la cabecera que {@link #forbids} prohíbe, con la posición de todo el
+     * import; {@code null} si no hay ninguno.
+     */
+    PatternSet.Match forbiddenImport(FileHeader header, Layer from, int targets) {
+        if ((model.forbidden(from) & targets) == 0) {
+            return null;
+        }
+        List<String> imports = header.imports();
+        int[] importRanges = header.importRanges();
+        for (int i = 0; i < imports.size(); i++) {
+            if (forbids(from, targets, imports.get(i))) {
+                return new PatternSet.Match(i, importRanges[i * 2], importRanges[i * 2 + 1]);
+            }
+        }
+        return null;
+    }
+
+    private int packageMask(String qualifiedName, int lastDot) {
+        return SegmentTrie.mask(model.segments().scan(qualifiedName, 0, lastDot, '.'));
+    }
+
+    private Segments ofPackage(String packageName) {
+        return packages.computeIfAbsent(packageName, name -> Segments.of(model.segments(), name, name.length(), '.'));
+    }
+
+    // Solo los directorios: el nombre del archivo no cuenta
+    private Segments ofPath(String path) {
+        int lastSlash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return lastSlash < 0 ? Segments.EMPTY : Segments.of(model.segments(), path, lastSlash, '/');
+    }
+
+    private static int declaredMask(FileHeader header) {
+        int mask = 0;
+        String typeName = header.typeName() == null ? "" : header.typeName();
+        String lowerTypeName = typeName.toLowerCase(Locale.ROOT);
+        if (header.hasAnnotation("Controller") || header.hasAnnotation("RestController")
+            || (header.isClass() && typeName.contains("Controller"))) {
+            mask |= Layer.EXPOSITION.bit();
+        }
+        if (header.hasAnnotation("Service") || (header.isClass() && lowerTypeName.contains("service"))) {
+            mask |= Layer.SERVICE.bit();
+        }
+        if (header.hasAnnotation("Repository")
+            || ((header.isClass() || header.isInterface()) && lowerTypeName.contains("repository"))) {
+            mask |= Layer.REPOSITORY.bit();
+        }
+        return mask;
+    }
+
+    private static Layer firstOf(int mask) {
+        for (Layer layer : Layer.values()) {
+            if (layer.in(mask)) {
+                return layer;
+            }
+        }
+        return Layer.NONE;
+    }
+
+    /** Capas presentes en los segmentos de un nombre y la del segmento más profundo. */
+    private static final class Segments {
+
+        private static final Segments EMPTY = new Segments(0, Layer.NONE);
+
+        private final int mask;
+        private final Layer deepest;
+
+        private Segments(int mask, Layer deepest) {
+            this.mask = mask;
+            this.deepest = deepest;
+        }
+
+        private static Segments of(SegmentTrie segments, String name, int end, char separator) {
+            int scan = segments.scan(name, 0, end, separator);
+            int mask = SegmentTrie.mask(scan);
+            return mask == 0 ? EMPTY : new Segments(mask, SegmentTrie.deepest(scan));
+        }
+    }
+}
@@ -0,0 +1,556 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.notifications.AnalysisWarnings;
+import org.sonar.api.scanner.sensor.ProjectSensor;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sensor único del plugin: recorre los archivos Java una sola vez, construye el
+ * {@link SourceFile} compartido y lo despacha a todas las reglas de arquitectura.
+ *
+ * <p>Es un {@link ProjectSensor}: en un proyecto multimódulo se ejecuta una sola vez con los
+ * archivos de todos los módulos, así que las medidas por capa y el grafo de dependencias son los
+ * del proyecto completo.</p>
+ *
+ * <p>Con {@code sonar.arq.parallel.enabled=true} el análisis de cada archivo se reparte en un
+ * pool de hilos de tamaño fijo, pero los issues siempre se guardan desde el hilo del scanner y
+ * en el orden de los archivos, por lo que el resultado es idéntico al del modo secuencial.</p>
+ *
+ * <p>El contenido se lee con {@link SourceReader} en un buffer reutilizado por hilo, y los
+ * hallazgos no guardan referencias a él. Primero se lee solo el bloque inicial para clasificar el
+ * archivo por su ruta y su cabecera; los archivos de capas que no analiza ninguna regla no se
+ * leen enteros.</p>
+ *
+ * <p>Cada archivo se clasifica una sola vez en su capa ({@link LayerTable}) y al final se guarda
+ * el número de archivos por capa como medidas del proyecto ({@link ArchitectureMetrics}). Los
+ * nombres de las capas y las dependencias prohibidas entre ellas son los del
+ * {@link LayerModel} del proyecto.</p>
+ *
+ * <p>Los imports de cada archivo se acumulan en un {@link DependencyGraph} del proyecto; cuando
+ * ya se procesaron todos los archivos, {@link NoLayerDependencyCyclesRule} busca en él ciclos
+ * entre capas. Esa fase no vuelve a leer ningún archivo.</p>
+ *
+ * <p>Con {@code sonar.arq.bytecode.enabled=true} se cargan antes las referencias de las clases
+ * compiladas ({@link BytecodeIndex}); las reglas de capas y el grafo de dependencias las usan
+ * además de los imports.</p>
+ *
+ * <p>Con {@code sonar.arq.javaFrontend.enabled=true} las reglas por archivo se ejecutan como
+ * visitantes de sonar-java ({@link ArchitectureCheckRegistrar}) y este sensor solo clasifica los
+ * archivos, guarda las medidas y busca los ciclos.</p>
+ *
+ * <p>Cada regla solo recibe los archivos de las capas que le interesan
+ * ({@link ArchitectureCheck#appliesTo}). Al final se registran en el log, y en
+ * {@code .scannerwork/arq-rules-plugin/rule-stats.json}, los archivos, caracteres, evaluaciones
+ * de patrones, issues y tiempo de cada regla ({@link RuleStats}).</p>
+ *
+ * <p>En análisis incrementales los hallazgos de los archivos sin cambios se toman de
+ * {@link AnalysisCache} en lugar de volver a ejecutar las reglas.</p>
+ *
+ * <p>Las expresiones regulares de cada archivo tienen un límite de pasos y de tiempo
+ * ({@link MatchBudget}). Si un archivo lo supera, las reglas pendientes se interrumpen, lo ya
+ * encontrado se reporta y el análisis muestra un aviso en lugar de quedarse detenido.</p>
+ *
+ * <p>Los archivos de más de {@code sonar.arq.streaming.thresholdKb} se analizan por bloques de ese
+ * tamaño ({@link SourceChunks}), así que un fuente generado de decenas de megas no se carga entero
+ * en memoria.</p>
+ */
+public class LayeredArchitectureSensor implements ProjectSensor {
+
+    private static final Logger LOG = Loggers.get(LayeredArchitectureSensor.class);
+
+    // Archivos en vuelo por hilo: limita la memoria retenida por resultados pendientes
+    private static final int FILES_IN_FLIGHT_PER_THREAD = 4;
+
+    // Dentro del directorio de trabajo del scanner (.scannerwork)
+    private static final String STATS_FILE = "arq-rules-plugin/rule-stats.json";
+
+    private final List<ArchitectureCheck> checks;
+    private final AnalysisWarnings warnings;
+    private final NoLayerDependencyCyclesRule cycles = new NoLayerDependencyCyclesRule();
+
+    public LayeredArchitectureSensor(AnalysisWarnings warnings) {
+        this(ArchitectureChecks.all(), warnings);
+    }
+
+    // Fuera del scanner (benchmarks): los avisos solo quedan en el log
+    LayeredArchitectureSensor() {
+        this(ArchitectureChecks.all(), warning -> { });
+    }
+
+    LayeredArchitectureSensor(List<ArchitectureCheck> checks, AnalysisWarnings warnings) {
+        this.checks = checks;
+        this.warnings = warnings;
+    }
+
+    @Override
+    public void describe(@Nonnull SensorDescriptor descriptor) {
+        descriptor
+            .name("Layered Architecture Rules")
+            .onlyOnLanguage("java");
+    }
+
+    @Override
+    public void execute(@Nonnull SensorContext context) {
+        if (!checks.isEmpty() && ArchitectureProperties.javaFrontendEnabled(context.config())) {
+            // Las reglas por archivo las ejecuta sonar-java (ArchitectureCheckRegistrar); aquí
+            // quedan las medidas y el grafo de dependencias
+            new LayeredArchitectureSensor(Collections.emptyList(), warnings).execute(context);
+            return;
+        }
+        FileSystem fs = context.fileSystem();
+
+        Iterable<InputFile> inputFiles = fs.inputFiles(fs.predicates().hasLanguage("java"));
+        LayerModel model = LayerModel.load(context.config(), fs.baseDir().toPath());
+        if (!model.isDefault()) {
+            LOG.info("Modelo de capas del proyecto: {}", model);
+        }
+        AnalysisCache cache = AnalysisCache.create(context, model);
+        boolean parallel = ArchitectureProperties.parallelEnabled(context.config());
+        int threads = ArchitectureProperties.parallelThreads(context.config());
+        ExecutorService executor = parallel ? Executors.newFixedThreadPool(threads, new WorkerThreadFactory()) : null;
+        try {
+            Map<InputFile, FileHeader> headers = new ConcurrentHashMap<>();
+            LayerTable layers = new LayerTable(model, typeIndex(inputFiles, cache, executor, threads, headers));
+            BytecodeIndex bytecode = BytecodeIndex.load(context);
+            Results results = new Results(context, cache, new DependencyGraph(layers));
+            RuleStats stats = new RuleStats(checks);
+            if (parallel) {
+                executeInParallel(inputFiles, cache, layers, headers, bytecode, results, stats, executor, threads,
+                    context);
+            } else {
+                executeSequentially(inputFiles, cache, layers, headers, bytecode, results, stats, context);
+            }
+            report(context, cache, results, stats);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void executeSequentially(Iterable<InputFile> inputFiles, AnalysisCache cache, LayerTable layers,
+                                     Map<InputFile, FileHeader> headers, BytecodeIndex bytecode, Results results,
+                                     RuleStats stats, SensorContext context) {
+        SourceReader reader = new SourceReader();
+        RuleStats.Recorder recorder = stats.newRecorder();
+        MatchBudget budget = ArchitectureProperties.patternBudget(context.config());
+        int chunkChars = ArchitectureProperties.streamingChunkChars(context.config());
+        FileIssues.Limits limits = ArchitectureProperties.issueLimits(context.config());
+        // El hilo del scanner sigue vivo después del sensor: no debe quedarse con las estadísticas
+        // ni con el límite de patrones aunque un archivo falle
+        try {
+            for (InputFile inputFile : inputFiles) {
+                results.save(analyzeFile(inputFile, cache, layers, headers, bytecode, reader, recorder, budget,
+                    chunkChars, limits));
+            }
+        } finally {
+            recorder.detach();
+            budget.detach();
+        }
+    }
+
+    private void report(SensorContext context, AnalysisCache cache, Results results, RuleStats stats) {
+        results.saveLayerMeasures();
+        cycles.report(results.graph, context);
+
+        if (cache.isEnabled()) {
+            LOG.info("Análisis de arquitectura incremental: {} de {} archivos reutilizados desde la caché",
+                results.replayed, results.files);
+        }
+        if (results.incomplete > 0) {
+            warnings.addUnique(String.format("El análisis de arquitectura se interrumpió en %d archivo(s) por superar el límite "
+                + "de evaluación de patrones (%s, %s); sus issues pueden estar incompletos. Los archivos se listan en el log.",
+                results.incomplete, ArchitectureProperties.PATTERN_MAX_STEPS_KEY, ArchitectureProperties.PATTERN_TIMEOUT_KEY));
+        }
+        if (!checks.isEmpty()) {
+            saveStats(stats, context);
+        }
+    }
+
+    private static void saveStats(RuleStats stats, SensorContext context) {
+        stats.log(LOG);
+        Path path = context.fileSystem().workDir().toPath().resolve(STATS_FILE);
+        try {
+            stats.writeJson(path);
+            LOG.info("Estadísticas de las reglas de arquitectura guardadas en {}", path);
+        } catch (IOException e) {
+            LOG.warn("No se pudieron guardar las estadísticas de las reglas en {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Índice de tipos del proyecto ({@link TypeIndex}), solo si alguna regla activa resuelve tipos.
+     * Los archivos sin cambios aportan el paquete y el tipo guardados en la caché; de los demás se
+     * lee solo la cabecera, en el pool de hilos si el análisis es en paralelo. Las cabeceras leídas
+     * quedan en {@code headers} para el análisis de cada archivo, que no vuelve a calcularlas.
+     */
+    private TypeIndex typeIndex(Iterable<InputFile> inputFiles, AnalysisCache cache, ExecutorService executor,
+                                int threads, Map<InputFile, FileHeader> headers) {
+        if (checks.stream().noneMatch(ArchitectureCheck::resolvesTypes)) {
+            return TypeIndex.empty();
+        }
+        TypeIndex.Builder builder = TypeIndex.builder();
+        if (executor == null) {
+            SourceReader reader = new SourceReader();
+            for (InputFile inputFile : inputFiles) {
+                builder.add(declaredType(inputFile, cache, reader, headers));
+            }
+        } else {
+            ThreadLocal<SourceReader> readers = ThreadLocal.withInitial(SourceReader::new);
+            Deque<Future<TypeIndex.DeclaredType>> pending = new ArrayDeque<>();
+            int maxInFlight = threads * FILES_IN_FLIGHT_PER_THREAD;
+            for (InputFile inputFile : inputFiles) {
+                pending.addLast(executor.submit(() -> declaredType(inputFile, cache, readers.get(), headers)));
+                if (pending.size() >= maxInFlight) {
+                    builder.add(await(pending.removeFirst()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                builder.add(await(pending.removeFirst()));
+            }
+        }
+        TypeIndex index = builder.build();
+        LOG.info("Índice de tipos: {} tipos en {} paquetes", index.typeCount(), index.packageCount());
+        return index;
+    }
+
+    private static TypeIndex.DeclaredType declaredType(InputFile inputFile, AnalysisCache cache, SourceReader reader,
+                                                       Map<InputFile, FileHeader> headers) {
+        TypeIndex.DeclaredType cached = cache.declaredType(inputFile);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            CharSequence start = reader.readHeader(inputFile);
+            FileHeader header = FileHeader.of(start);
+            // Una cabecera que no cabe en el primer bloque se vuelve a calcular con el contenido
+            if (reader.isComplete() || header.endsBefore(start.length())) {
+                headers.put(inputFile, header);
+            }
+            return TypeIndex.DeclaredType.of(inputFile, header);
+        } catch (IOException e) {
+            LOG.debug("Cabecera ilegible para el índice de tipos {}: {}", inputFile, e.getMessage());
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private void executeInParallel(Iterable<InputFile> inputFiles, AnalysisCache cache, LayerTable layers,
+                                   Map<InputFile, FileHeader> headers, BytecodeIndex bytecode, Results results,
+                                   RuleStats stats, ExecutorService executor, int threads, SensorContext context) {
+        LOG.info("Análisis de arquitectura en paralelo con {} hilos", threads);
+        // Un lector por hilo de trabajo: su buffer se reutiliza entre los archivos de ese hilo
+        ThreadLocal<SourceReader> readers = ThreadLocal.withInitial(SourceReader::new);
+        ThreadLocal<RuleStats.Recorder> recorders = ThreadLocal.withInitial(stats::newRecorder);
+        ThreadLocal<MatchBudget> budgets = ThreadLocal.withInitial(() -> ArchitectureProperties.patternBudget(context.config()));
+        int chunkChars = ArchitectureProperties.streamingChunkChars(context.config());
+        FileIssues.Limits limits = ArchitectureProperties.issueLimits(context.config());
+        Deque<Future<FileIssues>> pending = new ArrayDeque<>();
+        int maxInFlight = threads * FILES_IN_FLIGHT_PER_THREAD;
+        for (InputFile inputFile : inputFiles) {
+            pending.addLast(executor.submit(() -> analyzeFile(inputFile, cache, layers, headers, bytecode,
+                readers.get(), recorders.get(), budgets.get(), chunkChars, limits)));
+            if (pending.size() >= maxInFlight) {
+                results.save(await(pending.removeFirst()));
+            }
+        }
+        while (!pending.isEmpty()) {
+            results.save(await(pending.removeFirst()));
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Análisis de arquitectura interrumpido", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    FileIssues analyzeFile(InputFile inputFile, AnalysisCache cache, LayerTable layers, BytecodeIndex bytecode,
+                           SourceReader reader, RuleStats.Recorder recorder, MatchBudget budget, int chunkChars,
+                           FileIssues.Limits limits) {
+        return analyzeFile(inputFile, cache, layers, Collections.emptyMap(), bytecode, reader, recorder, budget,
+            chunkChars, limits);
+    }
+
+    private FileIssues analyzeFile(InputFile inputFile, AnalysisCache cache, LayerTable layers,
+                                   Map<InputFile, FileHeader> headers, BytecodeIndex bytecode, SourceReader reader,
+                                   RuleStats.Recorder recorder, MatchBudget budget, int chunkChars,
+                                   FileIssues.Limits limits) {
+        // La cabecera del índice de tipos, si la hay, se usa una vez y se suelta
+        FileHeader header = headers.isEmpty() ? null : headers.remove(inputFile);
+        FileIssues replay = cache.replayUnchanged(inputFile, layers.types());
+        if (replay != null) {
+            return replay;
+        }
+
+        FileIssues issues = new FileIssues(inputFile);
+        try {
+            SourceFile file = read(inputFile, header, layers, bytecode, reader, chunkChars);
+
+            if (!anyCheckAppliesTo(file.layer())) {
+                // Ninguna regla analiza esta capa: solo hacen falta la capa y los imports
+                issues.layer(file.layer().layer());
+                dependencies(file, issues);
+                for (int i = 0; i < checks.size(); i++) {
+                    recorder.skipped(i);
+                }
+                issues.analyzed(0L);
+                return issues;
+            }
+
+            if (!reader.isComplete()) {
+                // Archivo mayor que el umbral: se analiza por bloques sin cargarlo entero
+                return analyzeInChunks(new SourceChunks(file, reader, chunkChars), issues, recorder, budget, limits);
+            }
+
+            long contentHash = cache.isEnabled() ? AnalysisCache.hash(file.content()) : 0L;
+            replay = cache.replaySameContent(inputFile, contentHash, layers.types());
+            if (replay != null) {
+                return replay;
+            }
+
+            issues.layer(file.layer().layer());
+            dependencies(file, issues);
+            CheckRun run = new CheckRun();
+            runChecks(file, issues, recorder, budget, run, true);
+            return finish(issues, run, contentHash, limits);
+        } catch (IOException e) {
+            // Manejar error de lectura de archivo
+            issues.analysisError("Error al analizar el archivo: " + e.getMessage());
+            return issues;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Ejecuta las reglas sobre cada bloque del archivo. Cada bloque solo se queda con los issues
+     * que empiezan en su parte; el límite de patrones es por bloque, igual que para un archivo
+     * del tamaño del bloque.
+     */
+    private FileIssues analyzeInChunks(SourceChunks chunks, FileIssues issues, RuleStats.Recorder recorder,
+                                       MatchBudget budget, FileIssues.Limits limits) throws IOException {
+        SourceFile first = chunks.current();
+        issues.layer(first.layer().layer());
+        dependencies(first, issues);
+        CheckRun run = new CheckRun();
+        boolean firstChunk = true;
+        do {
+            issues.ownRange(chunks.ownFrom(), chunks.ownTo());
+            runChecks(chunks.current(), issues, recorder, budget, run, firstChunk);
+            firstChunk = false;
+        } while (chunks.next());
+        issues.ownRange(0, Integer.MAX_VALUE);
+        return finish(issues, run, chunks.contentHash(), limits);
+    }
+
+    private void runChecks(SourceFile file, FileIssues issues, RuleStats.Recorder recorder, MatchBudget budget,
+                           CheckRun run, boolean newFile) {
+        FileLayer layer = file.layer();
+        recorder.attach();
+        budget.start();
+        int chars = file.content().length();
+        for (int i = 0; i < checks.size(); i++) {
+            ArchitectureCheck check = checks.get(i);
+            if (!check.appliesTo(layer)) {
+                if (newFile) {
+                    recorder.skipped(i);
+                }
+                continue;
+            }
+            recorder.start(issues.issueCount());
+            try {
+                check.analyzeFile(file, issues);
+            } catch (MatchBudget.ExceededException e) {
+                // Lo que la regla ya encontró se conserva y las demás reglas siguen; las que usen
+                // expresiones regulares se interrumpen enseguida, porque el límite es del archivo (o bloque)
+                run.interrupted(check, e);
+            }
+            recorder.stop(i, chars, issues.issueCount(), newFile);
+        }
+        issues.foundTypes(file.foundTypes());
+    }
+
+    private static FileIssues finish(FileIssues issues, CheckRun run, long contentHash, FileIssues.Limits limits) {
+        // En el hilo de trabajo: los mensajes de los issues que quedan se construyen aquí
+        issues.limit(limits);
+        if (run.interrupted != null) {
+            LOG.warn("Análisis de arquitectura incompleto en {}: {}. Reglas interrumpidas: {}",
+                issues.inputFile(), run.reason, String.join(", ", run.interrupted));
+            issues.incomplete();
+        } else {
+            issues.analyzed(contentHash);
+        }
+        return issues;
+    }
+
+    /**
+     * Primera etapa: clasifica el archivo con la cabecera de su primer bloque y solo sigue leyendo
+     * si alguna regla analiza su capa. Si no, el archivo se devuelve sin contenido. Un archivo de
+     * más de {@code chunkChars} caracteres se devuelve con el primer bloque y el flujo abierto.
+     * Con la cabecera ya calculada para el índice de tipos, un archivo que no analiza ninguna
+     * regla ni siquiera se abre.
+     */
+    private SourceFile read(InputFile inputFile, FileHeader known, LayerTable layers, BytecodeIndex bytecode,
+                            SourceReader reader, int chunkChars) throws IOException {
+        if (known != null) {
+            FileLayer layer = layers.classify(inputFile, known);
+            if (!anyCheckAppliesTo(layer)) {
+                return new SourceFile(inputFile, "", layers, bytecode, known, layer);
+            }
+            reader.readHeader(inputFile);
+            return new SourceFile(inputFile, reader.readChunk(0, chunkChars), layers, bytecode, known, layer);
+        }
+        CharSequence start = reader.readHeader(inputFile);
+        if (!reader.isComplete()) {
+            FileHeader header = FileHeader.of(start);
+            // Una cabecera que no cabe en el primer bloque (cientos de imports) se toma del contenido
+            if (header.endsBefore(start.length())) {
+                FileLayer layer = layers.classify(inputFile, header);
+                CharSequence content = anyCheckAppliesTo(layer) ? reader.readChunk(0, chunkChars) : "";
+                return new SourceFile(inputFile, content, layers, bytecode, header, layer);
+            }
+        }
+        return new SourceFile(inputFile, reader.readChunk(0, chunkChars), layers, bytecode);
+    }
+
+    private boolean anyCheckAppliesTo(FileLayer layer) {
+        for (ArchitectureCheck check : checks) {
+            if (check.appliesTo(layer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void closeQuietly(SourceReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            LOG.debug("No se pudo cerrar el archivo: {}", e.getMessage());
+        }
+    }
+
+    // Imports del archivo y, en modo bytecode, los tipos usados sin import (sin línea)
+    private static void dependencies(SourceFile file, FileIssues issues) {
+        FileHeader header = file.header();
+        ClassReferences bytecode = file.bytecode();
+        if (bytecode == null) {
+            issues.dependencies(header.packageName(), header.imports(), header.importLines());
+            issues.declaredType(TypeIndex.DeclaredType.of(file.inputFile(), header).simpleName());
+            return;
+        }
+        List<String> dependencies = new ArrayList<>(header.imports());
+        dependencies.addAll(bytecode.notImported(header));
+        int[] lines = Arrays.copyOf(header.importLines(), dependencies.size());
+        issues.dependencies(header.packageName(), dependencies, lines);
+        issues.declaredType(TypeIndex.DeclaredType.of(file.inputFile(), header).simpleName());
+    }
+
+    // Reglas interrumpidas por el límite de patrones en un archivo, en todos sus bloques
+    private static final class CheckRun {
+        private List<String> interrupted;
+        private String reason;
+
+        private void interrupted(ArchitectureCheck check, MatchBudget.ExceededException e) {
+            if (interrupted == null) {
+                interrupted = new ArrayList<>();
+                reason = e.getMessage();
+            }
+            String name = check.getClass().getSimpleName();
+            if (!interrupted.contains(name)) {
+                interrupted.add(name);
+            }
+        }
+    }
+
+    /** Guarda los resultados en el hilo del scanner, en el orden de los archivos. */
+    private static final class Results {
+        private final SensorContext context;
+        private final AnalysisCache cache;
+        private final DependencyGraph graph;
+        private final int[] filesByLayer = new int[Layer.values().length];
+        private int files;
+        private int replayed;
+        private int incomplete;
+
+        private Results(SensorContext context, AnalysisCache cache, DependencyGraph graph) {
+            this.context = context;
+            this.cache = cache;
+            this.graph = graph;
+        }
+
+        private void save(FileIssues issues) {
+            issues.saveTo(context);
+            cache.save(issues);
+            files++;
+            filesByLayer[issues.layer().ordinal()]++;
+            if (issues.hasDependencies()) {
+                graph.add(issues.inputFile(), issues.packageName(), issues.imports(), issues.importLines());
+            }
+            if (issues.isReplayed()) {
+                replayed++;
+            }
+            if (issues.isIncomplete()) {
+                incomplete++;
+            }
+        }
+
+        private void saveLayerMeasures() {
+            for (Layer layer : Layer.values()) {
+                Metric<Integer> metric = ArchitectureMetrics.filesIn(layer);
+                if (metric != null) {
+                    context.<Integer>newMeasure()
+                        .on(context.project())
+                        .forMetric(metric)
+                        .withValue(filesByLayer[layer.ordinal()])
+                        .save();
+                }
+            }
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "arq-rules-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
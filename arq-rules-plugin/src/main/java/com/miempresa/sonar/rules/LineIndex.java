@@ -0,0 +1,83 @@
+package com.miempresa.sonar.rules;
+
+import java.util.Arrays;
+
+/**
+ * Posición de inicio de cada línea de un archivo, para convertir una posición del contenido en
+ * línea y columna con una búsqueda binaria en lugar de contar saltos de línea desde el principio.
+ * Los finales de línea son los mismos que usa SonarQube: {@code \n}, {@code \r\n} y {@code \r}.
+ */
+final class LineIndex {
+
+    private final int[] starts;
+    private final int lines;
+    private final int length;
+    private final int firstLine;
+
+    private LineIndex(int[] starts, int lines, int length, int firstLine) {
+        this.starts = starts;
+        this.lines = lines;
+        this.length = length;
+        this.firstLine = firstLine;
+    }
+
+    static LineIndex of(CharSequence text) {
+        return of(text, 1, 0);
+    }
+
+    /**
+     * Índice de un bloque de un archivo más grande ({@link SourceChunks}) que empieza en la línea
+     * y columna indicadas: las líneas y columnas que devuelve son las del archivo completo.
+     */
+    static LineIndex of(CharSequence text, int firstLine, int firstColumn) {
+        int[] starts = new int[Math.max(16, text.length() / 32)];
+        // La primera línea puede haber empezado antes del bloque
+        starts[0] = -firstColumn;
+        int lines = 1;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                if (lines == starts.length) {
+                    starts = Arrays.copyOf(starts, lines * 2);
+                }
+                starts[lines++] = i + 1;
+            }
+        }
+        return new LineIndex(starts, lines, length, firstLine);
+    }
+
+    int lineCount() {
+        return lines;
+    }
+
+    /** Línea de la posición, empezando en 1. */
+    int line(int offset) {
+        int index = Arrays.binarySearch(starts, 0, lines, offset);
+        return (index >= 0 ? index : -index - 2) + firstLine;
+    }
+
+    /** Columna de la posición dentro de su línea, empezando en 0. */
+    int column(int offset) {
+        return offset - starts[line(offset) - firstLine];
+    }
+
+    /** Posición del primer carácter de la línea, o 0 si la línea empezó antes del bloque. */
+    int lineStart(int line) {
+        return Math.max(0, starts[line - firstLine]);
+    }
+
+    /** Posición del final de la línea, sin el salto de línea. */
+    int lineEnd(CharSequence text, int line) {
+        int index = line - firstLine;
+        int end = index + 1 < lines ? starts[index + 1] : length;
+        int start = lineStart(line);
+        while (end > start && (text.charAt(end - 1) == '\n' || text.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,149 @@
+package com.miempresa.sonar.rules;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Autómata Aho-Corasick que encuentra todas las apariciones de un conjunto de literales
+ * en una sola pasada lineal sobre el texto, sin importar cuántos literales haya.
+ *
+ * <p>Las transiciones se precalculan en una tabla densa (estado x clase de carácter), de modo
+ * que cada carácter del texto cuesta una lectura de arreglo. Los caracteres que no aparecen
+ * en ningún literal comparten la clase 0.</p>
+ */
+final class LiteralMatcher {
+
+    /** Recibe cada aparición; devolver {@code false} detiene el recorrido. */
+    interface Listener {
+        boolean onMatch(int literal, int start, int end);
+    }
+
+    private static final int ASCII = 128;
+
+    private final int[] lengths;
+    private final int[] asciiClasses = new int[ASCII];
+    private final Map<Character, Integer> otherClasses = new HashMap<>();
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    LiteralMatcher(List<String> literals) {
+        lengths = new int[literals.size()];
+        int classes = 1;
+        for (String literal : literals) {
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Los literales no pueden estar vacíos");
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (classOf(c) == 0) {
+                    if (c < ASCII) {
+                        asciiClasses[c] = classes++;
+                    } else {
+                        otherClasses.put(c, classes++);
+                    }
+                }
+            }
+        }
+        alphabetSize = classes;
+
+        // Trie de literales
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> matches = new ArrayList<>();
+        trie.add(newRow());
+        matches.add(new ArrayList<>());
+        for (int id = 0; id < literals.size(); id++) {
+            String literal = literals.get(id);
+            lengths[id] = literal.length();
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                int c = classOf(literal.charAt(i));
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newRow());
+                    matches.add(new ArrayList<>());
+                }
+                state = trie.get(state)[c];
+            }
+            matches.get(state).add(id);
+        }
+
+        // Enlaces de falla en anchura y tabla de transiciones completa
+        int states = trie.size();
+        transitions = new int[states * alphabetSize];
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < alphabetSize; c++) {
+            int next = trie.get(0)[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matches.get(state).addAll(matches.get(fail[state]));
+            for (int c = 0; c < alphabetSize; c++) {
+                int next = trie.get(state)[c];
+                if (next < 0) {
+                    transitions[state * alphabetSize + c] = transitions[fail[state] * alphabetSize + c];
+                } else {
+                    transitions[state * alphabetSize + c] = next;
+                    fail[next] = transitions[fail[state] * alphabetSize + c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        outputs = new int[states][];
+        for (int state = 0; state < states; state++) {
+            List<Integer> ids = matches.get(state);
+            outputs[state] = ids.isEmpty() ? null : ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    int size() {
+        return lengths.length;
+    }
+
+    void scan(CharSequence text, Listener listener) {
+        scan(text, 0, text.length(), listener);
+    }
+
+    void scan(CharSequence text, int from, int to, Listener listener) {
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = transitions[state * alphabetSize + classOf(text.charAt(i))];
+            int[] found = outputs[state];
+            if (found != null) {
+                for (int literal : found) {
+                    if (!listener.onMatch(literal, i + 1 - lengths[literal], i + 1)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private int classOf(char c) {
+        if (c < ASCII) {
+            return asciiClasses[c];
+        }
+        Integer cls = otherClasses.get(c);
+        return cls == null ? 0 : cls;
+    }
+
+    private int[] newRow() {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
@@ -0,0 +1,111 @@
+package com.miempresa.sonar.rules;
+
+/**
+ * Límite de trabajo de las expresiones regulares en un archivo: caracteres leídos por
+ * {@code java.util.regex} y tiempo de reloj. Los patrones de las reglas están escritos en formas
+ * acotadas, pero un archivo minificado o generado puede tener líneas de megas; el límite
+ * garantiza que ningún archivo detenga el análisis.
+ *
+ * <p>El matcher lee el texto con {@link CharSequence#charAt}, así que basta con envolver el texto
+ * ({@link #guard(CharSequence)}) para contar cada paso. Al superar el límite se lanza
+ * {@link ExceededException}: el sensor interrumpe la regla en curso, conserva lo ya encontrado y
+ * avisa del archivo.</p>
+ *
+ * <p>Igual que {@link RuleStats.Recorder}, cada hilo de trabajo usa su propia instancia y la
+ * asocia al hilo; fuera de un análisis {@link #guard(CharSequence)} devuelve el texto tal cual.</p>
+ */
+final class MatchBudget {
+
+    private static final ThreadLocal<MatchBudget> CURRENT = new ThreadLocal<>();
+
+    // nanoTime es mucho más caro que un charAt: el reloj se consulta cada tantos pasos
+    private static final int CLOCK_INTERVAL = 4096;
+
+    private final long maxSteps;
+    private final long maxNanos;
+    private long steps;
+    private long nextClockCheck;
+    private long deadline;
+
+    /** Con 0 no hay límite de pasos o de tiempo, respectivamente. */
+    MatchBudget(long maxSteps, long maxMillis) {
+        this.maxSteps = maxSteps > 0 ? maxSteps : Long.MAX_VALUE;
+        this.maxNanos = maxMillis > 0 ? maxMillis * 1_000_000L : 0L;
+    }
+
+    /** Reinicia el límite para un archivo nuevo y lo asocia al hilo actual. */
+    void start() {
+        steps = 0;
+        nextClockCheck = CLOCK_INTERVAL;
+        deadline = maxNanos > 0 ? System.nanoTime() + maxNanos : 0L;
+        if (CURRENT.get() != this) {
+            CURRENT.set(this);
+        }
+    }
+
+    void detach() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    /** Texto que cuenta cada lectura contra el límite del hilo actual, si lo hay. */
+    static CharSequence guard(CharSequence text) {
+        MatchBudget budget = CURRENT.get();
+        return budget == null ? text : new GuardedText(budget, text);
+    }
+
+    private void step() {
+        if (++steps > maxSteps) {
+            throw new ExceededException("se superó el límite de " + maxSteps + " pasos de evaluación de patrones");
+        }
+        if (steps >= nextClockCheck) {
+            nextClockCheck += CLOCK_INTERVAL;
+            if (deadline != 0L && System.nanoTime() - deadline > 0) {
+                throw new ExceededException("se superó el límite de " + maxNanos / 1_000_000L
+                    + " ms de evaluación de patrones");
+            }
+        }
+    }
+
+    /** Límite superado; sin traza de pila, que no aporta nada aquí. */
+    static final class ExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private ExceededException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final class GuardedText implements CharSequence {
+        private final MatchBudget budget;
+        private final CharSequence text;
+
+        private GuardedText(MatchBudget budget, CharSequence text) {
+            this.budget = budget;
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            budget.step();
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            // Solo para los grupos de una coincidencia ya encontrada
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
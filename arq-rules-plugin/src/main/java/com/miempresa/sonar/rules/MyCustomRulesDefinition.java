@@ -10,7 +10,6 @@ public class MyCustomRulesDefinition implements RulesDefinition {
         NewRepository repo = context.createRepository("arq-rules-plugin", "java");
         repo.setName("My Custom Layered Architecture Rules");
 
-        // TODO Agregar reglas personalizadas, asi como su descripcion
         // Exposition
         // CLAR001: Evitar acceso directo al paquete domain desde exposition
         // Implementada en: NoDomainAccessFromExpositionRule.java
@@ -98,6 +97,19 @@ public class MyCustomRulesDefinition implements RulesDefinition {
             .setType(RuleType.CODE_SMELL)
             .setTags("architecture", "persistence", "layered-architecture", "cyclic-dependencies", "java");
 
+        // Proyecto
+        // CLAR051: No ciclos de dependencias entre capas
+        // Implementada en: NoLayerDependencyCyclesRule.java
+        repo.createRule("NoLayerDependencyCycles")
+            .setName("Los paquetes de distintas capas no deben depender entre sí en ciclo")
+            .setHtmlDescription("Los imports entre paquetes de distintas capas no deben formar un ciclo " +
+                "(por ejemplo servicio → repositorio → servicio). Un ciclo entre capas impide compilar, probar " +
+                "o reemplazar una capa sin la otra. Se analiza el grafo de imports de todo el proyecto y se " +
+                "reporta el import que cruza de capa dentro del ciclo.")
+            .setSeverity("CRITICAL")
+            .setType(RuleType.CODE_SMELL)
+            .setTags("architecture", "layered-architecture", "cyclic-dependencies", "java");
+
         repo.done();
     }
 }
\ No newline at end of file
@@ -6,38 +6,16 @@ public class MyCustomRulesPlugin implements Plugin {
 
     @Override
     public void define(Context context) {
-        // TODO Registrar las clases que extienden la API de extensión
         // Clases base del plugin
         context.addExtension(MyCustomRulesDefinition.class);
 
-        // Exposición
-        // CLAR001: Evitar acceso al dominio desde exposición
-        context.addExtension(NoDomainAccessFromExpositionRule.class);
-        // CLAR002: Evitar acceso a repositorios desde exposición
-        context.addExtension(NoRepositoryAccessFromExpositionRule.class);
-        
-        // Presentacion
-        // CLAR011: No persistencia en controladores
-        context.addExtension(NoPersistenceInControllerRule.class);
-        // CLAR012: No anotaciones de otras capas en controladores
-        context.addExtension(NoOtherLayerAnnotationsInControllerRule.class);
-
-        // Servicios/Aplicación
-        // CLAR021: No acceso a controladores desde servicios
-        context.addExtension(NoControllerAccessFromServiceRule.class);
-        // CLAR022: No lógica de persistencia en servicios
-        context.addExtension(NoPersistenceInServiceRule.class); 
-        
-        // Domain/Modelo
-        // CLAR031: No dependencias de framework en dominio
-        context.addExtension(NoFrameworkDependenciesInDomainRule.class);
-
-        // Persistencia
-        // CLAR041: No acceso a capas superiores desde repositorios
-        context.addExtension(NoUpperLayerAccessFromRepositoryRule.class);
-
-
-
+        // Sensor único: lee cada archivo una vez y ejecuta todas las reglas
+        // registradas en ArchitectureChecks (CLAR001 - CLAR041)
+        context.addExtension(LayeredArchitectureSensor.class);
+        context.addExtensions(ArchitectureProperties.definitions());
+        context.addExtension(ArchitectureMetrics.class);
+        // Las mismas reglas sobre el árbol de sonar-java (sonar.arq.javaFrontend.enabled)
+        context.addExtension(ArchitectureCheckRegistrar.class);
 
         // // CLAR003: Evitar lógica de negocio en exposición (CREO QUE NO ESTA FUNCIONANDO CORRECTAMENTE)
         // context.addExtension(NoBusinessLogicInExpositionRule.class);
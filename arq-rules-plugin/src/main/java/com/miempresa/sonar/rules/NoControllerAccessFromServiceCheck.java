@@ -0,0 +1,60 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.check.Rule;
+import org.sonar.plugins.java.api.tree.AnnotationTree;
+import org.sonar.plugins.java.api.tree.ImportTree;
+import org.sonar.plugins.java.api.tree.NewClassTree;
+import org.sonar.plugins.java.api.tree.Tree;
+import org.sonar.plugins.java.api.tree.VariableTree;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Versión sobre el árbol de sonar-java de {@link NoControllerAccessFromServiceRule}: los tipos
+ * de la capa de exposición se reconocen por su paquete resuelto, no por llamarse
+ * {@code *Controller} o {@code *Resource}.
+ */
+@Rule(key = "NoControllerAccessFromService")
+public class NoControllerAccessFromServiceCheck extends ArchitectureVisitor {
+
+    private static final List<String> WEB_PACKAGES = Arrays.asList(
+        "org.springframework.web.bind.annotation.", "org.springframework.stereotype.Controller");
+
+    public NoControllerAccessFromServiceCheck() {
+    }
+
+    NoControllerAccessFromServiceCheck(LayerTable layers) {
+        super(layers);
+    }
+
+    @Override
+    List<Tree.Kind> kinds() {
+        return Arrays.asList(Tree.Kind.IMPORT, Tree.Kind.VARIABLE, Tree.Kind.NEW_CLASS, Tree.Kind.ANNOTATION);
+    }
+
+    @Override
+    boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.SERVICE) || layer.declares(Layer.SERVICE);
+    }
+
+    @Override
+    void visit(Tree tree) {
+        if (tree.is(Tree.Kind.ANNOTATION)) {
+            if (startsWithAny(annotationName((AnnotationTree) tree), WEB_PACKAGES)) {
+                reportOnce(tree, "Los Services no deben usar anotaciones o clases de la capa de presentación. La comunicación debe ser unidireccional, desde presentación hacia servicios.");
+            }
+            return;
+        }
+        String typeName;
+        if (tree.is(Tree.Kind.IMPORT)) {
+            typeName = name(((ImportTree) tree).qualifiedIdentifier());
+        } else if (tree.is(Tree.Kind.VARIABLE)) {
+            typeName = typeName(((VariableTree) tree).type());
+        } else {
+            typeName = typeName(((NewClassTree) tree).identifier());
+        }
+        if (layers().forbids(Layer.SERVICE, Layer.EXPOSITION.bit(), typeName) || startsWithAny(typeName, WEB_PACKAGES)) {
+            reportOnce(tree, "Los Services no deben llamar directamente a clases del paquete controller ni exposición. La comunicación debe ser unidireccional, desde presentación hacia servicios.");
+        }
+    }
+}
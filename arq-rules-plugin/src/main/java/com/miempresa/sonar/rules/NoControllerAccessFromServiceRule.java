@@ -2,19 +2,7 @@ package com.miempresa.sonar.rules;
 
 import org.sonar.check.Rule;
 import org.sonar.check.Priority;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.sensor.Sensor;
-import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.batch.sensor.SensorDescriptor;
-import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.rule.RuleKey;
-import javax.annotation.Nonnull;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
 
 @Rule(
     key = "NoControllerAccessFromService",
@@ -23,117 +11,89 @@ import java.util.regex.Pattern;
     priority = Priority.MAJOR,
     tags = {"arquitectura", "separacion-capas", "comunicacion-unidireccional"}
 )
-public class NoControllerAccessFromServiceRule implements Sensor {
+public class NoControllerAccessFromServiceRule implements ArchitectureCheck {
+
+    private static final RuleKey RULE_KEY = RuleKey.of("arq-rules-plugin", "NoControllerAccessFromService");
     
-    private static final List<Pattern> FORBIDDEN_IMPORTS = new ArrayList<>();
-    static {
-        // Importaciones de paquetes de presentación/exposición
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.presentacion\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.exposicion\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.exposition\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.controller\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.controllers\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.web\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.rest\\."));
-        
+    // Los imports de paquetes de presentación/exposición los decide el modelo de capas
+    private static final int EXPOSITION = Layer.EXPOSITION.bit();
+
+    private static final PatternSet FORBIDDEN_IMPORTS = PatternSet.builder()
         // Importaciones específicas de anotaciones de controladores
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+org\\.springframework\\.web\\.bind\\.annotation\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+org\\.springframework\\.stereotype\\.Controller"));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+org\\.springframework\\.web\\.bind\\.annotation\\.RestController"));
-    }
+        .add("import\\s+org\\.springframework\\.web\\.bind\\.annotation\\.")
+        .add("import\\s+org\\.springframework\\.stereotype\\.Controller")
+        .add("import\\s+org\\.springframework\\.web\\.bind\\.annotation\\.RestController")
+        .build();
 
-    private static final List<Pattern> FORBIDDEN_USAGE_PATTERNS = new ArrayList<>();
-    static {
+    private static final PatternSet FORBIDDEN_USAGE_PATTERNS = PatternSet.builder()
         // Patrones de uso de clases de presentación/exposición
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*Controller\\w*\\s+\\w+"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*RestController\\w*\\s+\\w+"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*Endpoint\\w*\\s+\\w+"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*Resource\\w*\\s+\\w+"));
-        
-        // Patrones de anotaciones de web/controladores en servicios
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@RequestMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@GetMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@PostMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@PutMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@DeleteMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@PatchMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@Controller\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@RestController\\b"));
-        
-        // Patrones adicionales para detectar uso de controladores
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("new\\s+\\w*Controller\\w*\\s*\\("));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\w*Controller\\w*\\s+\\w+\\s*="));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("private\\s+.*Controller.*\\s+\\w+\\s*;"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("protected\\s+.*Controller.*\\s+\\w+\\s*;"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("public\\s+.*Controller.*\\s+\\w+\\s*;"));
-    }
-
-    private static final Pattern SERVICE_PACKAGE_PATTERN = Pattern.compile("package\\s+[\\w.]+\\.(servicios|services|service)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern SERVICE_CLASS_PATTERN = Pattern.compile("@Service\\b|class\\s+\\w*Service\\w*\\s*\\{", Pattern.CASE_INSENSITIVE);
+        .add("\\b\\w*Controller\\w*\\s+\\w+")
+        .add("\\b\\w*RestController\\w*\\s+\\w+")
+        .add("\\b\\w*Endpoint\\w*\\s+\\w+")
+        .add("\\b\\w*Resource\\w*\\s+\\w+")
 
+        // Patrones adicionales para detectar uso de controladores
+        .add("new\\s+\\w*Controller\\w*\\s*\\(")
+        .add("\\b\\w*Controller\\w*\\s+\\w+\\s*=")
+        // Campos: la declaración no pasa del primer ';' ni de la línea, y su longitud está acotada
+        .add("private\\s+[^;\\n\\r]{0,200}Controller[^;\\n\\r]{0,200}\\s+\\w+\\s*;")
+        .add("protected\\s+[^;\\n\\r]{0,200}Controller[^;\\n\\r]{0,200}\\s+\\w+\\s*;")
+        .add("public\\s+[^;\\n\\r]{0,200}Controller[^;\\n\\r]{0,200}\\s+\\w+\\s*;")
+        .build();
+
+    private static final PatternSet FORBIDDEN_ANNOTATIONS = PatternSet.builder()
+        // Patrones de anotaciones de web/controladores en servicios
+        .add("@RequestMapping\\b")
+        .add("@GetMapping\\b")
+        .add("@PostMapping\\b")
+        .add("@PutMapping\\b")
+        .add("@DeleteMapping\\b")
+        .add("@PatchMapping\\b")
+        .add("@Controller\\b")
+        .add("@RestController\\b")
+        .build();
+
+
+    // Archivos del paquete de servicios o que son clases de servicio
     @Override
-    public void describe(@Nonnull SensorDescriptor descriptor) {
-        descriptor
-            .name("No Controller Access From Service Check")
-            .onlyOnLanguage("java");
+    public boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.SERVICE) || layer.declares(Layer.SERVICE);
     }
 
     @Override
-    public void execute(@Nonnull SensorContext context) {
-        FileSystem fs = context.fileSystem();
-        
-        Iterable<InputFile> inputFiles = fs.inputFiles(fs.predicates().hasLanguage("java"));
-        
-        for (InputFile inputFile : inputFiles) {
-            analyzeFile(inputFile, context);
+    public void analyzeFile(SourceFile file, FileIssues issues) {
+        CharSequence content = file.content();
+        LayerTable layers = file.layerTable();
+        if (!appliesTo(file.layer()) || layers.model().allows(Layer.SERVICE, Layer.EXPOSITION)) {
+            return;
+        }
+
+        JavaTokens tokens = file.tokens();
+
+        // Buscar importaciones prohibidas: de la capa de exposición o de anotaciones web
+        PatternSet.Match match = PatternSet.earliest(
+            layers.forbiddenImport(file.header(), Layer.SERVICE, EXPOSITION),
+            FORBIDDEN_IMPORTS.find(content, file.header().importRanges()));
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "Los Services no deben llamar directamente a clases del paquete controller ni exposición. La comunicación debe ser unidireccional, desde presentación hacia servicios.");
+            return; // Solo reportar una vez por archivo
+        }
+
+        // En modo bytecode, clases de exposición usadas aunque no aparezcan en los imports
+        ClassReferences bytecode = file.bytecode();
+        if (bytecode != null && bytecode.firstForbidden(Layer.SERVICE, EXPOSITION, layers) != null) {
+            issues.addIssue(RULE_KEY, "Los Services no deben llamar directamente a clases del paquete controller ni exposición. La comunicación debe ser unidireccional, desde presentación hacia servicios.");
+            return; // Solo reportar una vez por archivo
         }
-    }
 
-    private void analyzeFile(InputFile inputFile, SensorContext context) {
-        try {
-            String content = new String(inputFile.contents().getBytes(), StandardCharsets.UTF_8);
-            
-            // Solo analizar archivos que están en el paquete de servicios
-            // o que son clases de servicio
-            if (!SERVICE_PACKAGE_PATTERN.matcher(content).find() && 
-                !SERVICE_CLASS_PATTERN.matcher(content).find()) {
-                return;
-            }
-
-            // Buscar importaciones prohibidas
-            for (Pattern pattern : FORBIDDEN_IMPORTS) {
-                if (pattern.matcher(content).find()) {
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoControllerAccessFromService"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("Los Services no deben llamar directamente a clases del paquete controller ni exposición. La comunicación debe ser unidireccional, desde presentación hacia servicios."))
-                        .save();
-                    return; // Solo reportar una vez por archivo
-                }
-            }
-
-            // Buscar patrones de uso prohibidos
-            for (Pattern pattern : FORBIDDEN_USAGE_PATTERNS) {
-                if (pattern.matcher(content).find()) {
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoControllerAccessFromService"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("Los Services no deben usar anotaciones o clases de la capa de presentación. La comunicación debe ser unidireccional, desde presentación hacia servicios."))
-                        .save();
-                    return; // Solo reportar una vez por archivo
-                }
-            }
-            
-        } catch (IOException e) {
-            // Manejar error de lectura de archivo
-            context.newAnalysisError()
-                .message("Error al analizar el archivo: " + e.getMessage())
-                .onFile(inputFile)
-                .save();
+        // Buscar patrones de uso prohibidos, fuera de comentarios y literales
+        match = FORBIDDEN_ANNOTATIONS.find(content, tokens.ranges(JavaTokens.ANNOTATION));
+        if (match == null) {
+            match = FORBIDDEN_USAGE_PATTERNS.find(file.masked());
+        }
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "Los Services no deben usar anotaciones o clases de la capa de presentación. La comunicación debe ser unidireccional, desde presentación hacia servicios.");
+            return; // Solo reportar una vez por archivo
         }
     }
 }
@@ -0,0 +1,82 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.check.Rule;
+import org.sonar.plugins.java.api.tree.ClassTree;
+import org.sonar.plugins.java.api.tree.ImportTree;
+import org.sonar.plugins.java.api.tree.MethodTree;
+import org.sonar.plugins.java.api.tree.Tree;
+import org.sonar.plugins.java.api.tree.TypeTree;
+import org.sonar.plugins.java.api.tree.VariableTree;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Versión sobre el árbol de sonar-java de {@link NoDomainAccessFromExpositionRule}, con el mismo
+ * alcance: imports, tipos de campos, retornos y parámetros. Con la semántica los tipos se
+ * resuelven a su nombre calificado en lugar de adivinarse por el nombre. Como la regla de texto,
+ * no mira variables locales ni instanciaciones.
+ */
+@Rule(key = "NoDomainAccessFromExpositionRule")
+public class NoDomainAccessFromExpositionCheck extends ArchitectureVisitor {
+
+    public NoDomainAccessFromExpositionCheck() {
+    }
+
+    NoDomainAccessFromExpositionCheck(LayerTable layers) {
+        super(layers);
+    }
+
+    @Override
+    List<Tree.Kind> kinds() {
+        return Arrays.asList(Tree.Kind.IMPORT, Tree.Kind.CLASS, Tree.Kind.INTERFACE, Tree.Kind.ENUM, Tree.Kind.RECORD,
+            Tree.Kind.METHOD, Tree.Kind.CONSTRUCTOR);
+    }
+
+    @Override
+    boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.EXPOSITION);
+    }
+
+    @Override
+    void visit(Tree tree) {
+        if (tree.is(Tree.Kind.IMPORT)) {
+            String imported = name(((ImportTree) tree).qualifiedIdentifier());
+            if (layers().forbids(Layer.EXPOSITION, Layer.DOMAIN.bit(), imported)) {
+                report(tree, imported);
+            }
+        } else if (tree.is(Tree.Kind.METHOD, Tree.Kind.CONSTRUCTOR)) {
+            MethodTree method = (MethodTree) tree;
+            check(method.returnType());
+            for (VariableTree parameter : method.parameters()) {
+                check(parameter.type());
+            }
+        } else {
+            // Solo los campos: las variables locales están dentro de los métodos
+            for (Tree member : ((ClassTree) tree).members()) {
+                if (member.is(Tree.Kind.VARIABLE)) {
+                    check(((VariableTree) member).type());
+                }
+            }
+        }
+    }
+
+    private void check(TypeTree type) {
+        if (type == null) {
+            return;
+        }
+        String typeName = typeName(type);
+        if (layers().forbids(Layer.EXPOSITION, Layer.DOMAIN.bit(), typeName)) {
+            report(type, typeName);
+        }
+    }
+
+    private void report(Tree tree, String typeName) {
+        reportIssue(tree, NoDomainAccessFromExpositionRule.message(typeName, codeLine(tree)));
+    }
+
+    private String codeLine(Tree tree) {
+        List<String> lines = context.getFileLines();
+        int line = tree.firstToken().line();
+        return line <= lines.size() ? lines.get(line - 1).trim() : "";
+    }
+}
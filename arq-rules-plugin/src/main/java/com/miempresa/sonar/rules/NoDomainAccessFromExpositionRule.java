@@ -1,163 +1,150 @@
 package com.miempresa.sonar.rules;
 
-import org.sonar.api.batch.sensor.Sensor;
-import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.batch.sensor.SensorDescriptor;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.rule.RuleKey;
-import org.sonar.api.batch.sensor.issue.NewIssue;
-import org.sonar.api.batch.sensor.issue.NewIssueLocation;
 
-import java.io.IOException;
-import java.nio.file.Path;
-import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
-public class NoDomainAccessFromExpositionRule implements Sensor {
+public class NoDomainAccessFromExpositionRule implements ArchitectureCheck {
 
     private static final RuleKey RULE_KEY = RuleKey.of("arq-rules-plugin", "NoDomainAccessFromExpositionRule");
-    private static final Pattern IMPORT_PATTERN = Pattern.compile("import\\s+([\\w\\.]+);");
-    
-    // Patrones comunes para identificar paquetes de exposición
-    private static final List<String> EXPOSITION_PATTERNS = Arrays.asList(
-        "/exposicion/", ".exposicion.",
-        "/exposition/", ".exposition.",
-        "/rest/", ".rest.",
-        "/controller/", ".controller.",
-        "/controllers/", ".controllers.",
-        "/api/", ".api.",
-        "/web/", ".web.",
-        "/presentacion/", ".presentacion.",
-        "/presentation/", ".presentation."
-    );
-
-    // Patrones comunes para identificar paquetes de dominio/modelo
-    private static final List<String> DOMAIN_PATTERNS = Arrays.asList(
-        "/modelo/", ".modelo.",
-        "/model/", ".model.",
-        "/domain/", ".domain.",
-        "/dominio/", ".dominio.",
-        "/entity/", ".entity.",
-        "/entities/", ".entities.",
-        "/entidad/", ".entidad.",
-        "/entidades/", ".entidades."
-    );
 
+    private static final int DOMAIN = Layer.DOMAIN.bit();
+    
+    // Solo archivos de la capa de exposición
     @Override
-    public void describe(@javax.annotation.Nonnull SensorDescriptor descriptor) {
-        descriptor.name("Regla para evitar acceso directo al modelo desde la capa de exposición");
-        descriptor.onlyOnLanguage("java");
+    public boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.EXPOSITION);
     }
 
+    // Los tipos de campos, retornos y parámetros se resuelven con el índice de tipos
     @Override
-    public void execute(@javax.annotation.Nonnull SensorContext context) {
-        FileSystem fs = context.fileSystem();
-
-        for (InputFile inputFile : fs.inputFiles(fs.predicates().hasLanguage("java"))) {
-            Path filePath = Path.of(inputFile.uri());
-            
-            // Solo analizar archivos en la capa de exposición
-            if (!isInExpositionPackage(filePath)) {
-                continue;
-            }
+    public boolean resolvesTypes() {
+        return true;
+    }
 
-            try {
-                analyzeFile(inputFile, context);
-            } catch (IOException e) {
-                context.newAnalysisError()
-                    .message("Error al analizar el archivo: " + e.getMessage())
-                    .onFile(inputFile)
-                    .save();
-            }
+    @Override
+    public void analyzeFile(SourceFile file, FileIssues issues) {
+        LayerTable layers = file.layerTable();
+        if (!appliesTo(file.layer()) || layers.model().allows(Layer.EXPOSITION, Layer.DOMAIN)) {
+            return;
         }
-    }
 
-    private void analyzeFile(InputFile inputFile, SensorContext context) throws IOException {
-        String fileContent = inputFile.contents();
-        String[] lines = fileContent.split("\n");
+        FileHeader header = file.header();
         
         // Analizar imports
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i];
-            Matcher matcher = IMPORT_PATTERN.matcher(line);
-            if (matcher.find()) {
-                String imported = matcher.group(1);
-                if (isDomainPackage(imported)) {
-                    createIssue(context, inputFile, imported, i + 1, line.trim());
-                }
+        List<String> imports = header.imports();
+        int[] importRanges = header.importRanges();
+        for (int i = 0; i < imports.size(); i++) {
+            String imported = imports.get(i);
+            if (layers.forbids(Layer.EXPOSITION, DOMAIN, imported)) {
+                createIssue(issues, file, imported, importRanges[i * 2], importRanges[i * 2 + 1]);
             }
         }
 
         // Analizar el contenido del archivo en busca de referencias directas
-        analyzeDirectReferences(context, inputFile, lines);
+        analyzeDirectReferences(issues, file);
+
+        // En modo bytecode, tipos del dominio usados sin import (nombres calificados, tipos inferidos)
+        ClassReferences bytecode = file.bytecode();
+        if (bytecode != null) {
+            for (String type : bytecode.notImportedForbidden(Layer.EXPOSITION, DOMAIN, layers, header)) {
+                issues.addIssue(RULE_KEY, type, () -> String.format(
+                    "La clase usa el tipo del modelo/dominio '%s' desde la capa de exposición sin importarlo (detectado en el bytecode).\n" +
+                    "Solución: Utiliza DTOs y servicios para acceder a los datos del modelo.",
+                    type
+                ));
+            }
+        }
     }
 
-    private boolean isInExpositionPackage(Path path) {
-        String normalizedPath = path.toString().replace("\\", "/").toLowerCase();
-        return EXPOSITION_PATTERNS.stream().anyMatch(pattern -> normalizedPath.contains(pattern));
+    // El mensaje se construye solo si el issue se guarda, todavía con el contenido del archivo.
+    // Leído por bloques, la línea se copia ya: al construir el mensaje el bloque es otro
+    private void createIssue(FileIssues issues, SourceFile file, String importedClass, int start, int end) {
+        LineIndex lines = file.lines();
+        if (issues.readsInChunks()) {
+            String codeLine = codeLine(file, lines, start);
+            issues.addIssue(RULE_KEY, lines, start, end, importedClass, () -> message(importedClass, codeLine));
+        } else {
+            issues.addIssue(RULE_KEY, lines, start, end, importedClass,
+                () -> message(importedClass, codeLine(file, lines, start)));
+        }
     }
 
-    private boolean isDomainPackage(String imported) {
-        String normalizedImport = imported.toLowerCase();
-        return DOMAIN_PATTERNS.stream().anyMatch(pattern -> normalizedImport.contains(pattern));
+    private static String codeLine(SourceFile file, LineIndex lines, int offset) {
+        int line = lines.line(offset);
+        return file.content().subSequence(lines.lineStart(line), lines.lineEnd(file.content(), line)).toString().trim();
     }
 
-    private void createIssue(SensorContext context, InputFile inputFile, String importedClass, int line, String codeLine) {
-        NewIssue issue = context.newIssue().forRule(RULE_KEY);
-        NewIssueLocation location = issue.newLocation()
-            .on(inputFile)
-            .at(inputFile.selectLine(line))
-            .message(String.format(
-                "No se debe acceder directamente a clases del modelo/dominio '%s' desde la capa de exposición.\n" +
-                "Línea problemática: %s\n" +
-                "Solución: Utiliza DTOs y servicios para acceder a los datos del modelo.",
-                importedClass,
-                codeLine
-            ));
-
-        issue.at(location).save();
+    static String message(String importedClass, String codeLine) {
+        return String.format(
+            "No se debe acceder directamente a clases del modelo/dominio '%s' desde la capa de exposición.\n" +
+            "Línea problemática: %s\n" +
+            "Solución: Utiliza DTOs y servicios para acceder a los datos del modelo.",
+            importedClass,
+            codeLine
+        );
     }
 
-    private void analyzeDirectReferences(SensorContext context, InputFile inputFile, String[] lines) {
+    private void analyzeDirectReferences(FileIssues issues, SourceFile file) {
+        JavaTokens tokens = file.tokens();
 
-        Pattern fieldPattern = Pattern.compile("(private|protected|public)?\\s*([\\w\\<\\>]+)\\s+(\\w+)\\s*;");
-        Pattern methodPattern = Pattern.compile("(private|protected|public)?\\s*([\\w\\<\\>]+)\\s+(\\w+)\\s*\\(");
-
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i];
-
-            // Buscar declaraciones de campos
-            Matcher fieldMatcher = fieldPattern.matcher(line);
-            if (fieldMatcher.find()) {
-                String type = fieldMatcher.group(2);
-                if (isDomainType(type)) {
-                    createIssue(context, inputFile, type, i + 1, line.trim());
+        // Declaraciones de campos "Tipo nombre;", de métodos "Tipo nombre(" y de parámetros
+        // "Tipo nombre," o "Tipo nombre)", sin mirar comentarios ni literales
+        for (int name = 1; name + 1 < tokens.size(); name++) {
+            if (tokens.kind(name) != JavaTokens.IDENTIFIER
+                || !(tokens.is(name + 1, ';') || tokens.is(name + 1, '(')
+                    || tokens.is(name + 1, ',') || tokens.is(name + 1, ')'))) {
+                continue;
+            }
+            int type = typeBefore(tokens, name - 1);
+            if (type >= 0) {
+                String domainType = domainType(file, tokens.text(type));
+                if (domainType != null) {
+                    createIssue(issues, file, domainType, tokens.start(type), tokens.end(type));
                 }
             }
+        }
+    }
 
-            // Buscar declaraciones de métodos
-            Matcher methodMatcher = methodPattern.matcher(line);
-            if (methodMatcher.find()) {
-                String returnType = methodMatcher.group(2);
-                if (isDomainType(returnType)) {
-                    createIssue(context, inputFile, returnType, i + 1, line.trim());
+    // Token con el nombre del tipo que termina en el token dado; en List<Usuario> es List
+    private int typeBefore(JavaTokens tokens, int token) {
+        if (tokens.kind(token) == JavaTokens.IDENTIFIER) {
+            return token;
+        }
+        if (!tokens.is(token, '>')) {
+            return -1;
+        }
+        int depth = 0;
+        for (int i = token; i > 0; i--) {
+            if (tokens.is(i, '>')) {
+                depth++;
+            } else if (tokens.is(i, '<')) {
+                depth--;
+                if (depth == 0) {
+                    return tokens.kind(i - 1) == JavaTokens.IDENTIFIER ? i - 1 : -1;
                 }
+            } else if (tokens.is(i, ';') || tokens.is(i, '{') || tokens.is(i, '}')) {
+                return -1;
             }
         }
+        return -1;
     }
 
-    private boolean isDomainType(String typeParam) {
-        // Eliminar genéricos si existen
-        final String type = typeParam.contains("<") 
-            ? typeParam.substring(0, typeParam.indexOf("<"))
-            : typeParam;
-        
-        // Comprobar si el tipo pertenece a un paquete de dominio
-        return DOMAIN_PATTERNS.stream()
-            .anyMatch(pattern -> type.toLowerCase().contains(pattern.replace("/", "").replace(".", "")));
+    // Nombre calificado del tipo si es del dominio, o null. El tipo se resuelve por los imports y
+    // el índice de tipos del proyecto, así que Usuario cuenta aunque su nombre no diga "model"
+    // y ModelAndView no cuenta aunque lo diga
+    private String domainType(SourceFile file, String typeName) {
+        LayerTable layers = file.layerTable();
+        String qualified = file.resolveType(typeName);
+        if (qualified != null) {
+            return layers.forbids(Layer.EXPOSITION, DOMAIN, qualified) ? qualified : null;
+        }
+        // Sin índice (una regla ejecutada fuera del sensor) queda el nombre: UsuarioModel, PedidoEntity
+        if (layers.types().isEmpty() && layers.model().mentionedIn(Layer.DOMAIN, typeName.toLowerCase(Locale.ROOT))) {
+            return typeName;
+        }
+        return null;
     }
 }
 
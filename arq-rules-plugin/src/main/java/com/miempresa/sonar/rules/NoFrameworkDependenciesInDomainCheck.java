@@ -0,0 +1,57 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.check.Rule;
+import org.sonar.plugins.java.api.tree.AnnotationTree;
+import org.sonar.plugins.java.api.tree.ImportTree;
+import org.sonar.plugins.java.api.tree.Tree;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Versión sobre el árbol de sonar-java de {@link NoFrameworkDependenciesInDomainRule}: cualquier
+ * import o anotación de los paquetes del framework, con las anotaciones resueltas a su nombre
+ * calificado.
+ */
+@Rule(key = "NoFrameworkDependenciesInDomain")
+public class NoFrameworkDependenciesInDomainCheck extends ArchitectureVisitor {
+
+    private static final List<String> FRAMEWORK_PACKAGES = Arrays.asList(
+        "org.springframework.", "javax.inject.", "jakarta.inject.",
+        "javax.persistence.", "jakarta.persistence.", "org.hibernate.");
+
+    private boolean annotationReported;
+    private boolean importReported;
+
+    public NoFrameworkDependenciesInDomainCheck() {
+    }
+
+    NoFrameworkDependenciesInDomainCheck(LayerTable layers) {
+        super(layers);
+    }
+
+    @Override
+    List<Tree.Kind> kinds() {
+        return Arrays.asList(Tree.Kind.IMPORT, Tree.Kind.ANNOTATION);
+    }
+
+    @Override
+    boolean appliesTo(FileLayer layer) {
+        annotationReported = false;
+        importReported = false;
+        return layer.in(Layer.DOMAIN);
+    }
+
+    // Como la regla original, un issue por anotaciones y otro por imports
+    @Override
+    void visit(Tree tree) {
+        if (tree.is(Tree.Kind.ANNOTATION)) {
+            if (!annotationReported && startsWithAny(annotationName((AnnotationTree) tree), FRAMEWORK_PACKAGES)) {
+                annotationReported = true;
+                reportIssue(tree, "El dominio/modelo no debe tener dependencias con Spring (@Component, @Service, @Repository). Debe ser completamente independiente del framework.");
+            }
+        } else if (!importReported && startsWithAny(name(((ImportTree) tree).qualifiedIdentifier()), FRAMEWORK_PACKAGES)) {
+            importReported = true;
+            reportIssue(tree, "El dominio/modelo no debe importar clases de Spring u otros frameworks. Debe ser completamente independiente del framework.");
+        }
+    }
+}
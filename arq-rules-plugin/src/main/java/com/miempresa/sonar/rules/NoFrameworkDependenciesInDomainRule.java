@@ -2,19 +2,9 @@ package com.miempresa.sonar.rules;
 
 import org.sonar.check.Rule;
 import org.sonar.check.Priority;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.sensor.Sensor;
-import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.batch.sensor.SensorDescriptor;
-import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.rule.RuleKey;
-import javax.annotation.Nonnull;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
 
 @Rule(
     key = "NoFrameworkDependenciesInDomain",
@@ -23,131 +13,96 @@ import java.util.regex.Pattern;
     priority = Priority.MAJOR,
     tags = {"arquitectura", "domain-driven-design", "independencia-framework"}
 )
-public class NoFrameworkDependenciesInDomainRule implements Sensor {
+public class NoFrameworkDependenciesInDomainRule implements ArchitectureCheck {
+
+    private static final RuleKey RULE_KEY = RuleKey.of("arq-rules-plugin", "NoFrameworkDependenciesInDomain");
     
-    private static final List<Pattern> FRAMEWORK_ANNOTATIONS = new ArrayList<>();
-    static {
+    private static final PatternSet FRAMEWORK_ANNOTATIONS = PatternSet.builder()
         // Anotaciones de Spring Framework
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Component\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Service\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Repository\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Controller\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@RestController\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Configuration\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Bean\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Autowired\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Inject\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Value\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Qualifier\\b"));
-        
+        .add("@Component\\b")
+        .add("@Service\\b")
+        .add("@Repository\\b")
+        .add("@Controller\\b")
+        .add("@RestController\\b")
+        .add("@Configuration\\b")
+        .add("@Bean\\b")
+        .add("@Autowired\\b")
+        .add("@Inject\\b")
+        .add("@Value\\b")
+        .add("@Qualifier\\b")
+
         // Anotaciones de persistencia/transacciones
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@Transactional\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@PersistenceContext\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@PersistenceUnit\\b"));
-        
-        // Anotaciones de validación que pueden indicar dependencia del framework
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@RequestMapping\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@GetMapping\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@PostMapping\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@PutMapping\\b"));
-        FRAMEWORK_ANNOTATIONS.add(Pattern.compile("@DeleteMapping\\b"));
-    }
+        .add("@Transactional\\b")
+        .add("@PersistenceContext\\b")
+        .add("@PersistenceUnit\\b")
 
-    private static final List<Pattern> FRAMEWORK_IMPORTS = new ArrayList<>();
-    static {
+        // Anotaciones de validación que pueden indicar dependencia del framework
+        .add("@RequestMapping\\b")
+        .add("@GetMapping\\b")
+        .add("@PostMapping\\b")
+        .add("@PutMapping\\b")
+        .add("@DeleteMapping\\b")
+        .build();
+
+    // Los mismos paquetes que FRAMEWORK_IMPORTS, para las referencias del bytecode
+    private static final List<String> FRAMEWORK_PACKAGES = Arrays.asList(
+        "org.springframework.", "javax.inject.", "jakarta.inject.",
+        "javax.persistence.", "jakarta.persistence.", "org.hibernate.");
+
+    private static final PatternSet FRAMEWORK_IMPORTS = PatternSet.builder()
         // Importaciones de Spring
-        FRAMEWORK_IMPORTS.add(Pattern.compile("import\\s+org\\.springframework\\."));
-        FRAMEWORK_IMPORTS.add(Pattern.compile("import\\s+javax\\.inject\\."));
-        FRAMEWORK_IMPORTS.add(Pattern.compile("import\\s+jakarta\\.inject\\."));
-        
+        .add("import\\s+org\\.springframework\\.")
+        .add("import\\s+javax\\.inject\\.")
+        .add("import\\s+jakarta\\.inject\\.")
+
         // Importaciones de persistencia
-        FRAMEWORK_IMPORTS.add(Pattern.compile("import\\s+javax\\.persistence\\."));
-        FRAMEWORK_IMPORTS.add(Pattern.compile("import\\s+jakarta\\.persistence\\."));
-        FRAMEWORK_IMPORTS.add(Pattern.compile("import\\s+org\\.hibernate\\."));
-        
+        .add("import\\s+javax\\.persistence\\.")
+        .add("import\\s+jakarta\\.persistence\\.")
+        .add("import\\s+org\\.hibernate\\.")
+
         // Importaciones de validación que pueden indicar dependencia del framework
-        FRAMEWORK_IMPORTS.add(Pattern.compile("import\\s+org\\.springframework\\.web\\."));
-    }
+        .add("import\\s+org\\.springframework\\.web\\.")
+        .build();
 
-    private static final Pattern DOMAIN_PACKAGE_PATTERN = Pattern.compile("package\\s+[\\w.]+\\.(modelo|model|domain|dominio|entity|entities|entidad|entidades)\\b", Pattern.CASE_INSENSITIVE);
 
+    // Paquete de dominio por package statement o por ruta
     @Override
-    public void describe(@Nonnull SensorDescriptor descriptor) {
-        descriptor
-            .name("No Framework Dependencies in Domain Check")
-            .onlyOnLanguage("java");
+    public boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.DOMAIN);
     }
 
     @Override
-    public void execute(@Nonnull SensorContext context) {
-        FileSystem fs = context.fileSystem();
-        
-        Iterable<InputFile> inputFiles = fs.inputFiles(fs.predicates().hasLanguage("java"));
-        
-        for (InputFile inputFile : inputFiles) {
-            analyzeFile(inputFile, context);
+    public void analyzeFile(SourceFile file, FileIssues issues) {
+        if (!appliesTo(file.layer())) {
+            return;
         }
-    }
 
-    private void analyzeFile(InputFile inputFile, SensorContext context) {
-        try {
-            String content = new String(inputFile.contents().getBytes(), StandardCharsets.UTF_8);
-            
-            // Verificar si está en paquete de dominio por package statement o por ruta
-            boolean isDomainPackage = DOMAIN_PACKAGE_PATTERN.matcher(content).find() || 
-                                    isDomainPath(inputFile.toString());
-            
-            if (!isDomainPackage) {
-                return;
-            }
-
-            // Buscar anotaciones prohibidas del framework
-            for (Pattern pattern : FRAMEWORK_ANNOTATIONS) {
-                if (pattern.matcher(content).find()) {
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoFrameworkDependenciesInDomain"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("El dominio/modelo no debe tener dependencias con Spring (@Component, @Service, @Repository). Debe ser completamente independiente del framework."))
-                        .save();
-                    return; // Solo reportar una vez por archivo
-                }
-            }
-
-            // Buscar importaciones prohibidas del framework
-            for (Pattern pattern : FRAMEWORK_IMPORTS) {
-                if (pattern.matcher(content).find()) {
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoFrameworkDependenciesInDomain"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("El dominio/modelo no debe importar clases de Spring u otros frameworks. Debe ser completamente independiente del framework."))
-                        .save();
-                    return; // Solo reportar una vez por archivo
-                }
-            }
-            
-        } catch (IOException e) {
-            // Manejar error de lectura de archivo
-            context.newAnalysisError()
-                .message("Error al analizar el archivo: " + e.getMessage())
-                .onFile(inputFile)
-                .save();
+        CharSequence content = file.content();
+        JavaTokens tokens = file.tokens();
+
+        // Buscar anotaciones prohibidas del framework
+        PatternSet.Match match = FRAMEWORK_ANNOTATIONS.find(content, tokens.ranges(JavaTokens.ANNOTATION));
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "El dominio/modelo no debe tener dependencias con Spring (@Component, @Service, @Repository). Debe ser completamente independiente del framework.");
+            return; // Solo reportar una vez por archivo
         }
-    }
 
-    private boolean isDomainPath(String filePath) {
-        String normalizedPath = filePath.replace("\\", "/").toLowerCase();
-        return normalizedPath.contains("/modelo/") || 
-               normalizedPath.contains("/model/") || 
-               normalizedPath.contains("/domain/") || 
-               normalizedPath.contains("/dominio/") || 
-               normalizedPath.contains("/entity/") || 
-               normalizedPath.contains("/entities/") || 
-               normalizedPath.contains("/entidad/") || 
-               normalizedPath.contains("/entidades/");
+        // Buscar importaciones prohibidas del framework
+        match = FRAMEWORK_IMPORTS.find(content, file.header().importRanges());
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "El dominio/modelo no debe importar clases de Spring u otros frameworks. Debe ser completamente independiente del framework.");
+            return; // Solo reportar una vez por archivo
+        }
+
+        // En modo bytecode, anotaciones y tipos del framework aunque se escriban con nombre calificado
+        ClassReferences bytecode = file.bytecode();
+        if (bytecode != null && bytecode.anyAnnotationFrom(FRAMEWORK_PACKAGES)) {
+            issues.addIssue(RULE_KEY, "El dominio/modelo no debe tener dependencias con Spring (@Component, @Service, @Repository). Debe ser completamente independiente del framework.");
+            return; // Solo reportar una vez por archivo
+        }
+        if (bytecode != null && bytecode.anyTypeFrom(FRAMEWORK_PACKAGES)) {
+            issues.addIssue(RULE_KEY, "El dominio/modelo no debe importar clases de Spring u otros frameworks. Debe ser completamente independiente del framework.");
+        }
     }
 }
 
@@ -0,0 +1,82 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.check.Rule;
+import org.sonar.check.Priority;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.rule.RuleKey;
+import java.util.List;
+
+@Rule(
+    key = "NoLayerDependencyCycles",
+    name = "Packages of different layers should not depend on each other in a cycle",
+    description = "Imports between packages of different layers should not form a cycle. A cycle between layers means that neither layer can be built, tested or replaced without the other.",
+    priority = Priority.CRITICAL,
+    tags = {"arquitectura", "capas", "dependencias-ciclicas"}
+)
+public class NoLayerDependencyCyclesRule {
+
+    static final RuleKey RULE_KEY = RuleKey.of("arq-rules-plugin", "NoLayerDependencyCycles");
+
+    // Paquetes que se listan en el mensaje; el resto se resume como "y N más"
+    private static final int MAX_PACKAGES_IN_MESSAGE = 5;
+
+    /**
+     * A diferencia de las demás reglas no analiza archivos sueltos: se ejecuta una vez al final
+     * del análisis sobre el grafo con los imports de todo el proyecto, de todos sus módulos
+     * (el sensor es un {@code ProjectSensor}). Reporta un issue por
+     * archivo, en el primer import que cruza de capa dentro del ciclo.
+     */
+    void report(DependencyGraph graph, SensorContext context) {
+        for (DependencyGraph.CycleImport cycleImport : graph.crossLayerCycles()) {
+            FileIssues issues = new FileIssues(cycleImport.inputFile());
+            issues.addIssue(RULE_KEY, cycleImport.line(), message(cycleImport));
+            issues.saveTo(context);
+        }
+    }
+
+    private static String message(DependencyGraph.CycleImport cycleImport) {
+        DependencyGraph.Cycle cycle = cycleImport.cycle();
+        // Las dependencias que solo aparecen en el bytecode no tienen línea de import
+        StringBuilder message = new StringBuilder(cycleImport.line() > 0 ? "El import de " : "El uso de ")
+            .append(cycleImport.imported())
+            .append(" forma un ciclo de dependencias entre las capas ");
+        List<Layer> layers = cycle.layers();
+        for (int i = 0; i < layers.size(); i++) {
+            if (i > 0) {
+                message.append(i == layers.size() - 1 ? " y " : ", ");
+            }
+            message.append(displayName(layers.get(i)));
+        }
+
+        List<String> packages = cycle.packages();
+        message.append(". Paquetes del ciclo: ");
+        int listed = Math.min(packages.size(), MAX_PACKAGES_IN_MESSAGE);
+        for (int i = 0; i < listed; i++) {
+            if (i > 0) {
+                message.append(", ");
+            }
+            message.append(packages.get(i));
+        }
+        if (packages.size() > listed) {
+            message.append(" y ").append(packages.size() - listed).append(" más");
+        }
+        message.append(" (").append(cycle.files()).append(" archivos). ")
+            .append("Las dependencias entre capas deben ir en un solo sentido.");
+        return message.toString();
+    }
+
+    private static String displayName(Layer layer) {
+        switch (layer) {
+            case EXPOSITION:
+                return "Exposición";
+            case SERVICE:
+                return "Servicios";
+            case DOMAIN:
+                return "Dominio";
+            case REPOSITORY:
+                return "Persistencia";
+            default:
+                return layer.name();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.check.Rule;
+import org.sonar.plugins.java.api.tree.AnnotationTree;
+import org.sonar.plugins.java.api.tree.Tree;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Versión sobre el árbol de sonar-java de {@link NoOtherLayerAnnotationsInControllerRule}: las
+ * anotaciones se comparan por su nombre calificado, así que una {@code @Service} propia del
+ * proyecto no se confunde con la de Spring.
+ */
+@Rule(key = "NoOtherLayerAnnotationsInController")
+public class NoOtherLayerAnnotationsInControllerCheck extends ArchitectureVisitor {
+
+    private static final List<String> FORBIDDEN_ANNOTATIONS = Arrays.asList(
+        // Capa de servicio
+        "org.springframework.stereotype.Service",
+        "org.springframework.stereotype.Component",
+        // Capa de persistencia
+        "org.springframework.stereotype.Repository",
+        "javax.persistence.Entity", "jakarta.persistence.Entity",
+        "javax.persistence.Table", "jakarta.persistence.Table",
+        "javax.persistence.Embeddable", "jakarta.persistence.Embeddable",
+        "javax.persistence.PersistenceContext", "jakarta.persistence.PersistenceContext",
+        "javax.persistence.PersistenceUnit", "jakarta.persistence.PersistenceUnit",
+        // Configuración
+        "org.springframework.context.annotation.Configuration",
+        "org.springframework.context.annotation.Bean",
+        // Transacciones (deberían estar en servicios)
+        "org.springframework.transaction.annotation.Transactional",
+        "javax.transaction.Transactional", "jakarta.transaction.Transactional");
+
+    public NoOtherLayerAnnotationsInControllerCheck() {
+    }
+
+    NoOtherLayerAnnotationsInControllerCheck(LayerTable layers) {
+        super(layers);
+    }
+
+    @Override
+    List<Tree.Kind> kinds() {
+        return Arrays.asList(Tree.Kind.ANNOTATION);
+    }
+
+    @Override
+    boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.EXPOSITION) && layer.declares(Layer.EXPOSITION);
+    }
+
+    @Override
+    void visit(Tree tree) {
+        if (isOneOf(annotationName((AnnotationTree) tree), FORBIDDEN_ANNOTATIONS)) {
+            reportOnce(tree, "Los Controllers no deben tener anotaciones de otras capas como @Service o @Repository. Su rol debe limitarse a manejar peticiones.");
+        }
+    }
+}
@@ -2,19 +2,7 @@ package com.miempresa.sonar.rules;
 
 import org.sonar.check.Rule;
 import org.sonar.check.Priority;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.sensor.Sensor;
-import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.batch.sensor.SensorDescriptor;
-import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.rule.RuleKey;
-import javax.annotation.Nonnull;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
 
 @Rule(
     key = "NoOtherLayerAnnotationsInController",
@@ -23,108 +11,50 @@ import java.util.regex.Pattern;
     priority = Priority.MAJOR,
     tags = {"arquitectura", "buenas-practicas", "separacion-capas"}
 )
-public class NoOtherLayerAnnotationsInControllerRule implements Sensor {
+public class NoOtherLayerAnnotationsInControllerRule implements ArchitectureCheck {
+
+    private static final RuleKey RULE_KEY = RuleKey.of("arq-rules-plugin", "NoOtherLayerAnnotationsInController");
     
-    private static final List<Pattern> FORBIDDEN_ANNOTATIONS = new ArrayList<>();
-    static {
+    private static final PatternSet FORBIDDEN_ANNOTATIONS = PatternSet.builder()
         // Anotaciones de capa de servicio
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@Service\\b"));
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@Component\\b"));
-        
+        .add("@Service\\b")
+        .add("@Component\\b")
+
         // Anotaciones de capa de persistencia
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@Repository\\b"));
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@Entity\\b"));
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@Table\\b"));
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@Embeddable\\b"));
-        
+        .add("@Repository\\b")
+        .add("@Entity\\b")
+        .add("@Table\\b")
+        .add("@Embeddable\\b")
+
         // Anotaciones de configuración
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@Configuration\\b"));
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@Bean\\b"));
-        
+        .add("@Configuration\\b")
+        .add("@Bean\\b")
+
         // Anotaciones de transacciones (debería estar en servicios)
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@Transactional\\b"));
-        
+        .add("@Transactional\\b")
+
         // Anotaciones de persistencia
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@PersistenceContext\\b"));
-        FORBIDDEN_ANNOTATIONS.add(Pattern.compile("@PersistenceUnit\\b"));
-    }
+        .add("@PersistenceContext\\b")
+        .add("@PersistenceUnit\\b")
+        .build();
 
-    private static final Pattern CONTROLLER_ANNOTATION_PATTERN = Pattern.compile("@(Rest)?Controller\\b");
-    private static final Pattern CONTROLLER_CLASS_PATTERN = Pattern.compile("class\\s+\\w*Controller\\w*\\s*\\{");
-    private static final Pattern PRESENTATION_PACKAGE_PATTERN = Pattern.compile("package\\s+[\\w.]+\\.(presentacion|presentation|exposicion|exposition|controller|controllers|rest|api|web)\\b", Pattern.CASE_INSENSITIVE);
 
+    // Controladores (por anotación o por nombre de clase) en el paquete de presentación
     @Override
-    public void describe(@Nonnull SensorDescriptor descriptor) {
-        descriptor
-            .name("No Other Layer Annotations in Controller Check")
-            .onlyOnLanguage("java");
+    public boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.EXPOSITION) && layer.declares(Layer.EXPOSITION);
     }
 
     @Override
-    public void execute(@Nonnull SensorContext context) {
-        FileSystem fs = context.fileSystem();
-        
-        Iterable<InputFile> inputFiles = fs.inputFiles(fs.predicates().hasLanguage("java"));
-        
-        for (InputFile inputFile : inputFiles) {
-            analyzeFile(inputFile, context);
+    public void analyzeFile(SourceFile file, FileIssues issues) {
+        if (!appliesTo(file.layer())) {
+            return;
         }
-    }
-
-    private void analyzeFile(InputFile inputFile, SensorContext context) {
-        try {
-            String content = new String(inputFile.contents().getBytes(), StandardCharsets.UTF_8);
-            
-            // Verificar si está en paquete de presentación por package statement o por ruta
-            boolean isPresentationPackage = PRESENTATION_PACKAGE_PATTERN.matcher(content).find() || 
-                                          isControllerPath(inputFile.toString());
-            
-            if (!isPresentationPackage) {
-                return;
-            }
-            
-            // Verificar si es un controlador (por anotación o por nombre de clase)
-            boolean isController = CONTROLLER_ANNOTATION_PATTERN.matcher(content).find() ||
-                                 CONTROLLER_CLASS_PATTERN.matcher(content).find();
-            
-            if (!isController) {
-                return;
-            }
 
-            // Buscar anotaciones prohibidas
-            for (Pattern pattern : FORBIDDEN_ANNOTATIONS) {
-                if (pattern.matcher(content).find()) {
-                    // Crear un problema
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoOtherLayerAnnotationsInController"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("Los Controllers no deben tener anotaciones de otras capas como @Service o @Repository. Su rol debe limitarse a manejar peticiones."))
-                        .save();
-                    break;
-                }
-            }
-            
-        } catch (IOException e) {
-            // Manejar error de lectura de archivo
-            context.newAnalysisError()
-                .message("Error al analizar el archivo: " + e.getMessage())
-                .onFile(inputFile)
-                .save();
+        // Buscar anotaciones prohibidas
+        PatternSet.Match match = FORBIDDEN_ANNOTATIONS.find(file.content(), file.tokens().ranges(JavaTokens.ANNOTATION));
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "Los Controllers no deben tener anotaciones de otras capas como @Service o @Repository. Su rol debe limitarse a manejar peticiones.");
         }
     }
-
-    private boolean isControllerPath(String filePath) {
-        String normalizedPath = filePath.replace("\\", "/").toLowerCase();
-        return normalizedPath.contains("/presentacion/") || 
-               normalizedPath.contains("/presentation/") || 
-               normalizedPath.contains("/exposicion/") || 
-               normalizedPath.contains("/exposition/") || 
-               normalizedPath.contains("/controller/") || 
-               normalizedPath.contains("/controllers/") || 
-               normalizedPath.contains("/rest/") || 
-               normalizedPath.contains("/api/") || 
-               normalizedPath.contains("/web/");
-    }
 }
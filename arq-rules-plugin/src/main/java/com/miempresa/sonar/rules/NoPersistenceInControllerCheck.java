@@ -0,0 +1,69 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.check.Rule;
+import org.sonar.plugins.java.api.semantic.Symbol;
+import org.sonar.plugins.java.api.tree.AnnotationTree;
+import org.sonar.plugins.java.api.tree.ImportTree;
+import org.sonar.plugins.java.api.tree.MethodInvocationTree;
+import org.sonar.plugins.java.api.tree.Tree;
+import org.sonar.plugins.java.api.tree.VariableTree;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Versión sobre el árbol de sonar-java de {@link NoPersistenceInControllerRule}. En lugar de
+ * buscar {@code .persist(} o {@code .find(} en el texto, mira la clase que declara el método
+ * invocado, así que {@code lista.remove(x)} ya no se confunde con {@code em.remove(x)}.
+ */
+@Rule(key = "NoPersistenceInController")
+public class NoPersistenceInControllerCheck extends ArchitectureVisitor {
+
+    private static final String MESSAGE = "Los Controllers no deben realizar operaciones de persistencia directamente. Use un Repository para esto.";
+
+    static final List<String> PERSISTENCE_PACKAGES = Arrays.asList(
+        "javax.persistence.", "jakarta.persistence.", "java.sql.", "org.hibernate.",
+        "org.springframework.data.jpa.", "org.springframework.jdbc.");
+
+    public NoPersistenceInControllerCheck() {
+    }
+
+    NoPersistenceInControllerCheck(LayerTable layers) {
+        super(layers);
+    }
+
+    @Override
+    List<Tree.Kind> kinds() {
+        return Arrays.asList(Tree.Kind.IMPORT, Tree.Kind.ANNOTATION, Tree.Kind.VARIABLE, Tree.Kind.METHOD_INVOCATION);
+    }
+
+    @Override
+    boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.EXPOSITION) && layer.declares(Layer.EXPOSITION);
+    }
+
+    @Override
+    void visit(Tree tree) {
+        String typeName;
+        if (tree.is(Tree.Kind.IMPORT)) {
+            typeName = name(((ImportTree) tree).qualifiedIdentifier());
+            // Paquetes de la estructura institucional (…persistencia.UsuarioDao)
+            if (typeName.contains(".persistencia.")) {
+                reportOnce(tree, MESSAGE);
+                return;
+            }
+        } else if (tree.is(Tree.Kind.ANNOTATION)) {
+            typeName = annotationName((AnnotationTree) tree);
+        } else if (tree.is(Tree.Kind.VARIABLE)) {
+            typeName = typeName(((VariableTree) tree).type());
+        } else {
+            Symbol method = ((MethodInvocationTree) tree).methodSymbol();
+            if (method.isUnknown()) {
+                return;
+            }
+            typeName = method.owner().type().fullyQualifiedName();
+        }
+        if (startsWithAny(typeName, PERSISTENCE_PACKAGES)) {
+            reportOnce(tree, MESSAGE);
+        }
+    }
+}
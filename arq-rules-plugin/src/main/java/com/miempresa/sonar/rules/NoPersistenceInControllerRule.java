@@ -2,19 +2,7 @@ package com.miempresa.sonar.rules;
 
 import org.sonar.check.Rule;
 import org.sonar.check.Priority;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.sensor.Sensor;
-import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.batch.sensor.SensorDescriptor;
-import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.rule.RuleKey;
-import javax.annotation.Nonnull;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
 
 @Rule(
     key = "NoPersistenceInController",
@@ -23,100 +11,64 @@ import java.util.regex.Pattern;
     priority = Priority.MAJOR,
     tags = {"arquitectura", "buenas-practicas"}
 )
-public class NoPersistenceInControllerRule implements Sensor {
+public class NoPersistenceInControllerRule implements ArchitectureCheck {
+
+    private static final RuleKey RULE_KEY = RuleKey.of("arq-rules-plugin", "NoPersistenceInController");
     
-    private static final List<Pattern> PERSISTENCE_PATTERNS = new ArrayList<>();
-    static {
+    private static final PatternSet PERSISTENCE_IMPORTS = PatternSet.builder()
         // Patrones de importación
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+javax\\.persistence\\.EntityManager"));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+jakarta\\.persistence\\.EntityManager"));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+java\\.sql\\.Connection"));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+org\\.hibernate\\.Session"));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+javax\\.persistence\\.Query"));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+jakarta\\.persistence\\.Query"));
-        
-        // Patrones de uso
-        PERSISTENCE_PATTERNS.add(Pattern.compile("@PersistenceContext"));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("EntityManager\\s+\\w+"));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("\\.createQuery\\("));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("\\.createNativeQuery\\("));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("\\.persist\\("));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("\\.merge\\("));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("\\.remove\\("));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("\\.find\\("));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("PreparedStatement"));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("Connection\\s+\\w+"));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("\\.getResultList\\("));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("\\.getSingleResult\\("));
-        
+        .add("import\\s+javax\\.persistence\\.EntityManager")
+        .add("import\\s+jakarta\\.persistence\\.EntityManager")
+        .add("import\\s+java\\.sql\\.Connection")
+        .add("import\\s+org\\.hibernate\\.Session")
+        .add("import\\s+javax\\.persistence\\.Query")
+        .add("import\\s+jakarta\\.persistence\\.Query")
+
         // Patrones específicos para la estructura de paquetes institucional
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+[\\w.]+\\.persistencia\\."));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+javax\\.persistence\\."));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+jakarta\\.persistence\\."));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+org\\.springframework\\.data\\.jpa\\."));
-        PERSISTENCE_PATTERNS.add(Pattern.compile("import\\s+org\\.hibernate\\."));
-    }
+        .add("import\\s+[\\w.]+\\.persistencia\\.")
+        .add("import\\s+javax\\.persistence\\.")
+        .add("import\\s+jakarta\\.persistence\\.")
+        .add("import\\s+org\\.springframework\\.data\\.jpa\\.")
+        .add("import\\s+org\\.hibernate\\.")
+        .build();
 
-    private static final Pattern CONTROLLER_ANNOTATION_PATTERN = Pattern.compile("@(Rest)?Controller\\s+");
-    private static final Pattern CONTROLLER_CLASS_PATTERN = Pattern.compile("class\\s+(\\w*Controller\\w*)\\s*\\{");
-    private static final Pattern PRESENTATION_PACKAGE_PATTERN = Pattern.compile("package\\s+[\\w.]+\\.(presentacion|exposicion|exposition|controller|rest)\\b", Pattern.CASE_INSENSITIVE);
+    private static final PatternSet PERSISTENCE_USAGE_PATTERNS = PatternSet.builder()
+        // Patrones de uso
+        .add("@PersistenceContext")
+        .add("EntityManager\\s+\\w+")
+        .add("\\.createQuery\\(")
+        .add("\\.createNativeQuery\\(")
+        .add("\\.persist\\(")
+        .add("\\.merge\\(")
+        .add("\\.remove\\(")
+        .add("\\.find\\(")
+        .add("PreparedStatement")
+        .add("Connection\\s+\\w+")
+        .add("\\.getResultList\\(")
+        .add("\\.getSingleResult\\(")
+        .build();
 
+
+    // Controladores (por anotación o por nombre de clase) en los paquetes de presentación o exposición
     @Override
-    public void describe(@Nonnull SensorDescriptor descriptor) {
-        descriptor
-            .name("No Persistence in Controller Check")
-            .onlyOnLanguage("java");
+    public boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.EXPOSITION) && layer.declares(Layer.EXPOSITION);
     }
 
     @Override
-    public void execute(@Nonnull SensorContext context) {
-        FileSystem fs = context.fileSystem();
-        
-        Iterable<InputFile> inputFiles = fs.inputFiles(fs.predicates().hasLanguage("java"));
-        
-        for (InputFile inputFile : inputFiles) {
-            analyzeFile(inputFile, context);
+    public void analyzeFile(SourceFile file, FileIssues issues) {
+        CharSequence content = file.content();
+        if (!appliesTo(file.layer())) {
+            return;
         }
-    }
 
-    private void analyzeFile(InputFile inputFile, SensorContext context) {
-        try {
-            String content = new String(inputFile.contents().getBytes(), StandardCharsets.UTF_8);
-            
-            // Solo analizar archivos que están en los paquetes de presentación o exposición
-            if (!PRESENTATION_PACKAGE_PATTERN.matcher(content).find()) {
-                return;
-            }
-            
-            // Verificar si es un controlador (por anotación o por nombre de clase)
-            boolean isController = CONTROLLER_ANNOTATION_PATTERN.matcher(content).find() ||
-                                 CONTROLLER_CLASS_PATTERN.matcher(content).find();
-            
-            if (!isController) {
-                return;
-            }
-
-            // Buscar violaciones de persistencia
-            for (Pattern pattern : PERSISTENCE_PATTERNS) {
-                if (pattern.matcher(content).find()) {
-                    // Crear un problema
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoPersistenceInController"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("Los Controllers no deben realizar operaciones de persistencia directamente. Use un Repository para esto."))
-                        .save();
-                    break;
-                }
-            }
-            
-        } catch (IOException e) {
-            // Manejar error de lectura de archivo
-            context.newAnalysisError()
-                .message("Error al analizar el archivo: " + e.getMessage())
-                .onFile(inputFile)
-                .save();
+        // Buscar violaciones de persistencia: imports y código, nunca comentarios ni literales
+        PatternSet.Match match = PERSISTENCE_IMPORTS.find(content, file.header().importRanges());
+        if (match == null) {
+            match = PERSISTENCE_USAGE_PATTERNS.find(file.masked());
+        }
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "Los Controllers no deben realizar operaciones de persistencia directamente. Use un Repository para esto.");
         }
     }
 }
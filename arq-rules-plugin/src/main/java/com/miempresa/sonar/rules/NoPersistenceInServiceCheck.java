@@ -0,0 +1,82 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.check.Rule;
+import org.sonar.plugins.java.api.semantic.Symbol;
+import org.sonar.plugins.java.api.tree.AnnotationTree;
+import org.sonar.plugins.java.api.tree.ImportTree;
+import org.sonar.plugins.java.api.tree.LiteralTree;
+import org.sonar.plugins.java.api.tree.MethodInvocationTree;
+import org.sonar.plugins.java.api.tree.Tree;
+import org.sonar.plugins.java.api.tree.VariableTree;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Versión sobre el árbol de sonar-java de {@link NoPersistenceInServiceRule}. Las operaciones
+ * ({@code persist}, {@code query}, {@code executeUpdate}…) se reconocen por la clase que declara
+ * el método invocado, y el SQL solo se busca en los literales de texto.
+ */
+@Rule(key = "NoPersistenceInService")
+public class NoPersistenceInServiceCheck extends ArchitectureVisitor {
+
+    // Tipos de acceso a datos de bajo nivel: EntityManager, Session, JDBC y JdbcTemplate
+    private static final List<String> PERSISTENCE_TYPES = Arrays.asList(
+        "javax.persistence.EntityManager", "jakarta.persistence.EntityManager",
+        "javax.persistence.Query", "jakarta.persistence.Query",
+        "javax.persistence.TypedQuery", "jakarta.persistence.TypedQuery",
+        "org.hibernate.Session", "org.hibernate.Query",
+        "java.sql.Connection", "java.sql.PreparedStatement", "java.sql.Statement", "java.sql.ResultSet",
+        "org.springframework.jdbc.core.JdbcTemplate",
+        "org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate");
+
+    private static final List<String> PERSISTENCE_ANNOTATION_PACKAGES = Arrays.asList(
+        "javax.persistence.", "jakarta.persistence.");
+
+    // Misma forma acotada que en NoPersistenceInServiceRule
+    private static final Pattern SQL = Pattern.compile("(?is)\\b(SELECT|INSERT|UPDATE|DELETE)\\s.{0,1000}?\\bFROM\\b");
+
+    public NoPersistenceInServiceCheck() {
+    }
+
+    NoPersistenceInServiceCheck(LayerTable layers) {
+        super(layers);
+    }
+
+    @Override
+    List<Tree.Kind> kinds() {
+        return Arrays.asList(Tree.Kind.IMPORT, Tree.Kind.ANNOTATION, Tree.Kind.VARIABLE,
+            Tree.Kind.METHOD_INVOCATION, Tree.Kind.STRING_LITERAL, Tree.Kind.TEXT_BLOCK);
+    }
+
+    @Override
+    boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.SERVICE) || layer.declares(Layer.SERVICE);
+    }
+
+    @Override
+    void visit(Tree tree) {
+        if (tree.is(Tree.Kind.IMPORT)) {
+            if (isOneOf(name(((ImportTree) tree).qualifiedIdentifier()), PERSISTENCE_TYPES)) {
+                reportOnce(tree, "Los Services no deben contener SQL, EntityManager, ni lógica de acceso a datos directa. La lógica de persistencia pertenece a los Repositories.");
+            }
+        } else if (tree.is(Tree.Kind.ANNOTATION)) {
+            String annotation = annotationName((AnnotationTree) tree);
+            if (startsWithAny(annotation, PERSISTENCE_ANNOTATION_PACKAGES)
+                && !annotation.endsWith(".Transactional")) {
+                reportOnce(tree, "Los Services no deben usar anotaciones de persistencia. La lógica de persistencia pertenece a los Repositories.");
+            }
+        } else if (tree.is(Tree.Kind.VARIABLE)) {
+            if (isOneOf(typeName(((VariableTree) tree).type()), PERSISTENCE_TYPES)) {
+                reportOnce(tree, "Los Services no deben contener SQL, EntityManager, ni lógica de acceso a datos directa. La lógica de persistencia pertenece a los Repositories.");
+            }
+        } else if (tree.is(Tree.Kind.METHOD_INVOCATION)) {
+            Symbol method = ((MethodInvocationTree) tree).methodSymbol();
+            if (!method.isUnknown() && isOneOf(method.owner().type().fullyQualifiedName(), PERSISTENCE_TYPES)) {
+                reportOnce(tree, "Los Services no deben realizar operaciones de persistencia directamente. Use métodos del Repository en su lugar.");
+            }
+        } else if (SQL.matcher(((LiteralTree) tree).value()).find()) {
+            reportOnce(tree, "Los Services no deben contener SQL, EntityManager, ni lógica de acceso a datos directa. La lógica de persistencia pertenece a los Repositories.");
+        }
+    }
+}
@@ -2,19 +2,7 @@ package com.miempresa.sonar.rules;
 
 import org.sonar.check.Rule;
 import org.sonar.check.Priority;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.sensor.Sensor;
-import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.batch.sensor.SensorDescriptor;
-import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.rule.RuleKey;
-import javax.annotation.Nonnull;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
 
 @Rule(
     key = "NoPersistenceInService",
@@ -23,167 +11,120 @@ import java.util.regex.Pattern;
     priority = Priority.MAJOR,
     tags = {"arquitectura", "separacion-responsabilidades", "persistencia"}
 )
-public class NoPersistenceInServiceRule implements Sensor {
+public class NoPersistenceInServiceRule implements ArchitectureCheck {
+
+    private static final RuleKey RULE_KEY = RuleKey.of("arq-rules-plugin", "NoPersistenceInService");
     
-    private static final List<Pattern> PERSISTENCE_IMPORTS = new ArrayList<>();
-    static {
+    private static final PatternSet PERSISTENCE_IMPORTS = PatternSet.builder()
         // Importaciones de persistencia JPA/Hibernate
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+javax\\.persistence\\.EntityManager"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+jakarta\\.persistence\\.EntityManager"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+javax\\.persistence\\.Query"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+jakarta\\.persistence\\.Query"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+javax\\.persistence\\.TypedQuery"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+jakarta\\.persistence\\.TypedQuery"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+org\\.hibernate\\.Session"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+org\\.hibernate\\.Query"));
-        
+        .add("import\\s+javax\\.persistence\\.EntityManager")
+        .add("import\\s+jakarta\\.persistence\\.EntityManager")
+        .add("import\\s+javax\\.persistence\\.Query")
+        .add("import\\s+jakarta\\.persistence\\.Query")
+        .add("import\\s+javax\\.persistence\\.TypedQuery")
+        .add("import\\s+jakarta\\.persistence\\.TypedQuery")
+        .add("import\\s+org\\.hibernate\\.Session")
+        .add("import\\s+org\\.hibernate\\.Query")
+
         // Importaciones JDBC
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+java\\.sql\\.Connection"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+java\\.sql\\.PreparedStatement"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+java\\.sql\\.Statement"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+java\\.sql\\.ResultSet"));
-        
+        .add("import\\s+java\\.sql\\.Connection")
+        .add("import\\s+java\\.sql\\.PreparedStatement")
+        .add("import\\s+java\\.sql\\.Statement")
+        .add("import\\s+java\\.sql\\.ResultSet")
+
         // Importaciones de Spring Data específicas de bajo nivel
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+org\\.springframework\\.jdbc\\.core\\.JdbcTemplate"));
-        PERSISTENCE_IMPORTS.add(Pattern.compile("import\\s+org\\.springframework\\.jdbc\\.core\\.namedparam\\.NamedParameterJdbcTemplate"));
-    }
+        .add("import\\s+org\\.springframework\\.jdbc\\.core\\.JdbcTemplate")
+        .add("import\\s+org\\.springframework\\.jdbc\\.core\\.namedparam\\.NamedParameterJdbcTemplate")
+        .build();
 
-    private static final List<Pattern> PERSISTENCE_ANNOTATIONS = new ArrayList<>();
-    static {
+    private static final PatternSet PERSISTENCE_ANNOTATIONS = PatternSet.builder()
         // Anotaciones de persistencia que no deberían estar en servicios
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@PersistenceContext\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@PersistenceUnit\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@Entity\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@Table\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@Column\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@Id\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@GeneratedValue\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@JoinColumn\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@OneToMany\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@ManyToOne\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@OneToOne\\b"));
-        PERSISTENCE_ANNOTATIONS.add(Pattern.compile("@ManyToMany\\b"));
-    }
-
-    private static final List<Pattern> PERSISTENCE_USAGE_PATTERNS = new ArrayList<>();
-    static {
+        .add("@PersistenceContext\\b")
+        .add("@PersistenceUnit\\b")
+        .add("@Entity\\b")
+        .add("@Table\\b")
+        .add("@Column\\b")
+        .add("@Id\\b")
+        .add("@GeneratedValue\\b")
+        .add("@JoinColumn\\b")
+        .add("@OneToMany\\b")
+        .add("@ManyToOne\\b")
+        .add("@OneToOne\\b")
+        .add("@ManyToMany\\b")
+        .build();
+
+    private static final PatternSet PERSISTENCE_USAGE_PATTERNS = PatternSet.builder()
         // Patrones de uso directo de persistencia
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("EntityManager\\s+\\w+"));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.createQuery\\("));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.createNativeQuery\\("));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.persist\\("));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.merge\\("));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.remove\\("));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.find\\("));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.flush\\("));
-        
-        // Patrones SQL
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("(?i)\\b(SELECT|INSERT|UPDATE|DELETE)\\s+.*\\bFROM\\b"));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("PreparedStatement\\s+\\w+"));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("Connection\\s+\\w+"));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.executeQuery\\("));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.executeUpdate\\("));
-        
-        // Patrones de JdbcTemplate
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("JdbcTemplate\\s+\\w+"));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.query\\("));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.update\\("));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.queryForObject\\("));
-        PERSISTENCE_USAGE_PATTERNS.add(Pattern.compile("\\.queryForList\\("));
-    }
-
-    private static final Pattern SERVICE_PACKAGE_PATTERN = Pattern.compile("package\\s+[\\w.]+\\.(servicios|services|service|aplicacion|application)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern SERVICE_CLASS_PATTERN = Pattern.compile("@Service\\b|class\\s+\\w*Service\\w*\\s*\\{", Pattern.CASE_INSENSITIVE);
+        .add("EntityManager\\s+\\w+")
+        .add("\\.createQuery\\(")
+        .add("\\.createNativeQuery\\(")
+        .add("\\.persist\\(")
+        .add("\\.merge\\(")
+        .add("\\.remove\\(")
+        .add("\\.find\\(")
+        .add("\\.flush\\(")
+
+        // Patrones JDBC
+        .add("PreparedStatement\\s+\\w+")
+        .add("Connection\\s+\\w+")
+        .add("\\.executeQuery\\(")
+        .add("\\.executeUpdate\\(")
 
+        // Patrones de JdbcTemplate
+        .add("JdbcTemplate\\s+\\w+")
+        .add("\\.query\\(")
+        .add("\\.update\\(")
+        .add("\\.queryForObject\\(")
+        .add("\\.queryForList\\(")
+        .build();
+
+    private static final PatternSet SQL_PATTERNS = PatternSet.builder()
+        // Patrones SQL, solo dentro de literales de texto (un text block puede ocupar varias
+        // líneas, por eso el punto también cubre saltos de línea). La distancia hasta FROM está
+        // acotada: un literal enorme con muchos SELECT y sin FROM no se recorre una vez por SELECT
+        .add("(?is)\\b(SELECT|INSERT|UPDATE|DELETE)\\s.{0,1000}?\\bFROM\\b")
+        .build();
+
+
+    // Paquete de servicios por package statement, por ruta o por la clase
     @Override
-    public void describe(@Nonnull SensorDescriptor descriptor) {
-        descriptor
-            .name("No Persistence Logic in Service Check")
-            .onlyOnLanguage("java");
+    public boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.SERVICE) || layer.declares(Layer.SERVICE);
     }
 
     @Override
-    public void execute(@Nonnull SensorContext context) {
-        FileSystem fs = context.fileSystem();
-        
-        Iterable<InputFile> inputFiles = fs.inputFiles(fs.predicates().hasLanguage("java"));
-        
-        for (InputFile inputFile : inputFiles) {
-            analyzeFile(inputFile, context);
+    public void analyzeFile(SourceFile file, FileIssues issues) {
+        CharSequence content = file.content();
+        if (!appliesTo(file.layer())) {
+            return;
         }
-    }
 
-    private void analyzeFile(InputFile inputFile, SensorContext context) {
-        try {
-            String content = new String(inputFile.contents().getBytes(), StandardCharsets.UTF_8);
-            
-            // Verificar si está en paquete de servicios por package statement o por ruta
-            boolean isServicePackage = SERVICE_PACKAGE_PATTERN.matcher(content).find() || 
-                                     SERVICE_CLASS_PATTERN.matcher(content).find() ||
-                                     isServicePath(inputFile.toString());
-            
-            if (!isServicePackage) {
-                return;
-            }
-
-            // Buscar importaciones de persistencia
-            for (Pattern pattern : PERSISTENCE_IMPORTS) {
-                if (pattern.matcher(content).find()) {
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoPersistenceInService"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("Los Services no deben contener SQL, EntityManager, ni lógica de acceso a datos directa. La lógica de persistencia pertenece a los Repositories."))
-                        .save();
-                    return; // Solo reportar una vez por archivo
-                }
-            }
-
-            // Buscar anotaciones de persistencia
-            for (Pattern pattern : PERSISTENCE_ANNOTATIONS) {
-                if (pattern.matcher(content).find()) {
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoPersistenceInService"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("Los Services no deben usar anotaciones de persistencia. La lógica de persistencia pertenece a los Repositories."))
-                        .save();
-                    return; // Solo reportar una vez por archivo
-                }
-            }
-
-            // Buscar patrones de uso de persistencia
-            for (Pattern pattern : PERSISTENCE_USAGE_PATTERNS) {
-                if (pattern.matcher(content).find()) {
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoPersistenceInService"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("Los Services no deben realizar operaciones de persistencia directamente. Use métodos del Repository en su lugar."))
-                        .save();
-                    return; // Solo reportar una vez por archivo
-                }
-            }
-            
-        } catch (IOException e) {
-            // Manejar error de lectura de archivo
-            context.newAnalysisError()
-                .message("Error al analizar el archivo: " + e.getMessage())
-                .onFile(inputFile)
-                .save();
+        JavaTokens tokens = file.tokens();
+
+        // Buscar importaciones de persistencia
+        PatternSet.Match match = PERSISTENCE_IMPORTS.find(content, file.header().importRanges());
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "Los Services no deben contener SQL, EntityManager, ni lógica de acceso a datos directa. La lógica de persistencia pertenece a los Repositories.");
+            return; // Solo reportar una vez por archivo
+        }
+
+        // Buscar anotaciones de persistencia
+        match = PERSISTENCE_ANNOTATIONS.find(content, tokens.ranges(JavaTokens.ANNOTATION));
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "Los Services no deben usar anotaciones de persistencia. La lógica de persistencia pertenece a los Repositories.");
+            return; // Solo reportar una vez por archivo
         }
-    }
 
-    private boolean isServicePath(String filePath) {
-        String normalizedPath = filePath.replace("\\", "/").toLowerCase();
-        return normalizedPath.contains("/servicios/") || 
-               normalizedPath.contains("/services/") || 
-               normalizedPath.contains("/service/") || 
-               normalizedPath.contains("/aplicacion/") || 
-               normalizedPath.contains("/application/");
+        // Buscar patrones de uso de persistencia en el código; el SQL, en el contenido original de
+        // los literales
+        match = PERSISTENCE_USAGE_PATTERNS.find(file.masked());
+        if (match == null) {
+            match = SQL_PATTERNS.find(content, tokens.stringRanges());
+        }
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "Los Services no deben realizar operaciones de persistencia directamente. Use métodos del Repository en su lugar.");
+            return; // Solo reportar una vez por archivo
+        }
     }
 }
 
@@ -0,0 +1,72 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.check.Rule;
+import org.sonar.plugins.java.api.tree.ImportTree;
+import org.sonar.plugins.java.api.tree.MethodTree;
+import org.sonar.plugins.java.api.tree.NewClassTree;
+import org.sonar.plugins.java.api.tree.Tree;
+import org.sonar.plugins.java.api.tree.TypeTree;
+import org.sonar.plugins.java.api.tree.VariableTree;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Versión sobre el árbol de sonar-java de {@link NoRepositoryAccessFromExpositionRule}: imports,
+ * campos, parámetros, variables, retornos e instanciaciones de tipos del repositorio, resueltos
+ * con la semántica.
+ */
+@Rule(key = "NoRepositoryAccessFromExpositionRule")
+public class NoRepositoryAccessFromExpositionCheck extends ArchitectureVisitor {
+
+    public NoRepositoryAccessFromExpositionCheck() {
+    }
+
+    NoRepositoryAccessFromExpositionCheck(LayerTable layers) {
+        super(layers);
+    }
+
+    @Override
+    List<Tree.Kind> kinds() {
+        return Arrays.asList(Tree.Kind.IMPORT, Tree.Kind.VARIABLE, Tree.Kind.METHOD, Tree.Kind.NEW_CLASS);
+    }
+
+    @Override
+    boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.EXPOSITION);
+    }
+
+    @Override
+    void visit(Tree tree) {
+        if (tree.is(Tree.Kind.IMPORT)) {
+            String imported = name(((ImportTree) tree).qualifiedIdentifier());
+            if (layers().forbids(Layer.EXPOSITION, Layer.REPOSITORY.bit(), imported)) {
+                reportIssue(tree, String.format(
+                    "No debes importar clases del repositorio ('%s') directamente en la capa de exposición. " +
+                    "Solución: Utiliza servicios para acceder a los datos. Los controladores solo deben comunicarse con servicios.",
+                    imported));
+            }
+        } else if (tree.is(Tree.Kind.VARIABLE)) {
+            check(((VariableTree) tree).type(),
+                "No debes declarar variables de tipo repositorio ('%s') en la capa de exposición. " +
+                "Solución: Inyecta servicios en lugar de repositorios. Los controladores deben depender de servicios.");
+        } else if (tree.is(Tree.Kind.METHOD)) {
+            check(((MethodTree) tree).returnType(),
+                "El método no debe retornar tipos del repositorio ('%s') en la capa de exposición. " +
+                "Solución: Retorna DTOs o tipos de dominio a través de servicios.");
+        } else {
+            check(((NewClassTree) tree).identifier(),
+                "No debes crear instancias del repositorio ('%s') en la capa de exposición. " +
+                "Solución: Utiliza servicios para acceder a los datos.");
+        }
+    }
+
+    private void check(TypeTree type, String message) {
+        if (type == null) {
+            return;
+        }
+        String typeName = typeName(type);
+        if (layers().forbids(Layer.EXPOSITION, Layer.REPOSITORY.bit(), typeName)) {
+            reportIssue(type, String.format(message, typeName));
+        }
+    }
+}
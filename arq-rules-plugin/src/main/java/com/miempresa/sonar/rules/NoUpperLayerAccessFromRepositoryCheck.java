@@ -0,0 +1,62 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.check.Rule;
+import org.sonar.plugins.java.api.tree.AnnotationTree;
+import org.sonar.plugins.java.api.tree.ImportTree;
+import org.sonar.plugins.java.api.tree.NewClassTree;
+import org.sonar.plugins.java.api.tree.Tree;
+import org.sonar.plugins.java.api.tree.VariableTree;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Versión sobre el árbol de sonar-java de {@link NoUpperLayerAccessFromRepositoryRule}: tipos de
+ * las capas de servicios y exposición resueltos por su paquete, y anotaciones de Spring de esas
+ * capas por su nombre calificado.
+ */
+@Rule(key = "NoUpperLayerAccessFromRepository")
+public class NoUpperLayerAccessFromRepositoryCheck extends ArchitectureVisitor {
+
+    private static final List<String> UPPER_LAYER_ANNOTATIONS = Arrays.asList(
+        "org.springframework.stereotype.Service", "org.springframework.stereotype.Controller",
+        "org.springframework.web.bind.annotation.");
+
+    public NoUpperLayerAccessFromRepositoryCheck() {
+    }
+
+    NoUpperLayerAccessFromRepositoryCheck(LayerTable layers) {
+        super(layers);
+    }
+
+    @Override
+    List<Tree.Kind> kinds() {
+        return Arrays.asList(Tree.Kind.IMPORT, Tree.Kind.VARIABLE, Tree.Kind.NEW_CLASS, Tree.Kind.ANNOTATION);
+    }
+
+    @Override
+    boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.REPOSITORY) || layer.declares(Layer.REPOSITORY);
+    }
+
+    @Override
+    void visit(Tree tree) {
+        if (tree.is(Tree.Kind.ANNOTATION)) {
+            if (startsWithAny(annotationName((AnnotationTree) tree), UPPER_LAYER_ANNOTATIONS)) {
+                reportOnce(tree, "Los Repositories no deben usar clases o anotaciones de capas superiores (servicios/presentación). Esto rompe la arquitectura en capas.");
+            }
+            return;
+        }
+        String typeName;
+        if (tree.is(Tree.Kind.IMPORT)) {
+            typeName = name(((ImportTree) tree).qualifiedIdentifier());
+        } else if (tree.is(Tree.Kind.VARIABLE)) {
+            typeName = typeName(((VariableTree) tree).type());
+        } else {
+            typeName = typeName(((NewClassTree) tree).identifier());
+        }
+        if (layers().forbids(Layer.REPOSITORY, Layer.SERVICE.bit() | Layer.EXPOSITION.bit(), typeName)
+            || startsWithAny(typeName, UPPER_LAYER_ANNOTATIONS)) {
+            reportOnce(tree, "Los Repositories no deben llamar directamente a clases de la capa de servicios o presentación. Esto rompe la arquitectura en capas y genera ciclos de dependencias.");
+        }
+    }
+}
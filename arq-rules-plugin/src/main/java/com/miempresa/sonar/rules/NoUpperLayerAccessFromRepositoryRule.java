@@ -2,19 +2,7 @@ package com.miempresa.sonar.rules;
 
 import org.sonar.check.Rule;
 import org.sonar.check.Priority;
-import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.sensor.Sensor;
-import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.batch.sensor.SensorDescriptor;
-import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.rule.RuleKey;
-import javax.annotation.Nonnull;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
 
 @Rule(
     key = "NoUpperLayerAccessFromRepository",
@@ -23,145 +11,95 @@ import java.util.regex.Pattern;
     priority = Priority.CRITICAL,
     tags = {"arquitectura", "capas", "dependencias-ciclicas", "infraestructura"}
 )
-public class NoUpperLayerAccessFromRepositoryRule implements Sensor {
+public class NoUpperLayerAccessFromRepositoryRule implements ArchitectureCheck {
+
+    private static final RuleKey RULE_KEY = RuleKey.of("arq-rules-plugin", "NoUpperLayerAccessFromRepository");
     
-    private static final List<Pattern> FORBIDDEN_IMPORTS = new ArrayList<>();
-    static {
-        // Importaciones de capa de servicios/aplicación
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.servicios\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.services\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.service\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.aplicacion\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.application\\."));
-        
-        // Importaciones de capa de presentación/exposición
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.presentacion\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.presentation\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.exposicion\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.exposition\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.controller\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.controllers\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.web\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.rest\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.api\\."));
-        
+    // Los imports de paquetes de servicios/aplicación y de presentación/exposición los decide el
+    // modelo de capas
+    private static final int UPPER_LAYERS = Layer.SERVICE.bit() | Layer.EXPOSITION.bit();
+
+    private static final PatternSet FORBIDDEN_IMPORTS = PatternSet.builder()
         // Importaciones de DTOs (que generalmente están en capas superiores)
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.dto\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.dtos\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.request\\."));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+[\\w.]+\\.response\\."));
-        
+        .add("import\\s+[\\w.]+\\.dto\\.")
+        .add("import\\s+[\\w.]+\\.dtos\\.")
+        .add("import\\s+[\\w.]+\\.request\\.")
+        .add("import\\s+[\\w.]+\\.response\\.")
+
         // Importaciones específicas de anotaciones de capas superiores
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+org\\.springframework\\.stereotype\\.Service"));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+org\\.springframework\\.stereotype\\.Controller"));
-        FORBIDDEN_IMPORTS.add(Pattern.compile("import\\s+org\\.springframework\\.web\\.bind\\.annotation\\."));
-    }
+        .add("import\\s+org\\.springframework\\.stereotype\\.Service")
+        .add("import\\s+org\\.springframework\\.stereotype\\.Controller")
+        .add("import\\s+org\\.springframework\\.web\\.bind\\.annotation\\.")
+        .build();
 
-    private static final List<Pattern> FORBIDDEN_USAGE_PATTERNS = new ArrayList<>();
-    static {
+    private static final PatternSet FORBIDDEN_USAGE_PATTERNS = PatternSet.builder()
         // Patrones de uso de clases de capas superiores
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*Service\\w*\\s+\\w+"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*Controller\\w*\\s+\\w+"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*RestController\\w*\\s+\\w+"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*Endpoint\\w*\\s+\\w+"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*Resource\\w*\\s+\\w+"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*DTO\\w*\\s+\\w+"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*Request\\w*\\s+\\w+"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("\\b\\w*Response\\w*\\s+\\w+"));
-        
+        .add("\\b\\w*Service\\w*\\s+\\w+")
+        .add("\\b\\w*Controller\\w*\\s+\\w+")
+        .add("\\b\\w*RestController\\w*\\s+\\w+")
+        .add("\\b\\w*Endpoint\\w*\\s+\\w+")
+        .add("\\b\\w*Resource\\w*\\s+\\w+")
+        .add("\\b\\w*DTO\\w*\\s+\\w+")
+        .add("\\b\\w*Request\\w*\\s+\\w+")
+        .add("\\b\\w*Response\\w*\\s+\\w+")
+        .build();
+
+    private static final PatternSet FORBIDDEN_ANNOTATIONS = PatternSet.builder()
         // Anotaciones de capas superiores que no deberían estar en repositorios
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@Service\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@Controller\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@RestController\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@RequestMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@GetMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@PostMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@PutMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@DeleteMapping\\b"));
-        FORBIDDEN_USAGE_PATTERNS.add(Pattern.compile("@PatchMapping\\b"));
-    }
-
-    private static final Pattern REPOSITORY_PACKAGE_PATTERN = Pattern.compile("package\\s+[\\w.]+\\.(persistencia|persistence|repository|repositories|infrastructure|infraestructura|dao|daos)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern REPOSITORY_CLASS_PATTERN = Pattern.compile("@Repository\\b|class\\s+\\w*Repository\\w*\\s*\\{|interface\\s+\\w*Repository\\w*\\s*\\{", Pattern.CASE_INSENSITIVE);
-
+        .add("@Service\\b")
+        .add("@Controller\\b")
+        .add("@RestController\\b")
+        .add("@RequestMapping\\b")
+        .add("@GetMapping\\b")
+        .add("@PostMapping\\b")
+        .add("@PutMapping\\b")
+        .add("@DeleteMapping\\b")
+        .add("@PatchMapping\\b")
+        .build();
+
+
+    // Paquete de repositorio por package statement, por ruta o por el tipo
     @Override
-    public void describe(@Nonnull SensorDescriptor descriptor) {
-        descriptor
-            .name("No Upper Layer Access From Repository Check")
-            .onlyOnLanguage("java");
+    public boolean appliesTo(FileLayer layer) {
+        return layer.in(Layer.REPOSITORY) || layer.declares(Layer.REPOSITORY);
     }
 
     @Override
-    public void execute(@Nonnull SensorContext context) {
-        FileSystem fs = context.fileSystem();
-        
-        Iterable<InputFile> inputFiles = fs.inputFiles(fs.predicates().hasLanguage("java"));
-        
-        for (InputFile inputFile : inputFiles) {
-            analyzeFile(inputFile, context);
+    public void analyzeFile(SourceFile file, FileIssues issues) {
+        CharSequence content = file.content();
+        LayerTable layers = file.layerTable();
+        if (!appliesTo(file.layer()) || (layers.model().allows(Layer.REPOSITORY, Layer.SERVICE)
+            && layers.model().allows(Layer.REPOSITORY, Layer.EXPOSITION))) {
+            return;
         }
-    }
 
-    private void analyzeFile(InputFile inputFile, SensorContext context) {
-        try {
-            String content = new String(inputFile.contents().getBytes(), StandardCharsets.UTF_8);
-            
-            // Verificar si está en paquete de repositorio por package statement o por ruta
-            boolean isRepositoryPackage = REPOSITORY_PACKAGE_PATTERN.matcher(content).find() || 
-                                        REPOSITORY_CLASS_PATTERN.matcher(content).find() ||
-                                        isRepositoryPath(inputFile.toString());
-            
-            if (!isRepositoryPackage) {
-                return;
-            }
-
-            // Buscar importaciones prohibidas
-            for (Pattern pattern : FORBIDDEN_IMPORTS) {
-                if (pattern.matcher(content).find()) {
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoUpperLayerAccessFromRepository"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("Los Repositories no deben llamar directamente a clases de la capa de servicios o presentación. Esto rompe la arquitectura en capas y genera ciclos de dependencias."))
-                        .save();
-                    return; // Solo reportar una vez por archivo
-                }
-            }
-
-            // Buscar patrones de uso prohibidos
-            for (Pattern pattern : FORBIDDEN_USAGE_PATTERNS) {
-                if (pattern.matcher(content).find()) {
-                    NewIssue issue = context.newIssue();
-                    issue
-                        .forRule(RuleKey.of("arq-rules-plugin", "NoUpperLayerAccessFromRepository"))
-                        .at(issue.newLocation()
-                            .on(inputFile)
-                            .message("Los Repositories no deben usar clases o anotaciones de capas superiores (servicios/presentación). Esto rompe la arquitectura en capas."))
-                        .save();
-                    return; // Solo reportar una vez por archivo
-                }
-            }
-            
-        } catch (IOException e) {
-            // Manejar error de lectura de archivo
-            context.newAnalysisError()
-                .message("Error al analizar el archivo: " + e.getMessage())
-                .onFile(inputFile)
-                .save();
+        JavaTokens tokens = file.tokens();
+
+        // Buscar importaciones prohibidas: de capas superiores, de DTOs o de anotaciones
+        PatternSet.Match match = PatternSet.earliest(
+            layers.forbiddenImport(file.header(), Layer.REPOSITORY, UPPER_LAYERS),
+            FORBIDDEN_IMPORTS.find(content, file.header().importRanges()));
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "Los Repositories no deben llamar directamente a clases de la capa de servicios o presentación. Esto rompe la arquitectura en capas y genera ciclos de dependencias.");
+            return; // Solo reportar una vez por archivo
+        }
+
+        // En modo bytecode, clases de capas superiores usadas aunque no aparezcan en los imports
+        ClassReferences bytecode = file.bytecode();
+        if (bytecode != null && bytecode.firstForbidden(Layer.REPOSITORY, UPPER_LAYERS, layers) != null) {
+            issues.addIssue(RULE_KEY, "Los Repositories no deben llamar directamente a clases de la capa de servicios o presentación. Esto rompe la arquitectura en capas y genera ciclos de dependencias.");
+            return; // Solo reportar una vez por archivo
         }
-    }
 
-    private boolean isRepositoryPath(String filePath) {
-        String normalizedPath = filePath.replace("\\", "/").toLowerCase();
-        return normalizedPath.contains("/persistencia/") || 
-               normalizedPath.contains("/persistence/") || 
-               normalizedPath.contains("/repository/") || 
-               normalizedPath.contains("/repositories/") || 
-               normalizedPath.contains("/infrastructure/") || 
-               normalizedPath.contains("/infraestructura/") || 
-               normalizedPath.contains("/dao/") || 
-               normalizedPath.contains("/daos/");
+        // Buscar patrones de uso prohibidos, fuera de comentarios y literales
+        match = FORBIDDEN_ANNOTATIONS.find(content, tokens.ranges(JavaTokens.ANNOTATION));
+        if (match == null) {
+            match = FORBIDDEN_USAGE_PATTERNS.find(file.masked());
+        }
+        if (match != null) {
+            issues.addIssueOnce(RULE_KEY, file.lines(), match.start(), match.end(), "Los Repositories no deben usar clases o anotaciones de capas superiores (servicios/presentación). Esto rompe la arquitectura en capas.");
+            return; // Solo reportar una vez por archivo
+        }
     }
 }
 
@@ -0,0 +1,420 @@
+package com.miempresa.sonar.rules;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lista de patrones que se evalúa como un conjunto: en vez de recorrer el archivo una vez por
+ * patrón, todos los literales de la lista se buscan juntos en una sola pasada con
+ * {@link LiteralMatcher}.
+ *
+ * <p>Cada expresión se clasifica al construir el conjunto:</p>
+ * <ul>
+ *   <li>literal puro ({@code \.createQuery\(}, {@code PreparedStatement}): lo resuelve el autómata;</li>
+ *   <li>literal seguido de {@code \b} ({@code @Entity\b}): autómata más una comprobación del
+ *       carácter siguiente; si no es ASCII decide {@code java.util.regex};</li>
+ *   <li>expresión con un literal obligatorio ({@code import\s+javax\.persistence\.Query}): solo se
+ *       ejecuta {@code java.util.regex} si el autómata encontró ese literal;</li>
+ *   <li>el resto ({@code (?i)...}, alternancias): siempre se ejecuta {@code java.util.regex}.</li>
+ * </ul>
+ *
+ * <p>{@link #find(CharSequence)} devuelve el primer patrón de la lista (en orden de declaración)
+ * que aparece en el texto, igual que el antiguo bucle {@code for (Pattern p : lista)}.</p>
+ *
+ * <p>No se aceptan expresiones con {@code .*} o {@code .+}: en una línea larga sin la continuación
+ * esperada cada intento recorre el resto de la línea y el costo crece con su cuadrado. Se
+ * escriben con una repetición acotada ({@code .{0,1000}?}) o una clase negada ({@code [^;]}). La
+ * evaluación de {@code java.util.regex} cuenta además contra el {@link MatchBudget} del
+ * archivo.</p>
+ */
+public final class PatternSet {
+
+    enum Kind { LITERAL, WORD, ANCHORED, REGEX }
+
+    /** Patrón encontrado: índice en la lista y posición en el texto. */
+    public static final class Match {
+        private final int index;
+        private final int start;
+        private final int end;
+
+        Match(int index, int start, int end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public int start() {
+            return start;
+        }
+
+        public int end() {
+            return end;
+        }
+    }
+
+    private final String[] sources;
+    private final Kind[] kinds;
+    private final Pattern[] patterns;
+    private final LiteralMatcher literals;
+    private final int[][] entriesByLiteral;
+
+    private PatternSet(List<String> regexes) {
+        int size = regexes.size();
+        sources = regexes.toArray(new String[0]);
+        kinds = new Kind[size];
+        patterns = new Pattern[size];
+
+        Map<String, List<Integer>> literalEntries = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            requireBounded(sources[i]);
+            Analysis analysis = Analysis.of(sources[i]);
+            kinds[i] = analysis.kind;
+            if (analysis.kind != Kind.LITERAL) {
+                patterns[i] = Pattern.compile(sources[i]);
+            }
+            if (analysis.literal != null) {
+                literalEntries.computeIfAbsent(analysis.literal, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        literals = new LiteralMatcher(new ArrayList<>(literalEntries.keySet()));
+        entriesByLiteral = new int[literalEntries.size()][];
+        int id = 0;
+        for (List<Integer> entries : literalEntries.values()) {
+            entriesByLiteral[id++] = entries.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public static PatternSet of(String... regexes) {
+        return new PatternSet(List.of(regexes));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return sources.length;
+    }
+
+    public String pattern(int index) {
+        return sources[index];
+    }
+
+    // Cómo se evalúa el patrón, según la clasificación de la lista de arriba
+    Kind kind(int index) {
+        return kinds[index];
+    }
+
+    /** La coincidencia que empieza antes; con el mismo inicio, la primera. Acepta {@code null}. */
+    static Match earliest(Match first, Match second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null || first.start() <= second.start() ? first : second;
+    }
+
+    public boolean matches(CharSequence text) {
+        return find(text) != null;
+    }
+
+    /**
+     * Indica si algún patrón aparece dentro de alguno de los rangos {@code [inicio, fin)} del
+     * arreglo (pares consecutivos, como los de {@code JavaTokens}). Ninguna coincidencia cruza
+     * el límite de un rango.
+     */
+    public boolean matches(CharSequence text, int[] ranges) {
+        return find(text, ranges) != null;
+    }
+
+    /**
+     * Primera coincidencia dentro de los rangos, recorridos en orden; dentro de un rango gana el
+     * primer patrón de la lista, como en {@link #find(CharSequence)}.
+     */
+    public Match find(CharSequence text, int[] ranges) {
+        for (int i = 0; i + 1 < ranges.length; i += 2) {
+            Match match = find(text, ranges[i], ranges[i + 1]);
+            if (match != null) {
+                return match;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Primer patrón de la lista que aparece en el texto, o {@code null} si no aparece ninguno.
+     */
+    public Match find(CharSequence text) {
+        return find(text, 0, text.length());
+    }
+
+    /**
+     * Igual que {@link #find(CharSequence)} pero limitado a {@code [from, to)}; las posiciones
+     * devueltas son relativas al texto completo.
+     */
+    public Match find(CharSequence text, int from, int to) {
+        RuleStats.patternEvaluated();
+        Search search = new Search(text, to);
+        if (literals.size() > 0) {
+            literals.scan(text, from, to, search);
+        }
+
+        // Las expresiones regulares solo se evalúan si pueden mejorar el resultado del autómata
+        for (int i = 0; i < search.bestIndex && i < sources.length; i++) {
+            if (kinds[i] == Kind.REGEX || (kinds[i] == Kind.ANCHORED && search.anchorSeen(i))) {
+                Matcher matcher = patterns[i].matcher(MatchBudget.guard(text)).region(from, to);
+                if (matcher.find()) {
+                    return new Match(i, matcher.start(), matcher.end());
+                }
+            }
+        }
+        return search.bestIndex < Integer.MAX_VALUE
+            ? new Match(search.bestIndex, search.bestStart, search.bestEnd)
+            : null;
+    }
+
+    private final class Search implements LiteralMatcher.Listener {
+        private final CharSequence text;
+        private final int limit;
+        private final long[] anchors = new long[(sources.length + 63) / 64];
+        private int bestIndex = Integer.MAX_VALUE;
+        private int bestStart;
+        private int bestEnd;
+
+        private Search(CharSequence text, int limit) {
+            this.text = text;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean onMatch(int literal, int start, int end) {
+            for (int entry : entriesByLiteral[literal]) {
+                if (entry >= bestIndex) {
+                    continue;
+                }
+                switch (kinds[entry]) {
+                    case LITERAL:
+                        record(entry, start, end);
+                        break;
+                    case WORD:
+                        if (endsWord(entry, start, end)) {
+                            record(entry, start, end);
+                        }
+                        break;
+                    default:
+                        anchors[entry >>> 6] |= 1L << entry;
+                        break;
+                }
+            }
+            // Nada puede ganarle al primer patrón de la lista
+            return bestIndex > 0;
+        }
+
+        // Si \b separa un carácter ASCII de uno que no lo es depende de la versión del JDK
+        // (solo ASCII desde el 19): ese caso lo decide la expresión
+        private boolean endsWord(int entry, int start, int end) {
+            if (end == limit) {
+                return true;
+            }
+            char next = text.charAt(end);
+            if (next < 0x80) {
+                return !isWordChar(next);
+            }
+            return patterns[entry].matcher(MatchBudget.guard(text)).region(start, limit).lookingAt();
+        }
+
+        private void record(int entry, int start, int end) {
+            bestIndex = entry;
+            bestStart = start;
+            bestEnd = end;
+        }
+
+        private boolean anchorSeen(int entry) {
+            return (anchors[entry >>> 6] & (1L << entry)) != 0;
+        }
+    }
+
+    private static void requireBounded(String regex) {
+        for (int i = 0; i + 1 < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = Analysis.skipClass(regex, i);
+            } else if (c == '.' && (regex.charAt(i + 1) == '*' || regex.charAt(i + 1) == '+')) {
+                throw new IllegalArgumentException("Repetición sin límite en el patrón " + regex
+                    + ": usa una repetición acotada como .{0,1000}? o una clase negada");
+            }
+        }
+    }
+
+    // Carácter de palabra ASCII, [A-Za-z0-9_]: el único caso en que \b coincide en todos los JDK
+    static boolean isWordChar(char c) {
+        return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    public static final class Builder {
+        private final List<String> regexes = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder add(String regex) {
+            regexes.add(regex);
+            return this;
+        }
+
+        public PatternSet build() {
+            return new PatternSet(regexes);
+        }
+    }
+
+    /**
+     * Clasifica una expresión regular y extrae el literal más largo que toda coincidencia
+     * debe contener.
+     */
+    private static final class Analysis {
+        private final Kind kind;
+        private final String literal;
+
+        private Analysis(Kind kind, String literal) {
+            this.kind = kind;
+            this.literal = literal;
+        }
+
+        static Analysis of(String regex) {
+            // Alternancias de primer nivel y banderas en línea: no hay un literal obligatorio seguro
+            if (regex.contains("(?") && !regex.contains("(?:") || hasTopLevelAlternation(regex)) {
+                return new Analysis(Kind.REGEX, null);
+            }
+
+            List<String> runs = new ArrayList<>();
+            StringBuilder run = new StringBuilder();
+            boolean pureLiteral = true;
+            boolean trailingBoundary = false;
+            boolean lastWasLiteral = false;
+            int depth = 0;
+
+            for (int i = 0; i < regex.length(); i++) {
+                char c = regex.charAt(i);
+                if (c == '\\' && i + 1 < regex.length()) {
+                    char escaped = regex.charAt(++i);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        // \s, \w, \b, \d...: clase o ancla, corta el literal
+                        if (escaped == 'b' && i == regex.length() - 1 && pureLiteral) {
+                            trailingBoundary = true;
+                        } else {
+                            pureLiteral = false;
+                        }
+                        endRun(runs, run);
+                        lastWasLiteral = false;
+                    } else {
+                        lastWasLiteral = append(run, escaped, depth);
+                    }
+                } else if (c == '[') {
+                    pureLiteral = false;
+                    endRun(runs, run);
+                    i = skipClass(regex, i);
+                    lastWasLiteral = false;
+                } else if (c == '(' || c == ')') {
+                    pureLiteral = false;
+                    endRun(runs, run);
+                    depth += c == '(' ? 1 : -1;
+                    lastWasLiteral = false;
+                } else if (c == '*' || c == '?' || c == '+' || c == '{') {
+                    pureLiteral = false;
+                    // El carácter cuantificado no es obligatorio
+                    if (lastWasLiteral && run.length() > 0) {
+                        run.setLength(run.length() - 1);
+                    }
+                    endRun(runs, run);
+                    if (c == '{') {
+                        i = regex.indexOf('}', i);
+                    }
+                    lastWasLiteral = false;
+                } else if (c == '.' || c == '^' || c == '$') {
+                    pureLiteral = false;
+                    endRun(runs, run);
+                    lastWasLiteral = false;
+                } else {
+                    lastWasLiteral = append(run, c, depth);
+                }
+            }
+            endRun(runs, run);
+
+            String longest = null;
+            for (String candidate : runs) {
+                if (longest == null || candidate.length() > longest.length()) {
+                    longest = candidate;
+                }
+            }
+
+            if (pureLiteral && runs.size() == 1) {
+                if (!trailingBoundary) {
+                    return new Analysis(Kind.LITERAL, longest);
+                }
+                if (isWordChar(longest.charAt(longest.length() - 1))) {
+                    return new Analysis(Kind.WORD, longest);
+                }
+            }
+            return longest == null
+                ? new Analysis(Kind.REGEX, null)
+                : new Analysis(Kind.ANCHORED, longest);
+        }
+
+        private static boolean append(StringBuilder run, char c, int depth) {
+            // Lo que está dentro de un grupo puede ser opcional
+            if (depth > 0) {
+                return false;
+            }
+            run.append(c);
+            return true;
+        }
+
+        private static void endRun(List<String> runs, StringBuilder run) {
+            if (run.length() > 0) {
+                runs.add(run.toString());
+                run.setLength(0);
+            }
+        }
+
+        private static int skipClass(String regex, int start) {
+            for (int i = start + 1; i < regex.length(); i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == ']') {
+                    return i;
+                }
+            }
+            return regex.length();
+        }
+
+        private static boolean hasTopLevelAlternation(String regex) {
+            int depth = 0;
+            for (int i = 0; i < regex.length(); i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == '[') {
+                    i = skipClass(regex, i);
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (c == '|' && depth == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.check.Rule;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Contadores por regla de un análisis: archivos examinados, archivos descartados por el filtro
+ * de capa ({@link ArchitectureCheck#appliesTo}), caracteres del contenido de los archivos
+ * examinados, evaluaciones de {@link PatternSet}, issues y tiempo de reloj y de CPU.
+ *
+ * <p>Cada hilo que analiza archivos registra en su propio {@link Recorder}: arreglos de
+ * {@code long} indexados por regla, sin sincronización ni objetos nuevos por llamada. Al final
+ * del análisis se suman los de todos los hilos.</p>
+ */
+final class RuleStats {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+
+    // Recorder del hilo actual: PatternSet cuenta sus evaluaciones sin que las reglas lo reciban
+    private static final ThreadLocal<Recorder> CURRENT = new ThreadLocal<>();
+
+    private static final int EXAMINED = 0;
+    private static final int SKIPPED = 1;
+    private static final int CHARS = 2;
+    private static final int EVALUATIONS = 3;
+    private static final int ISSUES = 4;
+    private static final int WALL_NANOS = 5;
+    private static final int CPU_NANOS = 6;
+    private static final int METRICS = 7;
+
+    private final String[] rules;
+    private final List<Recorder> recorders = new ArrayList<>();
+
+    RuleStats(List<ArchitectureCheck> checks) {
+        rules = new String[checks.size()];
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = ruleKey(checks.get(i));
+        }
+    }
+
+    private static String ruleKey(ArchitectureCheck check) {
+        Rule rule = check.getClass().getAnnotation(Rule.class);
+        return rule != null ? rule.key() : check.getClass().getSimpleName();
+    }
+
+    /** Recorder para un hilo de trabajo; sus contadores se incluyen en el resumen. */
+    synchronized Recorder newRecorder() {
+        Recorder recorder = new Recorder(rules.length);
+        recorders.add(recorder);
+        return recorder;
+    }
+
+    /** Lo llama {@link PatternSet} en cada búsqueda; no hace nada fuera de un análisis. */
+    static void patternEvaluated() {
+        Recorder recorder = CURRENT.get();
+        if (recorder != null) {
+            recorder.evaluations++;
+        }
+    }
+
+    // Suma de todos los hilos; solo se llama cuando ya terminaron
+    private synchronized long[] totals() {
+        long[] totals = new long[rules.length * METRICS];
+        for (Recorder recorder : recorders) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += recorder.counters[i];
+            }
+        }
+        return totals;
+    }
+
+    void log(Logger log) {
+        long[] totals = totals();
+        log.info("Estadísticas de las reglas de arquitectura:");
+        log.info(String.format(Locale.ROOT, "  %-36s %9s %11s %13s %10s %7s %10s %10s",
+            "Regla", "Archivos", "Descartados", "Caracteres", "Patrones", "Issues", "Reloj ms", "CPU ms"));
+        for (int rule = 0; rule < rules.length; rule++) {
+            int at = rule * METRICS;
+            log.info(String.format(Locale.ROOT, "  %-36s %9d %11d %13d %10d %7d %10.1f %10s",
+                rules[rule], totals[at + EXAMINED], totals[at + SKIPPED], totals[at + CHARS],
+                totals[at + EVALUATIONS], totals[at + ISSUES], millis(totals[at + WALL_NANOS]),
+                CPU_TIME ? String.format(Locale.ROOT, "%.1f", millis(totals[at + CPU_NANOS])) : "-"));
+        }
+    }
+
+    void writeJson(Path path) throws IOException {
+        long[] totals = totals();
+        Files.createDirectories(path.getParent());
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("{\n  \"rules\": [");
+            for (int rule = 0; rule < rules.length; rule++) {
+                int at = rule * METRICS;
+                out.write(rule == 0 ? "\n" : ",\n");
+                out.write(String.format(Locale.ROOT,
+                    "    {\"key\": \"%s\", \"filesExamined\": %d, \"filesSkipped\": %d, \"charsScanned\": %d, "
+                        + "\"patternEvaluations\": %d, \"issues\": %d, \"wallTimeMs\": %.3f, \"cpuTimeMs\": %s}",
+                    rules[rule], totals[at + EXAMINED], totals[at + SKIPPED], totals[at + CHARS],
+                    totals[at + EVALUATIONS], totals[at + ISSUES], millis(totals[at + WALL_NANOS]),
+                    CPU_TIME ? String.format(Locale.ROOT, "%.3f", millis(totals[at + CPU_NANOS])) : "null"));
+            }
+            out.write("\n  ]\n}\n");
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0L;
+    }
+
+    /**
+     * Contadores de un hilo. El sensor llama a {@link #start} y {@link #stop} alrededor de cada
+     * {@code analyzeFile}; solo una regla está en curso a la vez.
+     */
+    static final class Recorder {
+        private final long[] counters;
+        private long evaluations;
+        private long startWall;
+        private long startCpu;
+        private long startEvaluations;
+        private int startIssues;
+
+        private Recorder(int rules) {
+            counters = new long[rules * METRICS];
+        }
+
+        /** Asocia el recorder al hilo actual para contar las evaluaciones de patrones. */
+        void attach() {
+            if (CURRENT.get() != this) {
+                CURRENT.set(this);
+            }
+        }
+
+        void detach() {
+            if (CURRENT.get() == this) {
+                CURRENT.remove();
+            }
+        }
+
+        void skipped(int rule) {
+            counters[rule * METRICS + SKIPPED]++;
+        }
+
+        void start(int issues) {
+            startIssues = issues;
+            startEvaluations = evaluations;
+            startCpu = cpuTime();
+            startWall = System.nanoTime();
+        }
+
+        /** Con {@code newFile} en false es otro bloque de un archivo ya contado ({@link SourceChunks}). */
+        void stop(int rule, int chars, int issues, boolean newFile) {
+            long wall = System.nanoTime() - startWall;
+            long cpu = cpuTime() - startCpu;
+            int at = rule * METRICS;
+            if (newFile) {
+                counters[at + EXAMINED]++;
+            }
+            counters[at + CHARS] += chars;
+            counters[at + EVALUATIONS] += evaluations - startEvaluations;
+            counters[at + ISSUES] += issues - startIssues;
+            counters[at + WALL_NANOS] += wall;
+            counters[at + CPU_NANOS] += cpu;
+        }
+    }
+}
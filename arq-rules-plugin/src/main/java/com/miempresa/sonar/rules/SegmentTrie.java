@@ -0,0 +1,144 @@
+package com.miempresa.sonar.rules;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Trie de nombres de segmento ({@code exposition}, {@code rest}, {@code dao}, ...) que clasifica
+ * una ruta o un nombre de paquete recorriéndolo una sola vez, carácter a carácter, sin
+ * {@code toLowerCase()}, {@code split()} ni {@code substring()}.
+ *
+ * <p>Los nombres son identificadores Java en minúsculas ({@code model_v2}, {@code dominio},
+ * {@code configuración}). Las letras ASCII, los dígitos, {@code _} y {@code $} tienen su posición en
+ * la tabla de cada nodo; el resto de caracteres (acentos, ñ, ...) se buscan en un mapa aparte,
+ * que solo se consulta al encontrarlos. El texto recorrido se compara sin distinguir mayúsculas.
+ * Se construye una vez y después es inmutable, por lo que puede usarse desde varios hilos.</p>
+ */
+final class SegmentTrie {
+
+    // a-z, 0-9, '_' y '$'
+    private static final int ALPHABET = 38;
+    private static final int NOT_IN_ALPHABET = -1;
+    private static final int DEAD = -1;
+
+    // next[nodo * ALPHABET + letra] = hijo, o 0 si no hay (la raíz nunca es hija de nadie)
+    private int[] next = new int[ALPHABET * 16];
+    private Layer[] layers = new Layer[16];
+    private int nodes = 1;
+    // Hijos por caracteres fuera del alfabeto: (nodo << 16 | carácter) -> hijo
+    private final Map<Long, Integer> others = new HashMap<>();
+
+    SegmentTrie add(String segment, Layer layer) {
+        int node = 0;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (i == 0 ? !Character.isJavaIdentifierStart(c) : !Character.isJavaIdentifierPart(c)) {
+                throw new IllegalArgumentException("Segmento no válido: " + segment);
+            }
+            c = Character.toLowerCase(c);
+            int letter = letter(c);
+            if (letter == NOT_IN_ALPHABET) {
+                Integer child = others.get(otherKey(node, c));
+                if (child == null) {
+                    child = newNode();
+                    others.put(otherKey(node, c), child);
+                }
+                node = child;
+                continue;
+            }
+            int child = next[node * ALPHABET + letter];
+            if (child == 0) {
+                child = newNode();
+                next[node * ALPHABET + letter] = child;
+            }
+            node = child;
+        }
+        layers[node] = layer;
+        return this;
+    }
+
+    /**
+     * Capas de los segmentos de {@code text[from, to)} separados por {@code separator}, sin contar
+     * el primero (com, src, ...). Con {@code '/'} como separador también se acepta {@code '\\'}.
+     * El resultado empaqueta la máscara de capas ({@link #mask(int)}) y la capa del segmento
+     * más profundo ({@link #deepest(int)}).
+     */
+    int scan(CharSequence text, int from, int to, char separator) {
+        int mask = 0;
+        Layer deepest = Layer.NONE;
+        int i = from;
+        // Saltar el primer segmento
+        while (i < to && !isSeparator(text.charAt(i), separator)) {
+            i++;
+        }
+        int node = 0;
+        for (i = i + 1; i <= to; i++) {
+            if (i == to || isSeparator(text.charAt(i), separator)) {
+                Layer layer = node > 0 ? layers[node] : null;
+                if (layer != null) {
+                    mask |= layer.bit();
+                    deepest = layer;
+                }
+                node = 0;
+            } else if (node != DEAD) {
+                node = step(node, text.charAt(i));
+            }
+        }
+        return deepest.ordinal() << 16 | mask;
+    }
+
+    static int mask(int scan) {
+        return scan & 0xFFFF;
+    }
+
+    static Layer deepest(int scan) {
+        return Layer.values()[scan >>> 16];
+    }
+
+    private int step(int node, char c) {
+        if (c >= 'A' && c <= 'Z') {
+            c = (char) (c + ('a' - 'A'));
+        }
+        int letter = letter(c);
+        if (letter == NOT_IN_ALPHABET) {
+            if (c < 0x80 || others.isEmpty()) {
+                return DEAD;
+            }
+            Integer child = others.get(otherKey(node, Character.toLowerCase(c)));
+            return child == null ? DEAD : child;
+        }
+        int child = next[node * ALPHABET + letter];
+        return child == 0 ? DEAD : child;
+    }
+
+    // Posición del carácter (ya en minúsculas) en la tabla de un nodo
+    private static int letter(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        if (c >= '0' && c <= '9') {
+            return 26 + (c - '0');
+        }
+        if (c == '_') {
+            return 36;
+        }
+        return c == '$' ? 37 : NOT_IN_ALPHABET;
+    }
+
+    private static long otherKey(int node, char c) {
+        return (long) node << 16 | c;
+    }
+
+    private static boolean isSeparator(char c, char separator) {
+        return c == separator || (separator == '/' && c == '\\');
+    }
+
+    private int newNode() {
+        if (nodes == layers.length) {
+            layers = Arrays.copyOf(layers, nodes * 2);
+            next = Arrays.copyOf(next, nodes * 2 * ALPHABET);
+        }
+        return nodes++;
+    }
+}
@@ -0,0 +1,105 @@
+package com.miempresa.sonar.rules;
+
+import java.io.IOException;
+
+/**
+ * Recorre por bloques de tamaño fijo un archivo mayor que {@code sonar.arq.streaming.thresholdKb}
+ * (fuentes generados de JAXB, OpenAPI o protobuf), para que la memoria por archivo no dependa de
+ * su tamaño: {@link SourceReader} no guarda más que un bloque y los tokens e índices de líneas
+ * son solo los del bloque en curso.
+ *
+ * <p>Cada bloque repite los últimos {@link #OVERLAP} caracteres del anterior, así que una
+ * coincidencia que cruza el corte está entera en alguno de los dos. Los hallazgos con posición
+ * se reparten por la mitad del solapamiento ({@link FileIssues#ownRange}) y ninguno se reporta
+ * dos veces. Las líneas y columnas son las del archivo completo y el tokenizador sigue en el
+ * estado en que quedó, aunque el corte caiga dentro de un comentario o literal.</p>
+ *
+ * <p>Los imports y el bytecode son de todo el archivo: solo los ve el primer bloque.</p>
+ */
+final class SourceChunks {
+
+    // Bastante más que lo que abarca un patrón acotado (ver PatternSet) o el contexto que miran
+    // las reglas alrededor de un token
+    static final int OVERLAP = 16 * 1024;
+
+    // Un bloque tiene que avanzar bastante más que lo que repite
+    static final int MIN_CHUNK_CHARS = 4 * OVERLAP;
+
+    private final SourceReader reader;
+    private final int chunkChars;
+    private final FileHeader header;
+    private SourceFile current;
+    private JavaLexer.State start = JavaLexer.State.START;
+    private int ownFrom;
+    private int ownTo;
+    // Inicio del bloque siguiente dentro del actual, o -1 si el actual es el último
+    private int next;
+    private long contentHash = AnalysisCache.EMPTY_HASH;
+
+    /**
+     * @param first primer bloque, ya leído con {@code reader.readChunk(0, chunkChars)}
+     */
+    SourceChunks(SourceFile first, SourceReader reader, int chunkChars) {
+        this.reader = reader;
+        this.chunkChars = chunkChars;
+        this.header = first.header().withoutImports();
+        this.current = first;
+        prepare(0, 0);
+    }
+
+    SourceFile current() {
+        return current;
+    }
+
+    /** Parte del bloque actual cuyos hallazgos le corresponden: {@code [ownFrom, ownTo)}. */
+    int ownFrom() {
+        return ownFrom;
+    }
+
+    int ownTo() {
+        return ownTo;
+    }
+
+    /** Hash de todo el archivo; válido después del último bloque. */
+    long contentHash() {
+        return contentHash;
+    }
+
+    /** Pasa al bloque siguiente; devuelve false si el actual era el último. */
+    boolean next() throws IOException {
+        if (next < 0) {
+            return false;
+        }
+        // Estado y posición del corte, antes de que readChunk sobrescriba el bloque actual
+        LineIndex lines = current.lines();
+        JavaLexer.State state = JavaLexer.stateAt(current.tokens(), start, next);
+        int firstLine = lines.line(next);
+        int firstColumn = lines.column(next);
+        int kept = current.content().length() - next;
+        int nextOwnFrom = ownTo - next;
+
+        CharSequence content = reader.readChunk(next, chunkChars);
+        current = new SourceFile(current.inputFile(), content, current.layerTable(), BytecodeIndex.empty(),
+            header, current.layer(), state, firstLine, firstColumn);
+        start = state;
+        prepare(kept, nextOwnFrom);
+        return true;
+    }
+
+    private void prepare(int kept, int from) {
+        CharSequence content = current.content();
+        int length = content.length();
+        contentHash = AnalysisCache.hash(contentHash, content, kept, length);
+        ownFrom = from;
+        if (reader.isComplete()) {
+            next = -1;
+            ownTo = length;
+            return;
+        }
+        int target = length - OVERLAP;
+        int cut = JavaLexer.cut(current.tokens(), start, target);
+        // Un token de decenas de K (solo en texto que no es Java) se corta donde caiga
+        next = cut > ownFrom ? cut : target;
+        ownTo = next + (length - next) / 2;
+    }
+}
@@ -0,0 +1,172 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.batch.fs.InputFile;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Modelo compartido de un archivo Java: se construye una sola vez por archivo
+ * y se despacha a todas las reglas.
+ */
+public final class SourceFile {
+
+    private final InputFile inputFile;
+    private final CharSequence content;
+    private final LayerTable layerTable;
+    private final BytecodeIndex bytecodeIndex;
+    private FileHeader header;
+    private FileLayer layer;
+    private JavaTokens tokens;
+    private LineIndex lines;
+    // Dónde empieza el contenido dentro del archivo, si es un bloque de un archivo más grande
+    private final JavaLexer.State start;
+    private final int firstLine;
+    private final int firstColumn;
+    private ClassReferences bytecode;
+    private boolean bytecodeResolved;
+    // Nombres buscados en el índice de tipos y lo que se encontró ("" si nada)
+    private Map<String, String> foundTypes;
+
+    SourceFile(InputFile inputFile, CharSequence content) {
+        this(inputFile, content, new LayerTable());
+    }
+
+    SourceFile(InputFile inputFile, CharSequence content, LayerTable layerTable) {
+        this(inputFile, content, layerTable, BytecodeIndex.empty());
+    }
+
+    SourceFile(InputFile inputFile, CharSequence content, LayerTable layerTable, BytecodeIndex bytecodeIndex) {
+        this(inputFile, content, layerTable, bytecodeIndex, null, null);
+    }
+
+    /** Archivo ya clasificado con la cabecera de su primer bloque ({@link SourceReader#readHeader}). */
+    SourceFile(InputFile inputFile, CharSequence content, LayerTable layerTable, BytecodeIndex bytecodeIndex,
+               FileHeader header, FileLayer layer) {
+        this(inputFile, content, layerTable, bytecodeIndex, header, layer, JavaLexer.State.START, 1, 0);
+    }
+
+    /**
+     * Bloque de un archivo leído por partes ({@link SourceChunks}) que empieza en la línea y
+     * columna indicadas; el tokenizado sigue desde el estado en que quedó el bloque anterior.
+     */
+    SourceFile(InputFile inputFile, CharSequence content, LayerTable layerTable, BytecodeIndex bytecodeIndex,
+               FileHeader header, FileLayer layer, JavaLexer.State start, int firstLine, int firstColumn) {
+        this.inputFile = inputFile;
+        this.content = content;
+        this.layerTable = layerTable;
+        this.bytecodeIndex = bytecodeIndex;
+        this.header = header;
+        this.layer = layer;
+        this.start = start;
+        this.firstLine = firstLine;
+        this.firstColumn = firstColumn;
+    }
+
+    public InputFile inputFile() {
+        return inputFile;
+    }
+
+    /**
+     * Contenido del archivo. Puede ser el buffer de {@link SourceReader}, que se reutiliza para
+     * el siguiente archivo: las reglas no deben guardarlo más allá de {@code analyzeFile}. En un
+     * archivo leído por bloques ({@link SourceChunks}) es solo el bloque en curso.
+     */
+    public CharSequence content() {
+        return content;
+    }
+
+    /** Paquete, imports, anotaciones y primer tipo del archivo, calculados una sola vez. */
+    FileHeader header() {
+        if (header == null) {
+            header = FileHeader.of(content);
+        }
+        return header;
+    }
+
+    /** Capa del archivo, clasificado una sola vez con la tabla del análisis. */
+    FileLayer layer() {
+        if (layer == null) {
+            layer = layerTable.classify(inputFile, header());
+        }
+        return layer;
+    }
+
+    /** Tabla de capas del análisis, para clasificar los paquetes importados. */
+    LayerTable layerTable() {
+        return layerTable;
+    }
+
+    /**
+     * Tipos que usan las clases compiladas del archivo, o null si el análisis de bytecode está
+     * desactivado o el archivo no tiene clases compiladas.
+     */
+    ClassReferences bytecode() {
+        if (!bytecodeResolved) {
+            bytecode = bytecodeIndex.of(header().packageName(), inputFile.filename());
+            bytecodeResolved = true;
+        }
+        return bytecode;
+    }
+
+    /**
+     * Nombre calificado de un tipo que el archivo usa por su nombre simple: el del import, o el
+     * tipo del proyecto ({@link TypeIndex}) del mismo paquete o de un import con comodín. Devuelve
+     * {@code null} para los tipos que no son del proyecto ni están importados ({@code String}).
+     */
+    String resolveType(String simpleName) {
+        String imported = header().importedType(simpleName);
+        if (imported != null) {
+            return imported;
+        }
+        if (foundTypes == null) {
+            foundTypes = new HashMap<>();
+        }
+        String found = foundTypes.get(simpleName);
+        if (found == null) {
+            found = layerTable.types().find(header().packageName(), header().typeImports(), simpleName);
+            found = found != null ? found : "";
+            foundTypes.put(simpleName, found);
+        }
+        return found.isEmpty() ? null : found;
+    }
+
+    /**
+     * Nombres que {@link #resolveType} buscó en el índice de tipos, con el nombre calificado
+     * encontrado o cadena vacía. Los resultados del archivo dependen de ellos además del contenido.
+     */
+    Map<String, String> foundTypes() {
+        return foundTypes != null ? foundTypes : Collections.emptyMap();
+    }
+
+    /**
+     * Tokens del archivo, calculados la primera vez que una regla los pide y compartidos
+     * por el resto. Un archivo lo analiza un único hilo, por eso no hace falta sincronizar.
+     */
+    JavaTokens tokens() {
+        if (tokens == null) {
+            tokens = JavaTokens.of(content, start);
+        }
+        return tokens;
+    }
+
+    /**
+     * Contenido con los comentarios y el interior de los literales en blanco, con las mismas
+     * posiciones ({@link JavaTokens#masked()}). Se calcula una vez y lo comparten todas las reglas
+     * que buscan en el código; las que miran dentro de los literales usan {@link #content()}.
+     */
+    CharSequence masked() {
+        return tokens().masked();
+    }
+
+    /**
+     * Inicio de cada línea, calculado la primera vez que una regla reporta un issue con posición;
+     * los archivos sin issues no lo necesitan.
+     */
+    LineIndex lines() {
+        if (lines == null) {
+            lines = LineIndex.of(content, firstLine, firstColumn);
+        }
+        return lines;
+    }
+}
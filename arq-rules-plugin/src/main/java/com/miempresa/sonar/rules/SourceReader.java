@@ -0,0 +1,182 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.batch.fs.InputFile;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Lee el contenido de los archivos con {@link InputFile#inputStream()} y lo decodifica en un
+ * {@link CharBuffer} que se reutiliza de un archivo al siguiente. A diferencia de
+ * {@link InputFile#contents()} no crea un {@code String} por archivo: las reglas trabajan sobre
+ * el buffer como {@link CharSequence} y un archivo generado de varios megas no deja basura.
+ *
+ * <p>La lectura puede hacerse en dos etapas: {@link #readHeader(InputFile)} decodifica solo el
+ * primer bloque, suficiente para la cabecera de casi todos los archivos, y deja el flujo abierto;
+ * {@link #readRest()} sigue desde ahí en el mismo buffer, sin volver a leer el principio, y
+ * {@link #close()} lo descarta si el resto no hace falta.</p>
+ *
+ * <p>Un archivo muy grande se lee por bloques con {@link #readChunk(int, int)}: el buffer no pasa
+ * del tamaño del bloque y cada bloque conserva el final del anterior ({@link SourceChunks}).</p>
+ *
+ * <p>El contenido devuelto solo es válido hasta la siguiente lectura, y cada instancia debe
+ * usarse desde un único hilo.</p>
+ */
+final class SourceReader {
+
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_CHARS = 64 * 1024;
+
+    // Primer bloque de readHeader: paquete, imports y declaración del tipo en casi cualquier archivo
+    static final int HEADER_BYTES = 8 * 1024;
+
+    private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+    private CharBuffer chars = CharBuffer.allocate(INITIAL_CHARS);
+    private CharsetDecoder decoder;
+    private InputStream in;
+    private boolean endOfInput;
+    private boolean complete;
+
+    /** Contenido del archivo, sin BOM; se sobrescribe en la siguiente llamada. */
+    CharSequence read(InputFile inputFile) throws IOException {
+        open(inputFile);
+        return readRest();
+    }
+
+    /**
+     * Principio del archivo: el primer bloque de {@link #HEADER_BYTES} bytes, o el archivo entero
+     * si es más corto ({@link #isComplete()}). El flujo queda abierto hasta {@link #readRest()} o
+     * {@link #close()}.
+     */
+    CharSequence readHeader(InputFile inputFile) throws IOException {
+        open(inputFile);
+        fill(HEADER_BYTES, Integer.MAX_VALUE);
+        return chars;
+    }
+
+    /** Indica si ya se leyó todo el archivo. */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /** Contenido completo del archivo abierto con {@link #readHeader(InputFile)}. */
+    CharSequence readRest() throws IOException {
+        return readChunk(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Descarta el contenido anterior a {@code keepFrom}, que pasa a ser la posición 0, y sigue
+     * leyendo hasta tener {@code maxChars} caracteres o llegar al final ({@link #isComplete()}).
+     */
+    CharSequence readChunk(int keepFrom, int maxChars) throws IOException {
+        if (keepFrom > 0) {
+            chars.position(keepFrom);
+            chars.compact();
+            chars.flip();
+        }
+        fill(Integer.MAX_VALUE, maxChars);
+        return chars;
+    }
+
+    /** Cierra el archivo en curso; no hace nada si ya se leyó entero. */
+    void close() throws IOException {
+        if (in != null) {
+            InputStream stream = in;
+            in = null;
+            stream.close();
+        }
+    }
+
+    private void open(InputFile inputFile) throws IOException {
+        close();
+        decoder(inputFile.charset());
+        chars.clear();
+        chars.flip();
+        bytes.clear();
+        endOfInput = false;
+        complete = false;
+        in = inputFile.inputStream();
+    }
+
+    // Lee bloques hasta el final, hasta haber leído el límite de bytes o hasta tener el límite de
+    // caracteres; el buffer de caracteres queda siempre listo para leer ([0, limit))
+    private void fill(int byteLimit, int charLimit) throws IOException {
+        if (complete) {
+            return;
+        }
+        chars.position(chars.limit()).limit(Math.min(chars.capacity(), charLimit));
+        try {
+            int total = 0;
+            while (total < byteLimit) {
+                if (!endOfInput) {
+                    int length = Math.min(bytes.remaining(), byteLimit - total);
+                    int read = in.read(bytes.array(), bytes.arrayOffset() + bytes.position(), length);
+                    if (read < 0) {
+                        endOfInput = true;
+                    } else {
+                        bytes.position(bytes.position() + read);
+                        total += read;
+                    }
+                }
+                bytes.flip();
+                boolean full = !decode(endOfInput, charLimit);
+                bytes.compact();
+                if (full) {
+                    // Los bytes que quedan se decodifican en el siguiente bloque
+                    return;
+                }
+                if (endOfInput) {
+                    while (decoder.flush(chars).isOverflow()) {
+                        grow(Integer.MAX_VALUE);
+                    }
+                    complete = true;
+                    close();
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        } finally {
+            chars.flip();
+        }
+    }
+
+    // Devuelve false si el buffer llegó al límite de caracteres antes de decodificar todos los bytes
+    private boolean decode(boolean endOfInput, int charLimit) {
+        // Con REPLACE el decodificador solo devuelve underflow (faltan bytes) u overflow
+        CoderResult result = decoder.decode(bytes, chars, endOfInput);
+        while (result.isOverflow()) {
+            if (!grow(charLimit)) {
+                return false;
+            }
+            result = decoder.decode(bytes, chars, endOfInput);
+        }
+        return true;
+    }
+
+    private void decoder(Charset charset) {
+        if (decoder == null || !decoder.charset().equals(charset)) {
+            decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        decoder.reset();
+    }
+
+    private boolean grow(int charLimit) {
+        if (chars.capacity() >= charLimit) {
+            return false;
+        }
+        CharBuffer grown = CharBuffer.allocate((int) Math.min(chars.capacity() * 2L, charLimit));
+        chars.flip();
+        grown.put(chars);
+        chars = grown;
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+package com.miempresa.sonar.rules;
+
+import org.sonar.api.batch.fs.InputFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tipos declarados en el código fuente del proyecto, de nombre simple a nombre calificado, para
+ * saber de qué capa es un campo {@code Usuario usuario;} aunque el nombre no diga nada de su
+ * paquete. {@link SourceFile#resolveType} resuelve los nombres como el compilador: primero el
+ * import del tipo y después, con este índice, el mismo paquete y los imports con comodín
+ * ({@link #find}). Los tipos que no son del proyecto ni están importados no se resuelven.
+ *
+ * <p>El sensor lo construye al inicio del análisis con el paquete y el tipo de cada archivo
+ * ({@link DeclaredType}): los de la caché para los archivos sin cambios y, para el resto, los de
+ * su cabecera. Cada paquete se guarda una sola vez y los tipos apuntan a él por su número, así que
+ * el índice ocupa poco más que los nombres simples aunque el proyecto tenga decenas de miles de
+ * clases. Después es inmutable y se consulta desde los hilos de trabajo.</p>
+ */
+final class TypeIndex {
+
+    private static final TypeIndex EMPTY = new TypeIndex(new String[0], Collections.emptyMap(), Collections.emptyMap());
+
+    private static final int[] NO_PACKAGES = new int[0];
+
+    private final String[] packages;
+    private final Map<String, Integer> packageIds;
+    // Nombre simple -> números de los paquetes que declaran un tipo con ese nombre
+    private final Map<String, int[]> types;
+
+    private TypeIndex(String[] packages, Map<String, Integer> packageIds, Map<String, int[]> types) {
+        this.packages = packages;
+        this.packageIds = packageIds;
+        this.types = types;
+    }
+
+    static TypeIndex empty() {
+        return EMPTY;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    boolean isEmpty() {
+        return types.isEmpty();
+    }
+
+    int typeCount() {
+        return types.size();
+    }
+
+    int packageCount() {
+        return packages.length;
+    }
+
+    /**
+     * Tipo del proyecto con ese nombre en el paquete o en alguno de los paquetes importados con
+     * comodín, o {@code null}. Depende solo del índice: el resultado de una entrada de la caché
+     * sigue siendo válido si esta búsqueda devuelve lo mismo.
+     */
+    String find(String packageName, List<String> imports, String simpleName) {
+        int[] candidates = types.getOrDefault(simpleName, NO_PACKAGES);
+        if (candidates.length == 0) {
+            return null;
+        }
+        if (contains(candidates, packageName)) {
+            return qualified(packageName, simpleName);
+        }
+        for (String imported : imports) {
+            if (imported.endsWith(".*")) {
+                String importedPackage = imported.substring(0, imported.length() - 2);
+                if (contains(candidates, importedPackage)) {
+                    return qualified(importedPackage, simpleName);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean contains(int[] candidates, String packageName) {
+        Integer id = packageIds.get(packageName);
+        if (id != null) {
+            for (int candidate : candidates) {
+                if (candidate == id) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String qualified(String packageName, String simpleName) {
+        return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    }
+
+    /** Paquete y nombre simple del tipo que declara un archivo. */
+    static final class DeclaredType {
+        private final String packageName;
+        private final String simpleName;
+
+        DeclaredType(String packageName, String simpleName) {
+            this.packageName = packageName;
+            this.simpleName = simpleName;
+        }
+
+        // El tipo público tiene el nombre del archivo; la cabecera puede no llegar a él si hay cientos de imports
+        static DeclaredType of(InputFile inputFile, FileHeader header) {
+            String filename = inputFile.filename();
+            return new DeclaredType(header.packageName(),
+                filename.endsWith(".java") ? filename.substring(0, filename.length() - 5) : header.typeName());
+        }
+
+        String packageName() {
+            return packageName;
+        }
+
+        String simpleName() {
+            return simpleName;
+        }
+    }
+
+    static final class Builder {
+        private final List<String> packages = new ArrayList<>();
+        private final Map<String, Integer> packageIds = new HashMap<>();
+        private final Map<String, int[]> types = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /** Añade el tipo del archivo; {@code null} si no se pudo leer. */
+        Builder add(DeclaredType declared) {
+            if (declared != null) {
+                add(declared.packageName, declared.simpleName);
+            }
+            return this;
+        }
+
+        Builder add(String packageName, String simpleName) {
+            // package-info y module-info no declaran tipos
+            if (simpleName == null || simpleName.isEmpty() || simpleName.indexOf('-') >= 0) {
+                return this;
+            }
+            Integer id = packageIds.get(packageName);
+            if (id == null) {
+                id = packages.size();
+                packages.add(packageName);
+                packageIds.put(packageName, id);
+            }
+            int[] previous = types.getOrDefault(simpleName, NO_PACKAGES);
+            for (int candidate : previous) {
+                if (candidate == id) {
+                    return this;
+                }
+            }
+            int[] candidates = new int[previous.length + 1];
+            System.arraycopy(previous, 0, candidates, 0, previous.length);
+            candidates[previous.length] = id;
+            types.put(simpleName, candidates);
+            return this;
+        }
+
+        TypeIndex build() {
+            return new TypeIndex(packages.toArray(new String[0]), packageIds, types);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Ida y vuelta por la caché del scanner: un análisis guarda los hallazgos de cada archivo y el
+ * siguiente los repite sin ejecutar las reglas si el archivo no cambió, si cambió pero tiene el
+ * mismo contenido, y solo mientras los tipos que resolvió sigan en el mismo paquete.
+ */
+public class AnalysisCacheTest extends TestCase {
+
+    private static final String CONTROLLER = "src/main/java/com/app/exposition/UsuarioController.java";
+    private static final String SERVICE = "src/main/java/com/app/service/UsuarioService.java";
+    private static final String DOMAIN_TYPE = "src/main/java/com/app/domain/Usuario.java";
+    private static final String PERSISTENCE = "NoPersistenceInController ";
+
+    private static final String CONTROLLER_SOURCE = "package com.app.exposition;\n"
+        + "\n"
+        + "import com.app.domain.*;\n"
+        + "import com.app.service.UsuarioService;\n"
+        + "\n"
+        + "@RestController\n"
+        + "public class UsuarioController {\n"
+        + "    private UsuarioService servicio;\n"
+        + "    private Usuario ultimo;\n"
+        + "\n"
+        + "    public void guardar() {\n"
+        + "        em.persist(ultimo);\n"
+        + "    }\n"
+        + "}\n";
+
+    private static final String SERVICE_SOURCE = "package com.app.service;\n"
+        + "\n"
+        + "import com.app.exposition.UsuarioController;\n"
+        + "\n"
+        + "@Service\n"
+        + "public class UsuarioService {\n"
+        + "    private UsuarioController controller;\n"
+        + "}\n";
+
+    private static final String DOMAIN_SOURCE = "package com.app.domain;\n\npublic class Usuario {\n}\n";
+
+    private Path baseDir;
+    private final MapCache cache = new MapCache();
+
+    @Override
+    protected void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("arq-rules-cache");
+    }
+
+    @Override
+    protected void tearDown() {
+        TestFiles.delete(baseDir);
+    }
+
+    public void testUnchangedFilesAreReplayedWithoutReadingThem() throws IOException {
+        List<String> first = analyze(
+            file(CONTROLLER, CONTROLLER_SOURCE, InputFile.Status.ADDED),
+            file(SERVICE, SERVICE_SOURCE, InputFile.Status.ADDED),
+            file(DOMAIN_TYPE, DOMAIN_SOURCE, InputFile.Status.ADDED));
+        assertEquals(3, cache.written.size());
+        assertTrue(first.toString(), first.stream().anyMatch(issue -> issue.startsWith("NoLayerDependencyCycles")));
+        assertTrue(first.toString(), first.stream().anyMatch(issue -> issue.contains(" 9:12-9:19 ")));
+        assertTrue(first.toString(), first.stream().anyMatch(issue -> issue.startsWith(PERSISTENCE)));
+
+        // El contenido de un archivo SAME no se lee: sin la llamada a persist sigue saliendo su issue
+        cache.nextAnalysis();
+        List<String> second = analyze(
+            file(CONTROLLER, CONTROLLER_SOURCE.replace("em.persist(ultimo);", "servicio.guardar(ultimo);"),
+                InputFile.Status.SAME),
+            file(SERVICE, SERVICE_SOURCE, InputFile.Status.SAME),
+            file(DOMAIN_TYPE, DOMAIN_SOURCE, InputFile.Status.SAME));
+
+        assertEquals(first, second);
+        assertEquals(cache.previous.keySet(), cache.copied);
+        assertTrue(cache.written.isEmpty());
+    }
+
+    public void testChangedFileWithTheSameContentIsReplayed() throws IOException {
+        List<String> first = analyze(
+            file(CONTROLLER, CONTROLLER_SOURCE, InputFile.Status.ADDED),
+            file(SERVICE, SERVICE_SOURCE, InputFile.Status.ADDED),
+            file(DOMAIN_TYPE, DOMAIN_SOURCE, InputFile.Status.ADDED));
+
+        cache.nextAnalysis();
+        List<String> second = analyze(
+            file(CONTROLLER, CONTROLLER_SOURCE, InputFile.Status.CHANGED),
+            file(SERVICE, SERVICE_SOURCE, InputFile.Status.CHANGED),
+            file(DOMAIN_TYPE, DOMAIN_SOURCE, InputFile.Status.SAME));
+
+        assertEquals(first, second);
+        assertEquals(cache.previous.keySet(), cache.copied);
+        assertTrue(cache.written.isEmpty());
+    }
+
+    public void testChangedContentIsAnalyzedAgain() throws IOException {
+        List<String> first = analyze(
+            file(CONTROLLER, CONTROLLER_SOURCE, InputFile.Status.ADDED),
+            file(DOMAIN_TYPE, DOMAIN_SOURCE, InputFile.Status.ADDED));
+        assertTrue(first.toString(), first.stream().anyMatch(issue -> issue.startsWith(PERSISTENCE)));
+
+        cache.nextAnalysis();
+        List<String> second = analyze(
+            file(CONTROLLER, CONTROLLER_SOURCE.replace("em.persist(ultimo);", "servicio.guardar(ultimo);"),
+                InputFile.Status.CHANGED),
+            file(DOMAIN_TYPE, DOMAIN_SOURCE, InputFile.Status.SAME));
+
+        assertFalse(second.toString(), second.stream().anyMatch(issue -> issue.startsWith(PERSISTENCE)));
+        assertEquals(1, cache.copied.size());
+        assertEquals(1, cache.written.size());
+        assertTrue(cache.written.iterator().next().endsWith(CONTROLLER));
+    }
+
+    public void testUnchangedFileIsAnalyzedAgainWhenAResolvedTypeMoves() throws IOException {
+        List<String> first = analyze(
+            file(CONTROLLER, CONTROLLER_SOURCE, InputFile.Status.ADDED),
+            file(SERVICE, SERVICE_SOURCE, InputFile.Status.ADDED),
+            file(DOMAIN_TYPE, DOMAIN_SOURCE, InputFile.Status.ADDED));
+        assertTrue(first.toString(), first.stream().anyMatch(issue -> issue.contains(" 9:12-9:19 ")));
+
+        // Usuario pasa al paquete del controller: el mismo nombre ya no es un tipo de dominio
+        cache.nextAnalysis();
+        List<String> second = analyze(
+            file(CONTROLLER, CONTROLLER_SOURCE, InputFile.Status.SAME),
+            file(SERVICE, SERVICE_SOURCE, InputFile.Status.SAME),
+            file("src/main/java/com/app/exposition/Usuario.java",
+                "package com.app.exposition;\n\npublic class Usuario {\n}\n", InputFile.Status.ADDED));
+
+        assertFalse(second.toString(), second.stream().anyMatch(issue -> issue.contains(" 9:12-9:19 ")));
+        assertTrue(cache.written.stream().anyMatch(key -> key.endsWith(CONTROLLER)));
+        assertTrue(cache.copied.stream().anyMatch(key -> key.endsWith(SERVICE)));
+        assertFalse(cache.copied.stream().anyMatch(key -> key.endsWith(CONTROLLER)));
+    }
+
+    public void testDisabledWithoutTheScannerCache() throws IOException {
+        SensorContextTester context = context();
+        context.setCacheEnabled(false);
+        context.fileSystem().add(file(CONTROLLER, CONTROLLER_SOURCE, InputFile.Status.SAME));
+
+        new LayeredArchitectureSensor().execute(context);
+
+        assertFalse(context.allIssues().isEmpty());
+        assertTrue(cache.written.isEmpty());
+        assertTrue(cache.copied.isEmpty());
+    }
+
+    private List<String> analyze(InputFile... files) throws IOException {
+        SensorContextTester context = context();
+        for (InputFile inputFile : files) {
+            context.fileSystem().add(inputFile);
+        }
+
+        new LayeredArchitectureSensor().execute(context);
+
+        List<String> issues = new ArrayList<>();
+        for (Issue issue : context.allIssues()) {
+            TextRange range = issue.primaryLocation().textRange();
+            issues.add(issue.ruleKey().rule() + " " + issue.primaryLocation().inputComponent() + " "
+                + (range == null ? "-" : range.start().line() + ":" + range.start().lineOffset() + "-"
+                + range.end().line() + ":" + range.end().lineOffset()) + " " + issue.primaryLocation().message());
+        }
+        Collections.sort(issues);
+        return issues;
+    }
+
+    private SensorContextTester context() throws IOException {
+        SensorContextTester context = SensorContextTester.create(baseDir);
+        context.fileSystem().setWorkDir(Files.createDirectories(baseDir.resolve("work")));
+        context.setCacheEnabled(true);
+        context.setPreviousCache(cache);
+        context.setNextCache(cache);
+        return context;
+    }
+
+    private InputFile file(String path, String content, InputFile.Status status) {
+        return TestInputFileBuilder.create("mod", path)
+            .setModuleBaseDir(baseDir)
+            .setLanguage("java")
+            .setCharset(StandardCharsets.UTF_8)
+            .setStatus(status)
+            .setContents(content)
+            .build();
+    }
+
+    /** Caché en memoria: lo escrito en un análisis es lo que lee el siguiente. */
+    private static final class MapCache implements ReadCache, WriteCache {
+        private Map<String, byte[]> previous = new HashMap<>();
+        private Map<String, byte[]> next = new HashMap<>();
+        private final Set<String> written = new TreeSet<>();
+        private final Set<String> copied = new TreeSet<>();
+
+        void nextAnalysis() {
+            previous = next;
+            next = new HashMap<>();
+            written.clear();
+            copied.clear();
+        }
+
+        @Override
+        public InputStream read(String key) {
+            return new ByteArrayInputStream(previous.get(key));
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return previous.containsKey(key);
+        }
+
+        @Override
+        public void write(String key, InputStream data) {
+            try {
+                write(key, data.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(String key, byte[] data) {
+            put(key, data);
+            written.add(key);
+        }
+
+        @Override
+        public void copyFromPrevious(String key) {
+            put(key, previous.get(key));
+            copied.add(key);
+        }
+
+        // Como la caché del scanner: cada clave se escribe una sola vez por análisis
+        private void put(String key, byte[] data) {
+            if (next.containsKey(key)) {
+                throw new IllegalArgumentException("Clave escrita dos veces: " + key);
+            }
+            next.put(key, data);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * {@link ClassFileReader} sobre clases compiladas en la prueba con el compilador del JDK: tipos
+ * referenciados, anotaciones de la clase y atributo {@code SourceFile}.
+ */
+public class ClassFileReaderTest extends TestCase {
+
+    private static final String[][] SOURCES = {
+        {"com/app/domain/Usuario.java", "package com.app.domain;\npublic class Usuario {}\n"},
+        {"com/app/domain/Cliente.java", "package com.app.domain;\npublic class Cliente {}\n"},
+        {"com/app/repository/PedidoRepository.java",
+            "package com.app.repository;\npublic interface PedidoRepository {}\n"},
+        {"com/app/exposition/Estado.java", "package com.app.exposition;\npublic enum Estado { ACTIVO }\n"},
+        {"com/app/exposition/Marca.java",
+            "package com.app.exposition;\n"
+                + "import java.lang.annotation.*;\n"
+                + "@Retention(RetentionPolicy.RUNTIME)\n"
+                + "public @interface Marca {\n"
+                + "    Estado estado() default Estado.ACTIVO;\n"
+                + "    Class<?>[] tipos() default {};\n"
+                + "    Deprecated anidada() default @Deprecated;\n"
+                + "    long limite() default 0L;\n"
+                + "    String[] nombres() default {};\n"
+                + "}\n"},
+        {"com/app/exposition/Pedido.java",
+            "package com.app.exposition;\n"
+                + "\n"
+                + "import com.app.domain.Cliente;\n"
+                + "import com.app.domain.Usuario;\n"
+                + "import com.app.repository.PedidoRepository;\n"
+                + "\n"
+                + "@Marca(estado = Estado.ACTIVO, tipos = {java.time.Duration.class, int[].class},\n"
+                + "    anidada = @Deprecated, limite = 9_000_000_000L, nombres = {\"a\", \"b\"})\n"
+                + "public class Pedido {\n"
+                + "    static final long MAXIMO = 1_234_567_890_123L;\n"
+                + "    static final double FACTOR = 2.5e300;\n"
+                + "    private Usuario[][] usuarios;\n"
+                + "\n"
+                + "    double calcular(long base) {\n"
+                + "        return base * 3_000_000_000L + 1.0e200;\n"
+                + "    }\n"
+                + "\n"
+                + "    Object clientes() {\n"
+                + "        return new Cliente[0];\n"
+                + "    }\n"
+                + "\n"
+                + "    public static class Linea {\n"
+                + "        private PedidoRepository repositorio;\n"
+                + "        java.math.BigDecimal total() { return null; }\n"
+                + "    }\n"
+                + "}\n"},
+    };
+
+    private Path sources;
+    private Path classes;
+
+    @Override
+    protected void setUp() throws IOException {
+        sources = Files.createTempDirectory("arq-rules-sources");
+        classes = Files.createTempDirectory("arq-rules-classes");
+    }
+
+    @Override
+    protected void tearDown() {
+        TestFiles.delete(sources);
+        TestFiles.delete(classes);
+    }
+
+    // Las constantes long y double ocupan dos entradas del constant pool: si el lector no las
+    // saltara bien, todo lo que va después quedaría desalineado
+    public void testReadsReferencesAnnotationsAndSourceFile() throws IOException {
+        compile();
+
+        ClassFileReader.ClassFacts pedido = read("com/app/exposition/Pedido.class");
+
+        assertEquals("com.app.exposition.Pedido", pedido.name());
+        assertEquals("com.app.exposition", pedido.packageName());
+        assertEquals("Pedido", pedido.simpleName());
+        assertEquals("Pedido.java", pedido.sourceFile());
+        assertEquals(new HashSet<>(Arrays.asList("com.app.exposition.Marca")), pedido.annotations());
+        // Campo de arreglo de dos dimensiones y arreglo creado en un método
+        assertTrue(pedido.references().contains("com.app.domain.Usuario"));
+        assertTrue(pedido.references().contains("com.app.domain.Cliente"));
+        assertTrue(pedido.references().contains("java.lang.Object"));
+        // Enumeración, clase y anotación anidada en los valores de la anotación
+        assertTrue(pedido.references().contains("com.app.exposition.Estado"));
+        assertTrue(pedido.references().contains("java.time.Duration"));
+        assertTrue(pedido.references().contains("java.lang.Deprecated"));
+        // La clase anidada aparece en el constant pool de la externa (InnerClasses)
+        assertTrue(pedido.references().contains("com.app.exposition.Pedido.Linea"));
+        // Un import sin usar no queda en el bytecode: el repositorio solo lo usa la anidada
+        assertFalse(pedido.references().contains("com.app.repository.PedidoRepository"));
+    }
+
+    public void testNestedClass() throws IOException {
+        compile();
+
+        ClassFileReader.ClassFacts linea = read("com/app/exposition/Pedido$Linea.class");
+
+        assertEquals("com.app.exposition.Pedido.Linea", linea.name());
+        assertEquals("com.app.exposition", linea.packageName());
+        assertEquals("Pedido$Linea", linea.simpleName());
+        assertEquals("Pedido.java", linea.sourceFile());
+        assertTrue(linea.annotations().isEmpty());
+        assertTrue(linea.references().contains("com.app.repository.PedidoRepository"));
+        assertTrue(linea.references().contains("java.math.BigDecimal"));
+    }
+
+    public void testWithoutDebugInformation() throws IOException {
+        compile("-g:none");
+
+        ClassFileReader.ClassFacts pedido = read("com/app/exposition/Pedido.class");
+
+        assertNull(pedido.sourceFile());
+        assertEquals("com.app.exposition.Pedido", pedido.name());
+        assertTrue(pedido.references().contains("com.app.domain.Cliente"));
+    }
+
+    public void testReusesTheReaderAcrossClasses() throws IOException {
+        compile();
+        ClassFileReader reader = new ClassFileReader();
+
+        ClassFileReader.ClassFacts pedido = read(reader, "com/app/exposition/Pedido.class");
+        ClassFileReader.ClassFacts usuario = read(reader, "com/app/domain/Usuario.class");
+
+        assertEquals("com.app.exposition.Pedido", pedido.name());
+        assertEquals("com.app.domain.Usuario", usuario.name());
+        assertFalse(usuario.references().contains("com.app.domain.Cliente"));
+    }
+
+    public void testRejectsFilesThatAreNotClasses() {
+        try {
+            byte[] text = "no es una clase".getBytes(StandardCharsets.UTF_8);
+            new ClassFileReader().read(new ByteArrayInputStream(text));
+            fail();
+        } catch (IOException e) {
+            // esperado
+        }
+    }
+
+    public void testRejectsTruncatedClasses() throws IOException {
+        compile();
+        byte[] bytes = Files.readAllBytes(classes.resolve("com/app/exposition/Pedido.class"));
+
+        try {
+            new ClassFileReader().read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 8)));
+            fail();
+        } catch (IOException | RuntimeException e) {
+            // esperado: el último atributo se sale del archivo
+        }
+    }
+
+    private void compile(String... options) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("las pruebas necesitan un JDK", compiler);
+        List<String> arguments = new ArrayList<>(Arrays.asList(options));
+        arguments.add("-d");
+        arguments.add(classes.toString());
+        for (String[] source : SOURCES) {
+            Path file = sources.resolve(source[0]);
+            Files.createDirectories(file.getParent());
+            Files.write(file, source[1].getBytes(StandardCharsets.UTF_8));
+            arguments.add(file.toString());
+        }
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        int result = compiler.run(null, null, errors, arguments.toArray(new String[0]));
+        assertEquals(errors.toString(), 0, result);
+    }
+
+    private ClassFileReader.ClassFacts read(String path) throws IOException {
+        return read(new ClassFileReader(), path);
+    }
+
+    private ClassFileReader.ClassFacts read(ClassFileReader reader, String path) throws IOException {
+        try (InputStream in = Files.newInputStream(classes.resolve(path))) {
+            return reader.read(in);
+        }
+    }
+}
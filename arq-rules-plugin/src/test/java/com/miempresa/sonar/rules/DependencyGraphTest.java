@@ -0,0 +1,138 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DependencyGraphTest extends TestCase {
+
+    private final DependencyGraph graph = new DependencyGraph(new LayerTable());
+
+    public void testReportsATwoPackageCycleAcrossLayers() {
+        add("com.app.exposition", "UsuarioController", "com.app.service.UsuarioService");
+        add("com.app.service", "UsuarioService", "java.util.List", "com.app.exposition.UsuarioController");
+
+        List<DependencyGraph.CycleImport> cycles = graph.crossLayerCycles();
+
+        assertEquals(Arrays.asList("UsuarioController.java:3 com.app.service.UsuarioService",
+            "UsuarioService.java:4 com.app.exposition.UsuarioController"), describe(cycles));
+        DependencyGraph.Cycle cycle = cycles.get(0).cycle();
+        assertSame(cycle, cycles.get(1).cycle());
+        assertEquals(Arrays.asList("com.app.exposition", "com.app.service"), cycle.packages());
+        assertEquals(Arrays.asList(Layer.EXPOSITION, Layer.SERVICE), cycle.layers());
+        assertEquals(2, cycle.files());
+    }
+
+    public void testIgnoresCyclesWithinOneLayer() {
+        add("com.app.service.pedidos", "PedidoService", "com.app.service.usuarios.UsuarioService");
+        add("com.app.service.usuarios", "UsuarioService", "com.app.service.pedidos.PedidoService");
+
+        assertTrue(graph.crossLayerCycles().isEmpty());
+    }
+
+    public void testReportsOnlyTheImportsThatCrossLayersInsideTheCycle() {
+        add("com.app.exposition", "UsuarioController", "com.app.service.usuarios.UsuarioService");
+        add("com.app.service.usuarios", "UsuarioService", "com.app.service.pedidos.PedidoService");
+        add("com.app.service.pedidos", "PedidoService", "com.app.exposition.UsuarioController");
+
+        List<DependencyGraph.CycleImport> cycles = graph.crossLayerCycles();
+
+        assertEquals(Arrays.asList("UsuarioController.java:3 com.app.service.usuarios.UsuarioService",
+            "PedidoService.java:3 com.app.exposition.UsuarioController"), describe(cycles));
+        assertEquals(3, cycles.get(0).cycle().packages().size());
+    }
+
+    public void testSelfImportIsNotACycle() {
+        add("com.app.exposition", "UsuarioController", "com.app.exposition.UsuarioController");
+        add("com.app.exposition", "PedidoController", "com.app.exposition.UsuarioController",
+            "com.app.service.UsuarioService");
+        add("com.app.service", "UsuarioService", "com.app.service.UsuarioService");
+
+        assertTrue(graph.crossLayerCycles().isEmpty());
+    }
+
+    public void testWildcardAndStaticImportsResolveToTheLongestProjectPackage() {
+        add("com.app.domain", "Base");
+        add("com.app.domain.model", "Usuario", "com.app.exposition.Vistas.Resumen");
+        add("com.app.exposition", "Vistas", "com.app.domain.model.*");
+        // com.app.domain.modelo no es del proyecto: el paquete más largo es com.app.domain, fuera del ciclo
+        add("com.app.exposition", "Listas", "com.app.domain.modelo.Lista");
+        add("com.app.exposition", "Formatos", "com.app.domain.model.Usuario.crear");
+
+        List<DependencyGraph.CycleImport> cycles = graph.crossLayerCycles();
+
+        // El tipo anidado y el import estático llevan a su paquete, no al más corto
+        assertEquals(Arrays.asList("Usuario.java:3 com.app.exposition.Vistas.Resumen",
+            "Vistas.java:3 com.app.domain.model.*", "Formatos.java:3 com.app.domain.model.Usuario.crear"),
+            describe(cycles));
+        assertEquals(Arrays.asList("com.app.domain.model", "com.app.exposition"), cycles.get(0).cycle().packages());
+        // Listas no cierra el ciclo, pero su paquete es parte de él
+        assertEquals(4, cycles.get(0).cycle().files());
+    }
+
+    public void testImportsOutsideTheProjectAreIgnored() {
+        add("com.app.exposition", "UsuarioController", "org.springframework.web.bind.annotation.*",
+            "com.app.exposition", "com");
+        add("com.app.service", "UsuarioService", "com.app.exposition.UsuarioController", "java.util.*");
+
+        assertTrue(graph.crossLayerCycles().isEmpty());
+    }
+
+    // Una versión recursiva de Tarjan necesitaría un marco de pila por paquete de la cadena
+    public void testDeepChainDoesNotOverflowTheStack() {
+        int length = 200_000;
+        InputFile inputFile = TestInputFileBuilder.create("mod", "Paso.java").build();
+        int[] line = {3};
+        graph.add(inputFile, "com.app.exposition", new String[] {"com.app.service.p1.Paso"}, line);
+        for (int i = 1; i < length; i++) {
+            String next = i + 1 < length ? "com.app.service.p" + (i + 1) + ".Paso" : "com.app.exposition.Inicio";
+            graph.add(inputFile, "com.app.service.p" + i, new String[] {next}, line);
+        }
+
+        List<DependencyGraph.CycleImport> cycles = graph.crossLayerCycles();
+
+        assertEquals(2, cycles.size());
+        assertEquals(length, cycles.get(0).cycle().packages().size());
+        assertEquals(length, cycles.get(0).cycle().files());
+    }
+
+    public void testStronglyConnectedComponentsOfALongPath() {
+        int nodes = 1_000_000;
+        int[] offsets = new int[nodes + 1];
+        int[] targets = new int[nodes - 1];
+        for (int node = 0; node < nodes - 1; node++) {
+            targets[node] = node + 1;
+            offsets[node + 1] = node + 1;
+        }
+        offsets[nodes] = nodes - 1;
+        int[] component = new int[nodes];
+
+        assertEquals(nodes, DependencyGraph.stronglyConnectedComponents(nodes, offsets, targets, component));
+        // Orden topológico inverso: el final del camino es la primera componente
+        assertEquals(0, component[nodes - 1]);
+        assertEquals(nodes - 1, component[0]);
+    }
+
+    // Archivo del paquete con un import por línea a partir de la 3
+    private void add(String packageName, String type, String... imports) {
+        InputFile inputFile = TestInputFileBuilder.create("mod", packageName.replace('.', '/') + "/" + type + ".java")
+            .build();
+        int[] lines = new int[imports.length];
+        for (int i = 0; i < imports.length; i++) {
+            lines[i] = 3 + i;
+        }
+        graph.add(inputFile, packageName, imports, lines);
+    }
+
+    private static List<String> describe(List<DependencyGraph.CycleImport> cycles) {
+        List<String> described = new ArrayList<>();
+        for (DependencyGraph.CycleImport cycle : cycles) {
+            described.add(cycle.inputFile().filename() + ":" + cycle.line() + " " + cycle.imported());
+        }
+        return described;
+    }
+}
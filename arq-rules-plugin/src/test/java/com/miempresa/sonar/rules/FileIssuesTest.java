@@ -0,0 +1,204 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class FileIssuesTest extends TestCase {
+
+    private static final RuleKey RULE = RuleKey.of("arq-rules-plugin", "NoDomainAccessFromExposition");
+    private static final RuleKey OTHER_RULE = RuleKey.of("arq-rules-plugin", "NoRepositoryAccessFromExposition");
+    private static final String LINE = "usuario.persist(x);\n";
+    private static final int LINES = 300;
+
+    private final String content = LINE.repeat(LINES);
+    private final LineIndex lines = LineIndex.of(content);
+    private final InputFile inputFile = TestInputFileBuilder.create("mod", "src/main/java/Controller.java")
+        .setContents(content)
+        .build();
+    private final FileIssues issues = new FileIssues(inputFile);
+    private int built;
+
+    public void testTypedIssuesAreReportedOncePerRuleLineAndType() {
+        addTyped(RULE, 3, "com.app.domain.Usuario");
+        addTyped(RULE, 3, "com.app.domain.Usuario");
+        addTyped(RULE, 3, "com.app.domain.Cliente");
+        addTyped(RULE, 4, "com.app.domain.Usuario");
+        addTyped(OTHER_RULE, 3, "com.app.domain.Usuario");
+        issues.addIssue(RULE, "com.app.domain.Usuario", this::message);
+        issues.addIssue(RULE, "com.app.domain.Usuario", this::message);
+
+        assertEquals(5, issues.issueCount());
+        // Los repetidos no construyen su mensaje
+        issues.limit(FileIssues.Limits.NONE);
+        assertEquals(5, built);
+    }
+
+    public void testPerRuleLimitKeepsTheFirstIssuesOfTheFile() {
+        // Las reglas encuentran los issues en cualquier orden: al leer por bloques, de atrás hacia adelante
+        for (int line = 5; line >= 1; line--) {
+            addTyped(RULE, line, "T");
+        }
+        addTyped(OTHER_RULE, 9, "T");
+        addTyped(OTHER_RULE, 8, "T");
+
+        List<Issue> saved = limitAndSave(new FileIssues.Limits(3, 0));
+
+        assertEquals(List.of("NoDomainAccessFromExposition 1", "NoDomainAccessFromExposition 2",
+            "NoDomainAccessFromExposition 3", "NoDomainAccessFromExposition 4 +1",
+            "NoRepositoryAccessFromExposition 8", "NoRepositoryAccessFromExposition 9"), describe(saved));
+        String summary = summaries(saved).get(0);
+        assertTrue(summary, summary.startsWith("Hay 2 issues más de esta regla"));
+        assertTrue(summary, summary.contains("límites: 3 por regla, sin límite por archivo"));
+        assertTrue(summary, summary.endsWith("marcan el resto."));
+    }
+
+    public void testPerFileLimitCountsEveryRule() {
+        for (int line = 1; line <= 6; line++) {
+            addTyped(line % 2 == 1 ? RULE : OTHER_RULE, line, "T");
+        }
+
+        List<Issue> saved = limitAndSave(new FileIssues.Limits(0, 4));
+
+        assertEquals(List.of("NoDomainAccessFromExposition 1", "NoDomainAccessFromExposition 3",
+            "NoDomainAccessFromExposition 5 +0", "NoRepositoryAccessFromExposition 2",
+            "NoRepositoryAccessFromExposition 4", "NoRepositoryAccessFromExposition 6 +0"), describe(saved));
+        for (String summary : summaries(saved)) {
+            assertTrue(summary, summary.contains("límites: sin límite por regla, 4 por archivo"));
+        }
+    }
+
+    public void testWithinTheLimitsNothingIsSummarized() {
+        for (int line = 1; line <= 3; line++) {
+            addTyped(RULE, line, "T");
+        }
+
+        List<Issue> saved = limitAndSave(new FileIssues.Limits(3, 3));
+
+        assertEquals(List.of("NoDomainAccessFromExposition 1", "NoDomainAccessFromExposition 2",
+            "NoDomainAccessFromExposition 3"), describe(saved));
+        assertEquals(3, built);
+    }
+
+    public void testSummaryKeepsAtMostOneHundredSecondaryLocations() {
+        for (int line = 1; line <= 250; line++) {
+            addTyped(RULE, line, "T");
+        }
+
+        List<Issue> saved = limitAndSave(new FileIssues.Limits(1, 0));
+
+        assertEquals(2, saved.size());
+        Issue summary = saved.get(0).flows().isEmpty() ? saved.get(1) : saved.get(0);
+        assertEquals(2, summary.primaryLocation().textRange().start().line());
+        assertEquals(FileIssues.MAX_SECONDARY_LOCATIONS, summary.flows().size());
+        // Las secundarias son las siguientes en el archivo, en orden
+        assertEquals(3, summary.flows().get(0).locations().get(0).textRange().start().line());
+        assertEquals(102, summary.flows().get(99).locations().get(0).textRange().start().line());
+        String message = summary.primaryLocation().message();
+        assertTrue(message, message.startsWith("Hay 249 issues más de esta regla"));
+        assertTrue(message, message.endsWith("marcan los 100 siguientes."));
+    }
+
+    public void testOwnRangeFiltersIssuesOfTheNeighbourChunk() {
+        // Parte propia del bloque: de la línea 3 a la 5 inclusive
+        issues.ownRange(2 * LINE.length(), 5 * LINE.length());
+
+        addTyped(RULE, 2, "T");
+        addTyped(RULE, 3, "T");
+        issues.addIssue(RULE, lines, 5 * LINE.length() - 1, 5 * LINE.length(), "último carácter propio");
+        issues.addIssue(OTHER_RULE, lines, 5 * LINE.length(), 5 * LINE.length() + 7, "primero del vecino");
+        addTyped(RULE, 6, "T");
+        // Los issues sin posición no dependen del bloque
+        issues.addIssue(OTHER_RULE, 40, "por línea");
+        issues.addIssue(OTHER_RULE, "sobre el archivo");
+
+        List<Issue> saved = limitAndSave(FileIssues.Limits.NONE);
+
+        assertEquals(List.of("NoDomainAccessFromExposition 3", "NoDomainAccessFromExposition 5",
+            "NoRepositoryAccessFromExposition 0", "NoRepositoryAccessFromExposition 40"), describe(saved));
+    }
+
+    public void testIssueOutsideTheOwnRangeDoesNotHideTheNeighboursIssue() {
+        issues.ownRange(0, LINE.length());
+        addTyped(RULE, 2, "T");
+
+        // El bloque vecino reporta la línea 2 como suya
+        issues.ownRange(LINE.length(), 2 * LINE.length());
+        addTyped(RULE, 2, "T");
+
+        assertEquals(1, issues.issueCount());
+    }
+
+    // Las reglas copian el texto que citan en el mensaje solo si el archivo se lee por bloques
+    public void testReadsInChunksOnlyWithAnOwnRange() {
+        assertFalse(issues.readsInChunks());
+        issues.ownRange(0, LINE.length());
+        assertTrue(issues.readsInChunks());
+        issues.ownRange(0, Integer.MAX_VALUE);
+        assertFalse(issues.readsInChunks());
+    }
+
+    public void testMessagesOfDroppedIssuesAreNotBuilt() {
+        for (int line = 1; line <= 50; line++) {
+            addTyped(RULE, line, "T");
+            addTyped(RULE, line, "T");
+        }
+
+        issues.limit(new FileIssues.Limits(2, 0));
+        assertEquals(2, built);
+
+        SensorContextTester context = SensorContextTester.create(Paths.get("."));
+        issues.saveTo(context);
+        assertEquals(2, built);
+        assertEquals(3, context.allIssues().size());
+    }
+
+    private void addTyped(RuleKey ruleKey, int line, String type) {
+        int start = (line - 1) * LINE.length() + "usuario.".length();
+        issues.addIssue(ruleKey, lines, start, start + "persist".length(), type, this::message);
+    }
+
+    private String message() {
+        built++;
+        return "mensaje " + built;
+    }
+
+    private List<Issue> limitAndSave(FileIssues.Limits limits) {
+        issues.limit(limits);
+        SensorContextTester context = SensorContextTester.create(Paths.get("."));
+        issues.saveTo(context);
+        return new ArrayList<>(context.allIssues());
+    }
+
+    // Regla y línea de cada issue, y el número de ubicaciones secundarias de los resúmenes, en orden
+    private static List<String> describe(List<Issue> saved) {
+        List<String> described = new ArrayList<>();
+        for (Issue issue : saved) {
+            int line = issue.primaryLocation().textRange() == null
+                ? 0
+                : issue.primaryLocation().textRange().start().line();
+            boolean summary = issue.primaryLocation().message().startsWith("Hay ");
+            described.add(issue.ruleKey().rule() + " " + line + (summary ? " +" + issue.flows().size() : ""));
+        }
+        Collections.sort(described);
+        return described;
+    }
+
+    private static List<String> summaries(List<Issue> saved) {
+        List<String> messages = new ArrayList<>();
+        for (Issue issue : saved) {
+            if (issue.primaryLocation().message().startsWith("Hay ")) {
+                messages.add(issue.primaryLocation().message());
+            }
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,145 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tokens y líneas de {@link JavaLexer} en los casos que no son código común: text blocks,
+ * literales de carácter, comentarios sin cerrar, los tres tipos de salto de línea y un archivo
+ * que sigue en otro bloque desde {@link JavaLexer#cut}/{@link JavaLexer#stateAt}.
+ */
+public class JavaLexerTest extends TestCase {
+
+    private static final String SOURCE = "package com.app.exposition;\n"
+        + "\n"
+        + "import com.app.domain.Usuario;\n"
+        + "\n"
+        + "/* Comentario\n"
+        + "   de varias líneas */\n"
+        + "@RestController\n"
+        + "public class UsuarioController {\n"
+        + "    private static final String SQL = \"\"\"\n"
+        + "        select \"id\" \\\n"
+        + "        from usuario\n"
+        + "        \"\"\";\n"
+        + "    // char ' y \" sueltos\n"
+        + "    private char c = '\\'';\n"
+        + "    private String s = \"a\\\\\";\n"
+        + "    private Usuario ultimo;\n"
+        + "}\n";
+
+    public void testTextBlockIsOneTokenAndKeepsCountingLines() {
+        JavaTokens tokens = JavaTokens.of(SOURCE);
+
+        int block = find(tokens, "\"\"\"");
+        assertEquals(JavaTokens.STRING, tokens.kind(block));
+        assertEquals(9, tokens.line(block));
+        assertTrue(tokens.text(block).endsWith("usuario\n        \"\"\""));
+        assertEquals(16, tokens.line(find(tokens, "ultimo")));
+    }
+
+    public void testCharLiterals() {
+        JavaTokens tokens = JavaTokens.of("char a = '\"'; char b = '\\''; char c = '\\\\'; String d = \"x\";");
+
+        assertEquals(JavaTokens.STRING, tokens.kind(find(tokens, "'\"'")));
+        assertEquals(JavaTokens.STRING, tokens.kind(find(tokens, "'\\''")));
+        assertEquals(JavaTokens.STRING, tokens.kind(find(tokens, "'\\\\'")));
+        assertEquals(JavaTokens.STRING, tokens.kind(find(tokens, "\"x\"")));
+        assertEquals(JavaTokens.IDENTIFIER, tokens.kind(find(tokens, "d")));
+    }
+
+    public void testUnterminatedCommentAndStringDoNotThrow() {
+        JavaTokens comment = JavaTokens.of("class A {\n/* sin cerrar\nclass B {}\n");
+        int last = comment.size() - 1;
+        assertEquals(JavaTokens.COMMENT, comment.kind(last));
+        assertEquals(2, comment.line(last));
+        assertEquals(comment.text().length(), comment.end(last));
+
+        // Un literal sin cerrar termina en el salto de línea, también con \r
+        for (String lineBreak : new String[] {"\n", "\r\n", "\r"}) {
+            JavaTokens string = JavaTokens.of("String s = \"sin cerrar;" + lineBreak + "int x;");
+            assertEquals(JavaTokens.STRING, string.kind(find(string, "\"sin cerrar;")));
+            assertEquals(2, string.line(find(string, "x")));
+        }
+    }
+
+    public void testCountsLinesLikeLineIndexWithEveryLineBreak() {
+        for (String lineBreak : new String[] {"\r\n", "\r"}) {
+            String source = SOURCE.replace("\n", lineBreak);
+            JavaTokens tokens = JavaTokens.of(source);
+            LineIndex lines = LineIndex.of(source);
+
+            assertEquals(kindsAndLines(JavaTokens.of(SOURCE)), kindsAndLines(tokens));
+            for (int token = 0; token < tokens.size(); token++) {
+                assertEquals(tokens.text(token), lines.line(tokens.start(token)), tokens.line(token));
+            }
+        }
+    }
+
+    public void testResumesFromEveryCut() {
+        for (String lineBreak : new String[] {"\n", "\r\n", "\r"}) {
+            String source = SOURCE.replace("\n", lineBreak);
+            JavaTokens whole = JavaTokens.of(source);
+            for (int target = 1; target < source.length(); target++) {
+                int cut = JavaLexer.cut(whole, JavaLexer.State.START, target);
+                JavaLexer.State state = JavaLexer.stateAt(whole, JavaLexer.State.START, cut);
+                JavaTokens resumed = JavaTokens.of(source.substring(cut), state);
+
+                String where = "corte en " + cut + " con " + lineBreak.replace("\r", "\\r").replace("\n", "\\n");
+                assertEquals(where, rest(whole, cut), describe(resumed, splits(whole, cut), cut));
+            }
+        }
+    }
+
+    private static int find(JavaTokens tokens, String text) {
+        for (int token = 0; token < tokens.size(); token++) {
+            if (tokens.text(token).startsWith(text)) {
+                return token;
+            }
+        }
+        fail("Sin token " + text);
+        return -1;
+    }
+
+    // Tipo, fin y línea de los tokens que terminan después del corte, en posiciones del archivo.
+    // Del token partido por el corte no se compara la línea: el bloque lo empieza en el corte
+    private static List<String> rest(JavaTokens tokens, int cut) {
+        List<String> rest = new ArrayList<>();
+        for (int token = 0; token < tokens.size(); token++) {
+            if (tokens.end(token) > cut) {
+                boolean split = tokens.start(token) < cut;
+                rest.add(tokens.kind(token) + " " + tokens.end(token) + (split ? "" : " " + tokens.line(token)));
+            }
+        }
+        return rest;
+    }
+
+    private static List<String> describe(JavaTokens resumed, boolean split, int cut) {
+        List<String> described = new ArrayList<>();
+        for (int token = 0; token < resumed.size(); token++) {
+            boolean partial = split && token == 0;
+            described.add(resumed.kind(token) + " " + (resumed.end(token) + cut)
+                + (partial ? "" : " " + resumed.line(token)));
+        }
+        return described;
+    }
+
+    private static List<String> kindsAndLines(JavaTokens tokens) {
+        List<String> described = new ArrayList<>();
+        for (int token = 0; token < tokens.size(); token++) {
+            described.add(tokens.kind(token) + " " + tokens.line(token));
+        }
+        return described;
+    }
+
+    private static boolean splits(JavaTokens tokens, int cut) {
+        for (int token = 0; token < tokens.size(); token++) {
+            if (tokens.start(token) < cut && tokens.end(token) > cut) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,160 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.config.internal.MapSettings;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Carga del modelo de capas: archivo de {@code sonar.arq.layers.file} y propiedades del scanner,
+ * nombres de paquete no válidos y la caché de modelos compilados entre análisis.
+ */
+public class LayerModelTest extends TestCase {
+
+    private Path baseDir;
+
+    @Override
+    protected void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("arq-rules-layers");
+    }
+
+    @Override
+    protected void tearDown() {
+        TestFiles.delete(baseDir);
+    }
+
+    public void testWithoutSettingsIsTheDefaultModel() {
+        LayerModel model = LayerModel.load(new MapSettings().asConfig(), baseDir);
+
+        assertSame(LayerModel.defaults(), model);
+        assertTrue(model.isDefault());
+        assertFalse(model.allows(Layer.EXPOSITION, Layer.DOMAIN));
+        assertFalse(model.allows(Layer.EXPOSITION, Layer.REPOSITORY));
+        assertTrue(model.allows(Layer.EXPOSITION, Layer.SERVICE));
+        assertTrue(model.allows(Layer.DOMAIN, Layer.NONE));
+    }
+
+    public void testScannerPropertiesOverrideTheFile() throws IOException {
+        write("arquitectura.properties", "sonar.arq.layers.service.packages=servicios,casosdeuso\n"
+            + "sonar.arq.layers.exposition.forbidden=repository\n");
+        Configuration config = new MapSettings()
+            .setProperty(ArchitectureProperties.LAYERS_FILE_KEY, "arquitectura.properties")
+            .setProperty("sonar.arq.layers.service.packages", "usecase")
+            .asConfig();
+
+        LayerTable layers = new LayerTable(LayerModel.load(config, baseDir));
+
+        // Los nombres de servicio son los del scanner; las dependencias, las del archivo
+        assertEquals(Layer.SERVICE, layers.packageLayer("com.app.usecase"));
+        assertEquals(Layer.NONE, layers.packageLayer("com.app.servicios"));
+        assertEquals(Layer.NONE, layers.packageLayer("com.app.casosdeuso"));
+        assertTrue(layers.model().allows(Layer.EXPOSITION, Layer.DOMAIN));
+        assertFalse(layers.model().allows(Layer.EXPOSITION, Layer.REPOSITORY));
+        assertFalse(layers.model().isDefault());
+    }
+
+    public void testEmptyForbiddenListInTheFileAllowsEveryLayer() throws IOException {
+        write("arquitectura.properties", "sonar.arq.layers.exposition.forbidden=\n");
+        Configuration config = new MapSettings()
+            .setProperty(ArchitectureProperties.LAYERS_FILE_KEY, "arquitectura.properties")
+            .asConfig();
+
+        LayerTable layers = new LayerTable(LayerModel.load(config, baseDir));
+
+        assertFalse(layers.forbids(Layer.EXPOSITION, Layer.DOMAIN.bit() | Layer.REPOSITORY.bit(),
+            "com.app.domain.Usuario"));
+        assertFalse(layers.forbids(Layer.EXPOSITION, Layer.REPOSITORY.bit(), "com.app.dao.UsuarioDao"));
+        assertTrue(layers.forbids(Layer.SERVICE, Layer.EXPOSITION.bit(), "com.app.rest.UsuarioResource"));
+    }
+
+    public void testMissingFileFails() {
+        Configuration config = new MapSettings()
+            .setProperty(ArchitectureProperties.LAYERS_FILE_KEY, "no-existe.properties")
+            .asConfig();
+
+        try {
+            LayerModel.load(config, baseDir);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("no-existe.properties"));
+        }
+    }
+
+    public void testRejectsDottedOrSlashedPackageNames() {
+        for (String name : new String[] {"com.app.model", "model/v2", "model\\v2", "1model"}) {
+            try {
+                LayerModel.builder().packages(Layer.DOMAIN, "dominio", name);
+                fail(name);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("sonar.arq.layers.domain.packages"));
+            }
+        }
+        Configuration config = new MapSettings()
+            .setProperty("sonar.arq.layers.domain.packages", "com.app.model")
+            .asConfig();
+        try {
+            LayerModel.load(config, baseDir);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'com.app.model'"));
+        }
+    }
+
+    public void testAcceptsJavaIdentifiersAndIgnoresCaseAndBlanks() {
+        LayerModel model = LayerModel.builder().packages(Layer.DOMAIN, " Model_v2 ", "", "configuración").build();
+        LayerTable layers = new LayerTable(model);
+
+        assertEquals(Layer.DOMAIN, layers.packageLayer("com.app.model_v2"));
+        assertEquals(Layer.DOMAIN, layers.packageLayer("com.app.Configuración"));
+        assertEquals(Layer.NONE, layers.packageLayer("com.app.model"));
+    }
+
+    public void testRejectsUnknownLayersInForbidden() {
+        Configuration config = new MapSettings()
+            .setProperty("sonar.arq.layers.exposition.forbidden", "domain,vista")
+            .asConfig();
+
+        try {
+            LayerModel.load(config, baseDir);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'vista'"));
+        }
+    }
+
+    public void testReusesACompiledModelAndEvictsTheLeastRecentlyUsed() {
+        LayerModel first = load("primero");
+        assertSame(first, load("primero"));
+
+        // Usarlo antes de llenar la caché lo salva de ser el primero en salir
+        LayerModel oldest = load("relleno1");
+        for (int i = 2; i < LayerModel.MAX_COMPILED; i++) {
+            load("relleno" + i);
+        }
+        assertSame(first, load("primero"));
+        load("relleno" + LayerModel.MAX_COMPILED);
+        assertNotSame(oldest, load("relleno1"));
+        assertSame(first, load("primero"));
+
+        for (int i = 0; i < LayerModel.MAX_COMPILED; i++) {
+            load("otro" + i);
+        }
+        LayerModel again = load("primero");
+        assertNotSame(first, again);
+        assertEquals(first.toString(), again.toString());
+    }
+
+    private LayerModel load(String domainPackage) {
+        return LayerModel.load(new MapSettings()
+            .setProperty("sonar.arq.layers.domain.packages", domainPackage)
+            .asConfig(), baseDir);
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(baseDir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,63 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+public class LayerTableTest extends TestCase {
+
+    private static final int DOMAIN_OR_REPOSITORY = Layer.DOMAIN.bit() | Layer.REPOSITORY.bit();
+
+    public void testForbiddenEdgesOfTheDefaultModel() {
+        LayerTable layers = new LayerTable();
+
+        assertTrue(layers.forbids(Layer.EXPOSITION, Layer.DOMAIN.bit(), "com.app.domain.Usuario"));
+        assertTrue(layers.forbids(Layer.EXPOSITION, DOMAIN_OR_REPOSITORY, "com.app.persistence.jpa.UsuarioDao"));
+        assertFalse(layers.forbids(Layer.EXPOSITION, Layer.REPOSITORY.bit(), "com.app.domain.Usuario"));
+        assertFalse(layers.forbids(Layer.EXPOSITION, Layer.SERVICE.bit(), "com.app.service.UsuarioService"));
+        assertTrue(layers.forbids(Layer.REPOSITORY, Layer.SERVICE.bit(), "com.app.service.UsuarioService"));
+        assertFalse(layers.forbids(Layer.DOMAIN, DOMAIN_OR_REPOSITORY, "com.app.persistence.UsuarioDao"));
+        // Solo cuenta el paquete: ni el nombre de la clase ni un nombre sin paquete
+        assertFalse(layers.forbids(Layer.EXPOSITION, Layer.DOMAIN.bit(), "com.app.util.Domain"));
+        assertFalse(layers.forbids(Layer.EXPOSITION, Layer.DOMAIN.bit(), "Usuario"));
+    }
+
+    public void testEmptyForbiddenListAllowsEveryLayer() {
+        LayerTable layers = new LayerTable(LayerModel.builder().forbidden(Layer.EXPOSITION).build());
+
+        assertTrue(layers.model().allows(Layer.EXPOSITION, Layer.DOMAIN));
+        assertFalse(layers.forbids(Layer.EXPOSITION, DOMAIN_OR_REPOSITORY, "com.app.domain.Usuario"));
+        assertNull(layers.forbiddenImport(FileHeader.of("package com.app.rest;\nimport com.app.domain.Usuario;\n"),
+            Layer.EXPOSITION, DOMAIN_OR_REPOSITORY));
+        // Las demás capas mantienen sus prohibiciones
+        assertTrue(layers.forbids(Layer.SERVICE, Layer.EXPOSITION.bit(), "com.app.rest.UsuarioResource"));
+    }
+
+    public void testForbiddenImportIsTheFirstOneWithItsRange() {
+        String source = "package com.app.rest;\n\nimport java.util.List;\nimport com.app.dao.UsuarioDao;\n"
+            + "import com.app.domain.Usuario;\n";
+        FileHeader header = FileHeader.of(source);
+
+        PatternSet.Match match = new LayerTable().forbiddenImport(header, Layer.EXPOSITION, DOMAIN_OR_REPOSITORY);
+
+        assertEquals(1, match.index());
+        assertEquals("import com.app.dao.UsuarioDao;", source.substring(match.start(), match.end()));
+    }
+
+    public void testClassifiesByPackageThenPathThenDeclaration() {
+        LayerTable layers = new LayerTable();
+
+        assertEquals(Layer.SERVICE, layers.classify(file("src/main/java/com/app/rest/A.java"),
+            FileHeader.of("package com.app.service;\nclass A {}\n")).layer());
+        assertEquals(Layer.EXPOSITION, layers.classify(file("src/main/java/com/app/rest/A.java"),
+            FileHeader.of("package com.app;\nclass A {}\n")).layer());
+        assertEquals(Layer.REPOSITORY, layers.classify(file("src/main/java/com/app/A.java"),
+            FileHeader.of("package com.app;\n@Repository\npublic class A {}\n")).layer());
+        assertEquals(Layer.NONE, layers.classify(file("src/main/java/com/app/A.java"),
+            FileHeader.of("package com.app;\nclass A {}\n")).layer());
+    }
+
+    private static InputFile file(String path) {
+        return TestInputFileBuilder.create("mod", path).build();
+    }
+}
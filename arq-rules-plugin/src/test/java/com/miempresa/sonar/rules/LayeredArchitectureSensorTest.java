@@ -0,0 +1,107 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.scanner.sensor.ProjectSensor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * El sensor sobre un proyecto de dos módulos, {@code web} y {@code core}: se ejecuta una sola vez
+ * con los archivos de ambos.
+ */
+public class LayeredArchitectureSensorTest extends TestCase {
+
+    private Path baseDir;
+    private SensorContextTester context;
+
+    @Override
+    protected void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("arq-rules-modules");
+        context = SensorContextTester.create(baseDir);
+        context.fileSystem().setWorkDir(Files.createDirectories(baseDir.resolve("work")));
+    }
+
+    @Override
+    protected void tearDown() {
+        TestFiles.delete(baseDir);
+    }
+
+    public void testIsAProjectSensor() {
+        assertTrue(new LayeredArchitectureSensor() instanceof ProjectSensor);
+    }
+
+    public void testLayerMeasuresCountTheFilesOfEveryModule() {
+        add("web", "com/app/exposition/UsuarioController.java",
+            "package com.app.exposition;\n\n@RestController\npublic class UsuarioController {\n}\n");
+        add("web", "com/app/exposition/PedidoController.java",
+            "package com.app.exposition;\n\n@RestController\npublic class PedidoController {\n}\n");
+        add("core", "com/app/service/UsuarioService.java",
+            "package com.app.service;\n\n@Service\npublic class UsuarioService {\n}\n");
+        add("core", "com/app/domain/Usuario.java", "package com.app.domain;\n\npublic class Usuario {\n}\n");
+
+        new LayeredArchitectureSensor().execute(context);
+
+        assertEquals(2, measure(ArchitectureMetrics.EXPOSITION_FILES));
+        assertEquals(1, measure(ArchitectureMetrics.SERVICE_FILES));
+        assertEquals(1, measure(ArchitectureMetrics.DOMAIN_FILES));
+        assertEquals(0, measure(ArchitectureMetrics.REPOSITORY_FILES));
+    }
+
+    // El controller está en el módulo web y el servicio en core: solo un sensor de proyecto ve el ciclo
+    public void testFindsCyclesAcrossModules() {
+        add("web", "com/app/exposition/UsuarioController.java", "package com.app.exposition;\n"
+            + "\n"
+            + "import com.app.service.UsuarioService;\n"
+            + "\n"
+            + "@RestController\n"
+            + "public class UsuarioController {\n"
+            + "}\n");
+        add("core", "com/app/service/UsuarioService.java", "package com.app.service;\n"
+            + "\n"
+            + "import com.app.exposition.UsuarioController;\n"
+            + "\n"
+            + "@Service\n"
+            + "public class UsuarioService {\n"
+            + "}\n");
+
+        new LayeredArchitectureSensor().execute(context);
+
+        List<String> cycles = new ArrayList<>();
+        for (Issue issue : context.allIssues()) {
+            if (issue.ruleKey().equals(NoLayerDependencyCyclesRule.RULE_KEY)) {
+                cycles.add(issue.primaryLocation().inputComponent() + ":"
+                    + issue.primaryLocation().textRange().start().line());
+            }
+        }
+        Collections.sort(cycles);
+        assertEquals(Arrays.asList("core/src/main/java/com/app/service/UsuarioService.java:3",
+            "web/src/main/java/com/app/exposition/UsuarioController.java:3"), cycles);
+    }
+
+    private void add(String module, String path, String content) {
+        InputFile inputFile = TestInputFileBuilder.create(context.project().key(),
+                module + "/src/main/java/" + path)
+            .setModuleBaseDir(baseDir)
+            .setLanguage("java")
+            .setCharset(StandardCharsets.UTF_8)
+            .setContents(content)
+            .build();
+        context.fileSystem().add(inputFile);
+    }
+
+    private int measure(Metric<Integer> metric) {
+        return context.<Integer>measure(context.project().key(), metric.key()).value();
+    }
+}
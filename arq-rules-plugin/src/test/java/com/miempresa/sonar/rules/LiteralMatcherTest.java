@@ -0,0 +1,67 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LiteralMatcherTest extends TestCase {
+
+    public void testReportsOverlappingAndNestedLiterals() {
+        LiteralMatcher matcher = new LiteralMatcher(Arrays.asList("he", "she", "his", "hers"));
+
+        assertEquals(Arrays.asList("she 1-4", "he 2-4", "hers 2-6"),
+            scan(matcher, "ushers", Arrays.asList("he", "she", "his", "hers")));
+    }
+
+    public void testReportsRepeatedOccurrences() {
+        List<String> literals = Arrays.asList("aa", "a");
+        LiteralMatcher matcher = new LiteralMatcher(literals);
+
+        assertEquals(Arrays.asList("a 0-1", "aa 0-2", "a 1-2", "aa 1-3", "a 2-3"),
+            scan(matcher, "aaa", literals));
+    }
+
+    public void testCharactersOutsideAsciiAndOutsideTheLiterals() {
+        List<String> literals = Arrays.asList("año", "ñ");
+        LiteralMatcher matcher = new LiteralMatcher(literals);
+
+        assertEquals(Arrays.asList("ñ 3-4", "ñ 7-8", "año 6-9"), scan(matcher, "€€€ñ€€año€", literals));
+    }
+
+    public void testScansOnlyTheRange() {
+        List<String> literals = Arrays.asList("persist");
+        LiteralMatcher matcher = new LiteralMatcher(literals);
+        List<String> found = new ArrayList<>();
+        String text = "persist persist persist";
+
+        matcher.scan(text, 1, 15, (literal, start, end) -> found.add(start + "-" + end));
+
+        assertEquals(Arrays.asList("8-15"), found);
+    }
+
+    public void testListenerStopsTheScan() {
+        LiteralMatcher matcher = new LiteralMatcher(Arrays.asList("x"));
+        List<Integer> found = new ArrayList<>();
+
+        matcher.scan("x x x", (literal, start, end) -> found.add(start) && found.size() < 2);
+
+        assertEquals(Arrays.asList(0, 2), found);
+    }
+
+    public void testRejectsEmptyLiterals() {
+        try {
+            new LiteralMatcher(Arrays.asList("a", ""));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // esperado
+        }
+    }
+
+    private static List<String> scan(LiteralMatcher matcher, String text, List<String> literals) {
+        List<String> found = new ArrayList<>();
+        matcher.scan(text, (literal, start, end) -> found.add(literals.get(literal) + " " + start + "-" + end));
+        return found;
+    }
+}
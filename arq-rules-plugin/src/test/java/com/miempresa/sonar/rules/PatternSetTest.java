@@ -0,0 +1,213 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link PatternSet} debe dar el mismo resultado que el bucle {@code for (Pattern p : lista)} al que
+ * sustituye: el primer patrón de la lista que aparece, con la posición de su primera aparición.
+ */
+public class PatternSetTest extends TestCase {
+
+    private static final String[] PERSISTENCE = {
+        "import\\s+javax\\.persistence\\.EntityManager",
+        "@PersistenceContext",
+        "EntityManager\\s+\\w+",
+        "\\.createQuery\\(",
+        "\\.persist\\(",
+        "PreparedStatement",
+        "@Entity\\b",
+        "@Table\\b",
+        "(?i)select\\s+\\w+\\s+from",
+        "import\\s+[\\w.]+\\.persistencia\\.",
+        "Connection\\s+\\w+",
+        "em\\.find\\(",
+    };
+
+    public void testClassifiesEachPattern() {
+        PatternSet set = PatternSet.of(
+            "\\.createQuery\\(",
+            "PreparedStatement",
+            "@Entity\\b",
+            "import\\s+javax\\.persistence\\.Query",
+            "(?i)select",
+            "@Repository|@Service",
+            "\\w+Dao\\b",
+            "\\.\\b");
+
+        assertEquals(PatternSet.Kind.LITERAL, set.kind(0));
+        assertEquals(PatternSet.Kind.LITERAL, set.kind(1));
+        assertEquals(PatternSet.Kind.WORD, set.kind(2));
+        assertEquals(PatternSet.Kind.ANCHORED, set.kind(3));
+        assertEquals(PatternSet.Kind.REGEX, set.kind(4));
+        assertEquals(PatternSet.Kind.REGEX, set.kind(5));
+        assertEquals(PatternSet.Kind.ANCHORED, set.kind(6));
+        // \b después de un carácter que no es de palabra no es el caso simple de WORD
+        assertEquals(PatternSet.Kind.ANCHORED, set.kind(7));
+    }
+
+    public void testFirstPatternOfTheListWinsOverTheEarliestPosition() {
+        PatternSet set = PatternSet.of("\\.persist\\(", "\\.createQuery\\(");
+        String text = "em.createQuery(q); em.persist(e);";
+
+        PatternSet.Match match = set.find(text);
+
+        assertEquals(0, match.index());
+        assertEquals(text.indexOf(".persist("), match.start());
+        assertEquals(text.indexOf(".persist(") + ".persist(".length(), match.end());
+    }
+
+    public void testRegexBeforeLiteralInTheListWins() {
+        PatternSet set = PatternSet.of("(?i)SELECT\\s+\\w+", "PreparedStatement");
+        String text = "PreparedStatement ps = c.prepareStatement(\"select id from t\");";
+
+        PatternSet.Match match = set.find(text);
+
+        assertEquals(0, match.index());
+        assertEquals(text.indexOf("select"), match.start());
+    }
+
+    public void testWordPatternRequiresABoundaryAfterTheLiteral() {
+        PatternSet set = PatternSet.of("@Entity\\b");
+
+        assertFalse(set.matches("@EntityScan(basePackages = \"x\")"));
+        assertFalse(set.matches("@Entity_v2"));
+        assertTrue(set.matches("@EntityScan @Entity\nclass A {}"));
+        assertTrue(set.matches("@Entity"));
+        assertEquals("@EntityScan @Entity".indexOf("@Entity", 1), set.find("@EntityScan @Entity").start());
+    }
+
+    public void testWordBoundaryBeforeANonAsciiLetterIsTheOneOfTheRegex() {
+        // \b solo conoce letras ASCII desde el JDK 19: el resultado tiene que ser el de la expresión
+        PatternSet set = PatternSet.of("@Entity\\b", "Menú\\b");
+        Pattern entity = Pattern.compile("@Entity\\b");
+        Pattern menu = Pattern.compile("Menú\\b");
+
+        assertEquals(PatternSet.Kind.WORD, set.kind(0));
+        assertEquals(PatternSet.Kind.ANCHORED, set.kind(1));
+        String[] texts = {"@Entityñ", "@Entityá class A {}", "@Entity_ñ", "Menúñ", "Menú_x", "Menú x", "Menúx"};
+        for (String text : texts) {
+            assertEquals(text, entity.matcher(text).find() || menu.matcher(text).find(), set.matches(text));
+        }
+        assertTrue(set.matches("@Entity ñ"));
+        assertFalse(set.matches("@Entity_ñ"));
+    }
+
+    public void testAnchoredPatternOnlyMatchesWithItsWholeExpression() {
+        PatternSet set = PatternSet.of("import\\s+javax\\.persistence\\.Query");
+
+        assertFalse(set.matches("// javax.persistence.Query sin import"));
+        assertTrue(set.matches("import   javax.persistence.Query;"));
+    }
+
+    public void testOverlappingLiterals() {
+        PatternSet set = PatternSet.of("Statement", "PreparedStatement", "Prepared", "redSta");
+        String text = "PreparedStatement ps;";
+
+        PatternSet.Match match = set.find(text);
+        assertEquals(0, match.index());
+        assertEquals("Prepared".length(), match.start());
+
+        PatternSet inner = PatternSet.of("redSta", "Prepared");
+        assertEquals(0, inner.find(text).index());
+        assertEquals(text.indexOf("redSta"), inner.find(text).start());
+    }
+
+    public void testSameLiteralInSeveralPatterns() {
+        PatternSet set = PatternSet.of("EntityManager\\s+em", "EntityManager", "@EntityManager\\b");
+        String text = "private EntityManager manager;";
+
+        PatternSet.Match match = set.find(text);
+
+        assertEquals(1, match.index());
+        assertEquals(text.indexOf("EntityManager"), match.start());
+    }
+
+    public void testCaseInsensitivePatterns() {
+        PatternSet set = PatternSet.of("(?i)entitymanager", "(?i)select\\s+\\*");
+
+        assertEquals(0, set.find("ENTITYMANAGER").index());
+        assertEquals(1, set.find("String q = \"Select * from t\";").index());
+        assertNull(set.find("entity manager"));
+    }
+
+    public void testFindWithinRangesNeverCrossesARange() {
+        PatternSet set = PatternSet.of("\\.persist\\(");
+        String text = "em.persist(e); // em.persist(x)";
+        int comment = text.indexOf("//");
+
+        assertNull("la coincidencia cruza el límite entre los rangos", set.find(text, new int[] {0, 5, 5, comment}));
+        assertEquals(2, set.find(text, new int[] {0, comment}).start());
+        assertEquals(text.lastIndexOf(".persist("),
+            set.find(text, new int[] {5, comment, comment, text.length()}).start());
+    }
+
+    public void testRejectsUnboundedRepetitions() {
+        for (String regex : new String[] {"import.*persistence", "@Query\\(.+\\)", "a.+"}) {
+            try {
+                PatternSet.of(regex);
+                fail("debería rechazar " + regex);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(regex));
+            }
+        }
+        // Escapados o dentro de una clase no son repeticiones de cualquier carácter
+        PatternSet.of("\\.*", "[.*]+", "[^;]*", ".{0,1000}?;", "a\\.+");
+    }
+
+    public void testSameResultAsThePatternLoop() {
+        Random random = new Random(42);
+        String[] words = {
+            "em", ".persist(", ".createQuery(", "EntityManager", "entityManager", " ", "  ", "\n", "@Entity",
+            "@EntityScan", "@Table", "PreparedStatement", "Statement", "SELECT", "select", "name", "from",
+            "import", "javax.persistence.", "app.persistencia.", "Connection", "c", "_", "ñ", "x", "(", ";",
+            "em.find(", "\t",
+        };
+        List<Pattern> patterns = new ArrayList<>();
+        for (String regex : PERSISTENCE) {
+            patterns.add(Pattern.compile(regex));
+        }
+        PatternSet set = PatternSet.of(PERSISTENCE);
+
+        for (int round = 0; round < 5000; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(30);
+            for (int i = 0; i < length; i++) {
+                text.append(words[random.nextInt(words.length)]);
+            }
+            int from = random.nextInt(text.length() + 1);
+            int to = from + random.nextInt(text.length() - from + 1);
+
+            assertSameMatch(text + " [" + from + ", " + to + ")", loop(patterns, text, from, to),
+                set.find(text, from, to));
+            assertSameMatch(text.toString(), loop(patterns, text, 0, text.length()), set.find(text));
+        }
+    }
+
+    // El bucle de antes de PatternSet
+    private static PatternSet.Match loop(List<Pattern> patterns, CharSequence text, int from, int to) {
+        for (int i = 0; i < patterns.size(); i++) {
+            Matcher matcher = patterns.get(i).matcher(text).region(from, to);
+            if (matcher.find()) {
+                return new PatternSet.Match(i, matcher.start(), matcher.end());
+            }
+        }
+        return null;
+    }
+
+    private static void assertSameMatch(String text, PatternSet.Match expected, PatternSet.Match actual) {
+        if (expected == null) {
+            assertNull(text, actual);
+            return;
+        }
+        assertNotNull(text, actual);
+        assertEquals(text, expected.index(), actual.index());
+        assertEquals(text, expected.start(), actual.start());
+        assertEquals(text, expected.end(), actual.end());
+    }
+}
@@ -0,0 +1,63 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+
+public class SegmentTrieTest extends TestCase {
+
+    private final SegmentTrie trie = new SegmentTrie()
+        .add("exposition", Layer.EXPOSITION)
+        .add("rest", Layer.EXPOSITION)
+        .add("service", Layer.SERVICE)
+        .add("model_v2", Layer.DOMAIN)
+        .add("configuración", Layer.DOMAIN)
+        .add("dao", Layer.REPOSITORY);
+
+    public void testMaskAndDeepestSegmentOfAPackage() {
+        int scan = trie.scan("com.app.exposition.service.dto", 0, 30, '.');
+
+        assertEquals(Layer.EXPOSITION.bit() | Layer.SERVICE.bit(), SegmentTrie.mask(scan));
+        assertEquals(Layer.SERVICE, SegmentTrie.deepest(scan));
+    }
+
+    public void testSkipsTheFirstSegment() {
+        int scan = trie.scan("rest.app.util", 0, 13, '.');
+
+        assertEquals(0, SegmentTrie.mask(scan));
+        assertEquals(Layer.NONE, SegmentTrie.deepest(scan));
+    }
+
+    public void testOnlyWholeSegmentsAndIgnoringCase() {
+        assertEquals(0, SegmentTrie.mask(scan("com.app.restful.daos")));
+        assertEquals(0, SegmentTrie.mask(scan("com.app.res.da")));
+        assertEquals(Layer.EXPOSITION.bit() | Layer.REPOSITORY.bit(), SegmentTrie.mask(scan("com.app.REST.Dao")));
+        assertEquals(Layer.DOMAIN.bit(), SegmentTrie.mask(scan("com.app.Model_V2")));
+    }
+
+    public void testCharactersOutsideTheAlphabet() {
+        assertEquals(Layer.DOMAIN, SegmentTrie.deepest(scan("com.app.CONFIGURACIÓN")));
+        assertEquals(0, SegmentTrie.mask(scan("com.app.configuracion")));
+        assertEquals(0, SegmentTrie.mask(scan("com.app.señal")));
+    }
+
+    public void testPathsWithEitherSlash() {
+        String path = "src\\main/java\\com/app/rest/Recurso.java";
+        int scan = trie.scan(path, 0, path.lastIndexOf('/'), '/');
+
+        assertEquals(Layer.EXPOSITION, SegmentTrie.deepest(scan));
+    }
+
+    public void testRejectsSegmentsThatAreNotIdentifiers() {
+        for (String segment : new String[] {"com.app", "a/b", "1a", "a-b"}) {
+            try {
+                new SegmentTrie().add(segment, Layer.DOMAIN);
+                fail(segment);
+            } catch (IllegalArgumentException e) {
+                // esperado
+            }
+        }
+    }
+
+    private int scan(String packageName) {
+        return trie.scan(packageName, 0, packageName.length(), '.');
+    }
+}
@@ -0,0 +1,225 @@
+package com.miempresa.sonar.rules;
+
+import junit.framework.TestCase;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.batch.sensor.issue.IssueLocation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Un archivo analizado por bloques ({@code sonar.arq.streaming.thresholdKb}) debe dar los mismos
+ * issues que leído entero. El archivo generado tiene un corte dentro de un comentario de bloque,
+ * otro dentro de un text block y otro dentro de un literal de cadena, y un issue que empieza
+ * justo en la mitad de cada solapamiento, donde cambia el bloque al que le corresponde.
+ */
+public class SourceChunksTest extends TestCase {
+
+    private static final int THRESHOLD_KB = 64;
+    private static final int CHUNK = ArchitectureProperties.streamingChunkChars(THRESHOLD_KB);
+    // Cada bloque avanza lo que lee menos lo que repite del anterior
+    private static final int STEP = CHUNK - SourceChunks.OVERLAP;
+
+    private static final String CONTROLLER = "src/main/java/com/app/exposition/GranController.java";
+
+    private Path baseDir;
+    private int line;
+
+    @Override
+    protected void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("arq-rules-chunks");
+    }
+
+    @Override
+    protected void tearDown() {
+        TestFiles.delete(baseDir);
+    }
+
+    public void testCutsFallInsideCommentTextBlockAndStringAndOwnershipSwitchesAtTheMidpoint() throws IOException {
+        String content = generate();
+        InputFile inputFile = inputFile(CONTROLLER, content);
+        SourceReader reader = new SourceReader();
+        reader.readHeader(inputFile);
+        SourceChunks chunks = new SourceChunks(
+            new SourceFile(inputFile, reader.readChunk(0, CHUNK), new LayerTable()), reader, CHUNK);
+
+        // Fin de la parte de cada bloque, en posiciones del archivo completo
+        List<Integer> ownTo = new ArrayList<>();
+        int chunkStart = 0;
+        while (true) {
+            int end = chunks.ownTo();
+            ownTo.add(chunkStart + end);
+            if (!chunks.next()) {
+                break;
+            }
+            // Cada bloque empieza a ser dueño donde terminó el anterior
+            chunkStart += end - chunks.ownFrom();
+        }
+
+        assertEquals(4, ownTo.size());
+        for (int cut = 0; cut < 3; cut++) {
+            assertEquals(midpoint(cut), (int) ownTo.get(cut));
+        }
+        assertEquals(content.length(), (int) ownTo.get(3));
+    }
+
+    public void testChunkedAnalysisReportsTheSameIssuesAsTheWholeFile() throws IOException {
+        String content = generate();
+
+        List<String> whole = analyze(content, null, "0");
+        List<String> chunked = analyze(content, String.valueOf(THRESHOLD_KB), "0");
+
+        // Un issue por línea de campo, más los de los imports y los usos de persistencia
+        assertTrue(String.valueOf(whole.size()), whole.size() > 1000);
+        for (int cut = 0; cut < 3; cut++) {
+            String atMidpoint = " " + lineOf(content, midpoint(cut)) + ":" + column(content, midpoint(cut)) + "-";
+            assertTrue("falta el issue de la mitad del solapamiento " + cut,
+                whole.stream().anyMatch(issue -> issue.contains(atMidpoint)));
+        }
+        assertEquals(whole, chunked);
+    }
+
+    public void testSummaryIssuesDoNotDependOnTheChunks() throws IOException {
+        String content = generate();
+
+        assertEquals(analyze(content, null, null), analyze(content, String.valueOf(THRESHOLD_KB), null));
+    }
+
+    // Posición de la mitad del solapamiento del corte n, si el corte cae donde apunta el bloque
+    private static int midpoint(int cut) {
+        return (cut + 1) * STEP + SourceChunks.OVERLAP / 2;
+    }
+
+    private String generate() {
+        StringBuilder source = new StringBuilder()
+            .append("package com.app.exposition;\n\n")
+            .append("import com.app.domain.Usuario;\n")
+            .append("import com.app.repository.UsuarioRepository;\n\n")
+            .append("@RestController\n")
+            .append("public class GranController {\n");
+        line = 0;
+
+        members(source, STEP - 2_000);
+        source.append("    /*\n");
+        while (source.length() < STEP + 2_000) {
+            source.append("     * private Usuario enComentario; em.persist(x); \"sin cerrar\n");
+        }
+        source.append("     */\n");
+        issueAt(source, midpoint(0));
+
+        members(source, 2 * STEP - 2_000);
+        source.append("    String consulta = \"\"\"\n");
+        while (source.length() < 2 * STEP + 2_000) {
+            source.append("        SELECT u FROM Usuario u WHERE u.nombre = \\\"\"\" /* */ \\\\ em.persist(x)\n");
+        }
+        source.append("        \"\"\";\n");
+        issueAt(source, midpoint(1));
+
+        members(source, 3 * STEP - 2_000);
+        source.append("    String literal = \"");
+        while (source.length() < 3 * STEP + 2_000) {
+            source.append("private Usuario u; em.persist(x); \\\" // \\\\ /* ");
+        }
+        source.append("\";\n");
+        issueAt(source, midpoint(2));
+
+        members(source, 4 * STEP + 10_000);
+        return source.append("}\n").toString();
+    }
+
+    // Campos de dominio y usos de persistencia, cada uno con su issue, hasta cerca de la posición
+    private void members(StringBuilder source, int until) {
+        while (source.length() < until) {
+            line++;
+            source.append(line % 3 == 0
+                ? "    void metodo" + line + "() { em.persist(entidad); }\n"
+                : "    private Usuario campo" + line + ";\n");
+        }
+    }
+
+    // Campo cuyo tipo (el issue de NoDomainAccessFromExposition) empieza justo en la posición
+    private void issueAt(StringBuilder source, int position) {
+        String prefix = "    private ";
+        members(source, position - prefix.length() - 120);
+        int padding = position - prefix.length() - source.length();
+        source.append("//");
+        for (int i = 3; i < padding; i++) {
+            source.append('x');
+        }
+        source.append('\n').append(prefix).append("Usuario campoEnLaMitad").append(position).append(";\n");
+    }
+
+    private List<String> analyze(String content, String thresholdKb, String maxIssues) throws IOException {
+        SensorContextTester context = SensorContextTester.create(baseDir);
+        context.fileSystem().setWorkDir(baseDir.resolve("work"));
+        context.settings().setProperty(ArchitectureProperties.PATTERN_MAX_STEPS_KEY, "0");
+        context.settings().setProperty(ArchitectureProperties.PATTERN_TIMEOUT_KEY, "0");
+        if (thresholdKb != null) {
+            context.settings().setProperty(ArchitectureProperties.STREAMING_THRESHOLD_KEY, thresholdKb);
+        }
+        if (maxIssues != null) {
+            context.settings().setProperty(ArchitectureProperties.ISSUES_MAX_PER_RULE_KEY, maxIssues);
+            context.settings().setProperty(ArchitectureProperties.ISSUES_MAX_PER_FILE_KEY, maxIssues);
+        }
+        context.fileSystem().add(inputFile("src/main/java/com/app/domain/Usuario.java",
+            "package com.app.domain;\n\npublic class Usuario {\n}\n"));
+        context.fileSystem().add(inputFile("src/main/java/com/app/repository/UsuarioRepository.java",
+            "package com.app.repository;\n\npublic interface UsuarioRepository {\n}\n"));
+        context.fileSystem().add(inputFile(CONTROLLER, content));
+
+        new LayeredArchitectureSensor().execute(context);
+
+        List<String> issues = new ArrayList<>();
+        for (Issue issue : context.allIssues()) {
+            StringBuilder description = new StringBuilder(issue.ruleKey().rule());
+            description.append(' ').append(describe(issue.primaryLocation()));
+            for (Issue.Flow flow : issue.flows()) {
+                for (IssueLocation location : flow.locations()) {
+                    description.append(" + ").append(describe(location));
+                }
+            }
+            issues.add(description.toString());
+        }
+        Collections.sort(issues);
+        return issues;
+    }
+
+    private static String describe(IssueLocation location) {
+        TextRange range = location.textRange();
+        String position = range == null ? "-" : range.start().line() + ":" + range.start().lineOffset()
+            + "-" + range.end().line() + ":" + range.end().lineOffset();
+        return location.inputComponent() + " " + position + " " + location.message();
+    }
+
+    private InputFile inputFile(String path, String content) {
+        return TestInputFileBuilder.create("mod", path)
+            .setModuleBaseDir(baseDir)
+            .setLanguage("java")
+            .setCharset(StandardCharsets.UTF_8)
+            .setContents(content)
+            .build();
+    }
+
+    private static int lineOf(String content, int offset) {
+        int line = 1;
+        for (int i = 0; i < offset; i++) {
+            if (content.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    private static int column(String content, int offset) {
+        return offset - content.lastIndexOf('\n', offset - 1) - 1;
+    }
+}
@@ -0,0 +1,26 @@
+package com.miempresa.sonar.rules;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/** Utilidades de archivos para los tests. */
+final class TestFiles {
+
+    private TestFiles() {
+    }
+
+    /** Borra el directorio temporal de un test con todo su contenido. */
+    static void delete(Path path) {
+        delete(path.toFile());
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}